@@ -0,0 +1,42 @@
+package br.com.brunolegal.clinic_api.benchmark;
+
+import br.com.brunolegal.clinic_api.domain.Patient;
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import br.com.brunolegal.clinic_api.dto.PatientRegistrationDTO;
+import br.com.brunolegal.clinic_api.mapper.PatientMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PatientMapperBenchmark {
+
+    private PatientMapper mapper;
+    private Patient patient;
+    private PatientRegistrationDTO registration;
+
+    @Setup
+    public void setUp(){
+        mapper = new PatientMapper();
+        patient = new Patient(1L, "John Doe", "johndoe@example.com", "11999998888");
+        registration = new PatientRegistrationDTO("John Doe", "johndoe@example.com", "11999998888");
+    }
+
+    @Benchmark
+    public PatientDetailsDTO toDetailsDto(){
+        return mapper.toDetailsDto(patient);
+    }
+
+    @Benchmark
+    public Patient toEntity(){
+        return mapper.toEntity(registration);
+    }
+}
@@ -0,0 +1,83 @@
+package br.com.brunolegal.clinic_api.benchmark;
+
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+//Size and (de)serialization time of a GET /patients page in each negotiable format, plain and gzipped;
+//the encoded sizes are printed once per trial next to the timings
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PatientPayloadBenchmark {
+    private static final TypeReference<List<PatientDetailsDTO>> PATIENT_LIST = new TypeReference<>() {};
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    //default and maximum page size of GET /patients
+    @Param({"50", "500"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<PatientDetailsDTO> patients;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        //Same builder and factories as the MVC message converters
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        objectMapper = switch (format) {
+            case "cbor" -> builder.factory(new CBORFactory()).build();
+            case "smile" -> builder.factory(new SmileFactory()).build();
+            default -> builder.build();
+        };
+        patients = new ArrayList<>(size);
+        for (long i = 1; i <= size; i++) {
+            patients.add(new PatientDetailsDTO(i, "Patient " + i, "patient" + i + "@example.com", "11999998888"));
+        }
+        encoded = objectMapper.writeValueAsBytes(patients);
+        System.out.printf("%n%s, %d patients: %d bytes, %d gzipped%n", format, size, encoded.length, gzip(encoded).length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(patients);
+    }
+
+    @Benchmark
+    public byte[] serializeGzip() throws IOException {
+        return gzip(objectMapper.writeValueAsBytes(patients));
+    }
+
+    @Benchmark
+    public List<PatientDetailsDTO> deserialize() throws IOException {
+        return objectMapper.readValue(encoded, PATIENT_LIST);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
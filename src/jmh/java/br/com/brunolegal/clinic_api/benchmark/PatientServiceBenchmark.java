@@ -0,0 +1,78 @@
+package br.com.brunolegal.clinic_api.benchmark;
+
+import br.com.brunolegal.clinic_api.ClinicApiApplication;
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import br.com.brunolegal.clinic_api.dto.PatientPageDTO;
+import br.com.brunolegal.clinic_api.dto.PatientRegistrationDTO;
+import br.com.brunolegal.clinic_api.service.PatientService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PatientService through the Spring proxies (transactions, validation) against the
+ * embedded H2 database from the test resources. The cache is disabled so every read
+ * reaches Hibernate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PatientServiceBenchmark {
+
+    private static final int SEEDED_PATIENTS = 10_000;
+
+    private ConfigurableApplicationContext context;
+    private PatientService patientService;
+    private final AtomicLong emailSequence = new AtomicLong();
+
+    @Setup
+    public void setUp(){
+        context = new SpringApplicationBuilder(ClinicApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.cache.type=none", "spring.jpa.show-sql=false", "logging.level.root=warn")
+                .run();
+        patientService = context.getBean(PatientService.class);
+
+        List<PatientRegistrationDTO> seed = new ArrayList<>(SEEDED_PATIENTS);
+        for (int i = 0; i < SEEDED_PATIENTS; i++) {
+            seed.add(new PatientRegistrationDTO("Patient " + i, "seed" + i + "@example.com", "11999998888"));
+        }
+        patientService.createPatients(seed);
+    }
+
+    @TearDown
+    public void tearDown(){
+        context.close();
+    }
+
+    @Benchmark
+    public PatientDetailsDTO getPatientById(){
+        return patientService.getPatientById(ThreadLocalRandom.current().nextLong(1, SEEDED_PATIENTS + 1));
+    }
+
+    @Benchmark
+    public PatientPageDTO listPage(){
+        return patientService.listPage(ThreadLocalRandom.current().nextLong(SEEDED_PATIENTS), PatientService.DEFAULT_PAGE_SIZE);
+    }
+
+    //Every invocation inserts a new row, so the table grows over the run
+    @Benchmark
+    public PatientDetailsDTO createPatient(){
+        String email = "bench" + emailSequence.incrementAndGet() + "@example.com";
+        return patientService.createPatient(new PatientRegistrationDTO("John Doe", email, "11999998888"));
+    }
+}
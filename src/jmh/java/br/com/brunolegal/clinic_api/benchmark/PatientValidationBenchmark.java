@@ -0,0 +1,61 @@
+package br.com.brunolegal.clinic_api.benchmark;
+
+import br.com.brunolegal.clinic_api.dto.PatientRegistrationDTO;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PatientValidationBenchmark {
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+
+    private PatientRegistrationDTO valid;
+    private PatientRegistrationDTO invalidPhone;
+    private PatientRegistrationDTO invalidEmail;
+
+    @Setup
+    public void setUp(){
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        valid = new PatientRegistrationDTO("John Doe", "johndoe@example.com", "11999998888");
+        invalidPhone = new PatientRegistrationDTO("John Doe", "johndoe@example.com", "1199-999-8888");
+        invalidEmail = new PatientRegistrationDTO("John Doe", "johndoe.example.com", "11999998888");
+    }
+
+    @TearDown
+    public void tearDown(){
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<PatientRegistrationDTO>> validRegistration(){
+        return validator.validate(valid);
+    }
+
+    //The \d{10,11} pattern fails, so the message interpolation cost is included
+    @Benchmark
+    public Set<ConstraintViolation<PatientRegistrationDTO>> invalidPhone(){
+        return validator.validate(invalidPhone);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<PatientRegistrationDTO>> invalidEmail(){
+        return validator.validate(invalidEmail);
+    }
+}
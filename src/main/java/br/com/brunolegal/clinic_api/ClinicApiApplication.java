@@ -2,8 +2,10 @@ package br.com.brunolegal.clinic_api;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class ClinicApiApplication {
 
 	public static void main(String[] args) {
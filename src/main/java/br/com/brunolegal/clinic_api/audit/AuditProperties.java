@@ -0,0 +1,49 @@
+package br.com.brunolegal.clinic_api.audit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the write-behind patient audit log.
+ *
+ * @param enabled          records every create, update and delete; reading the row it replaces costs
+ *                         updates and deletes one locked SELECT
+ * @param queueCapacity    entries waiting for the writer, rounded up to a power of two
+ * @param batchSize        rows per JDBC batch, and queued entries that wake the writer early
+ * @param flushInterval    longest an entry waits in the queue while the database is healthy
+ * @param overflow         what a write does when the queue is full
+ * @param blockTimeout     how long {@link Overflow#BLOCK} waits for room before dropping the entry
+ * @param retryBackoff     first delay before a failed batch is retried
+ * @param maxRetryBackoff  upper bound of the doubling retry delay
+ * @param shutdownTimeout  how long shutdown waits for the writer to drain the queue
+ */
+@ConfigurationProperties(prefix = "clinic.audit")
+public record AuditProperties(
+
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("8192") int queueCapacity,
+        @DefaultValue("256") int batchSize,
+        @DefaultValue("200ms") Duration flushInterval,
+        @DefaultValue("BLOCK") Overflow overflow,
+        @DefaultValue("1s") Duration blockTimeout,
+        @DefaultValue("500ms") Duration retryBackoff,
+        @DefaultValue("30s") Duration maxRetryBackoff,
+        @DefaultValue("30s") Duration shutdownTimeout
+
+) {
+
+    public AuditProperties {
+        if(queueCapacity < 1 || batchSize < 1){
+            throw new IllegalArgumentException("Audit queue capacity and batch size must be positive");
+        }
+    }
+
+    public enum Overflow {
+        //the entry is counted and logged as dropped, the write that produced it is not slowed down
+        DROP,
+        //the write waits for the writer to make room, up to blockTimeout, then drops the entry
+        BLOCK
+    }
+}
@@ -0,0 +1,95 @@
+package br.com.brunolegal.clinic_api.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer: a power-of-two ring of slots,
+ * each with a sequence number telling whose turn it is (Vyukov's bounded queue). Producers claim a
+ * slot with one CAS on the tail and never wait on each other or on the consumer; a full queue is
+ * reported by {@link #offer} returning false, so the caller decides between dropping and waiting.
+ * <p>
+ * {@link #drain} must only be called by one thread at a time; {@link PatientAuditLog} serializes
+ * its callers with a lock.
+ */
+final class BoundedMpscQueue<E> {
+    private final AtomicReferenceArray<E> elements;
+    //slot i is free for the producer of position p when sequences[i] == p,
+    //and holds the element of position p for the consumer when sequences[i] == p + 1
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final int mask;
+
+    BoundedMpscQueue(int minCapacity){
+        int capacity = minCapacity <= 1 ? 1 : Integer.highestOneBit(minCapacity - 1) << 1;
+        elements = new AtomicReferenceArray<>(capacity);
+        sequences = new AtomicLongArray(capacity);
+        for(int i = 0; i < capacity; i++){
+            sequences.set(i, i);
+        }
+        mask = capacity - 1;
+    }
+
+    int capacity(){
+        return mask + 1;
+    }
+
+    //Approximate while producers are racing, exact once they are quiet
+    int size(){
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    boolean isEmpty(){
+        return size() == 0;
+    }
+
+    //Adds the element unless the queue is full
+    boolean offer(E element){
+        if(element == null){
+            throw new NullPointerException("element");
+        }
+        while(true){
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+            if(sequence == position){
+                if(tail.compareAndSet(position, position + 1)){
+                    elements.lazySet(slot, element);
+                    //publishes the element: the consumer reads the sequence before the slot
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+            } else if(sequence < position){
+                //the consumer has not freed this slot since the last lap
+                return false;
+            }
+            //another producer claimed the position first, retry with the new tail
+        }
+    }
+
+    //Hands up to max elements to the consumer in FIFO order; stops early at a slot whose producer has
+    //claimed it but not yet published, so nothing is skipped
+    int drain(Consumer<? super E> consumer, int max){
+        long position = head.get();
+        int drained = 0;
+        while(drained < max){
+            int slot = (int) position & mask;
+            if(sequences.get(slot) != position + 1){
+                break;
+            }
+            E element = elements.get(slot);
+            elements.lazySet(slot, null);
+            //frees the slot for the producer one lap ahead
+            sequences.set(slot, position + mask + 1);
+            position++;
+            head.set(position);
+            consumer.accept(element);
+            drained++;
+        }
+        return drained;
+    }
+}
@@ -0,0 +1,45 @@
+package br.com.brunolegal.clinic_api.audit;
+
+import br.com.brunolegal.clinic_api.domain.Patient;
+import br.com.brunolegal.clinic_api.domain.PatientSnapshot;
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import br.com.brunolegal.clinic_api.event.PatientChangedEvent.ChangeType;
+
+import java.time.Instant;
+
+/**
+ * One committed patient write, with the row as it was before and after. Published by
+ * {@code PatientService} next to the {@code PatientChangedEvent}; {@link PatientAuditLog} only
+ * queues it once the transaction commits.
+ */
+public record PatientAuditEntry(
+
+        ChangeType action,
+        long patientId,
+        long version,
+        Instant occurredAt,
+        PatientSnapshot before,
+        PatientSnapshot after
+
+) {
+
+    public static PatientAuditEntry created(Patient patient){
+        return new PatientAuditEntry(ChangeType.CREATED, patient.getId(), patient.getVersion(), patient.getUpdatedAt(),
+                null, new PatientSnapshot(patient.getName(), patient.getEmail(), patient.getPhone(), true));
+    }
+
+    //after carries the new version and write time
+    public static PatientAuditEntry updated(PatientDetailsDTO before, PatientDetailsDTO after){
+        return new PatientAuditEntry(ChangeType.UPDATED, after.id(), after.version(), after.updatedAt(),
+                snapshot(before, true), snapshot(after, true));
+    }
+
+    public static PatientAuditEntry deactivated(PatientDetailsDTO before, Instant deletedAt){
+        return new PatientAuditEntry(ChangeType.DEACTIVATED, before.id(), before.version() + 1, deletedAt,
+                snapshot(before, true), snapshot(before, false));
+    }
+
+    private static PatientSnapshot snapshot(PatientDetailsDTO patient, boolean active){
+        return new PatientSnapshot(patient.name(), patient.email(), patient.phone(), active);
+    }
+}
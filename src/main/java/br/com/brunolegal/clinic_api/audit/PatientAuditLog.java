@@ -0,0 +1,310 @@
+package br.com.brunolegal.clinic_api.audit;
+
+import br.com.brunolegal.clinic_api.domain.PatientSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind audit log of patient writes: committed {@link PatientAuditEntry}s go into a bounded
+ * lock-free queue and a background thread inserts them into {@code patient_audit} in JDBC batches,
+ * so a registration, update or delete never waits on the audit insert.
+ * <p>
+ * The writer keeps one dedicated connection outside the Hikari pool, so request threads that wait
+ * for room in the queue can never starve it of a connection. A batch the database refuses stays
+ * pending and is retried with a doubling backoff; meanwhile the queue fills up and
+ * {@link AuditProperties#overflow()} decides whether writes drop their entries or wait for room.
+ * <p>
+ * The log stops after the web server: shutdown drains the queue before the application exits, and
+ * entries committed after that are written by the thread that committed them.
+ */
+@Slf4j
+@Component
+@Profile("!reactive")
+public class PatientAuditLog implements SmartLifecycle {
+    //Metric names; the entries counter is tagged with the result (written, dropped)
+    public static final String QUEUE_DEPTH_GAUGE = "clinic.audit.queue.depth";
+    public static final String ENTRIES_COUNTER = "clinic.audit.entries";
+    public static final String BACKPRESSURE_COUNTER = "clinic.audit.backpressure";
+
+    private static final String INSERT = "INSERT INTO patient_audit (patient_id, action, version, occurred_at, "
+            + "before_name, before_email, before_phone, before_active, after_name, after_email, after_phone, after_active) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final long MAX_PRODUCER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long DROP_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final JdbcConnectionDetails connectionDetails;
+    private final AuditProperties properties;
+    private final BoundedMpscQueue<PatientAuditEntry> queue;
+    private final Counter written;
+    private final Counter dropped;
+    private final Counter backpressure;
+    //one consumer at a time: the writer thread, or whoever flushes once it has stopped
+    private final ReentrantLock consumerLock = new ReentrantLock();
+    //drained from the queue but not yet committed, guarded by consumerLock
+    private final List<PatientAuditEntry> pending;
+    private final AtomicLong lastDropLog = new AtomicLong(System.nanoTime() - DROP_LOG_INTERVAL_NANOS);
+
+    private volatile boolean running;
+    private Connection connection;
+    private volatile Thread writer;
+
+    public PatientAuditLog(JdbcConnectionDetails connectionDetails, AuditProperties properties, MeterRegistry meterRegistry){
+        this.connectionDetails = connectionDetails;
+        this.properties = properties;
+        this.queue = new BoundedMpscQueue<>(properties.queueCapacity());
+        this.pending = new ArrayList<>(properties.batchSize());
+        this.written = Counter.builder(ENTRIES_COUNTER).tag("result", "written").register(meterRegistry);
+        this.dropped = Counter.builder(ENTRIES_COUNTER).tag("result", "dropped").register(meterRegistry);
+        this.backpressure = Counter.builder(BACKPRESSURE_COUNTER).register(meterRegistry);
+        Gauge.builder(QUEUE_DEPTH_GAUGE, queue, BoundedMpscQueue::size).register(meterRegistry);
+    }
+
+    //Started before the web server and stopped after it, so every request's entries are queued in time
+    @Override
+    public int getPhase(){
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    @Override
+    public void start(){
+        running = true;
+        if(properties.enabled()){
+            writer = new Thread(this::writeLoop, "patient-audit-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    //Drains the queue before returning, up to shutdownTimeout
+    @Override
+    public void stop(){
+        running = false;
+        if(writer == null){
+            return;
+        }
+        LockSupport.unpark(writer);
+        try {
+            writer.join(properties.shutdownTimeout().toMillis());
+        } catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        if(writer.isAlive()){
+            log.error("Audit writer did not drain within {}, {} entries are not written", properties.shutdownTimeout(),
+                    queue.size() + pending.size());
+            return;
+        }
+        flushAfterStop();
+        consumerLock.lock();
+        try {
+            closeConnection();
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isRunning(){
+        return running;
+    }
+
+    public boolean isEnabled(){
+        return properties.enabled();
+    }
+
+    public int queueDepth(){
+        return queue.size();
+    }
+
+    //Only committed writes are audited, a rolled back one never reaches the queue
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPatientAudited(PatientAuditEntry entry){
+        record(entry);
+    }
+
+    //Queues the entry for the writer, applying the overflow policy when the queue is full
+    public void record(PatientAuditEntry entry){
+        if(!properties.enabled()){
+            return;
+        }
+        if(!queue.offer(entry) && !(properties.overflow() == AuditProperties.Overflow.BLOCK && offerBlocking(entry))){
+            drop(entry);
+            return;
+        }
+        if(!running){
+            //the writer may already have drained for the last time
+            flushAfterStop();
+        } else if(queue.size() >= properties.batchSize()){
+            LockSupport.unpark(writer);
+        }
+    }
+
+    //Waits for the writer to make room, parking a little longer on every attempt
+    private boolean offerBlocking(PatientAuditEntry entry){
+        backpressure.increment();
+        long deadline = System.nanoTime() + properties.blockTimeout().toNanos();
+        long park = TimeUnit.MICROSECONDS.toNanos(50);
+        while(running){
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(park);
+            if(queue.offer(entry)){
+                return true;
+            }
+            if(System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted()){
+                return false;
+            }
+            park = Math.min(park * 2, MAX_PRODUCER_PARK_NANOS);
+        }
+        //stopped meanwhile: nobody drains any more, write the queue from here and try again
+        flushAfterStop();
+        return queue.offer(entry);
+    }
+
+    private void drop(PatientAuditEntry entry){
+        dropped.increment();
+        long last = lastDropLog.get();
+        long now = System.nanoTime();
+        if(now - last >= DROP_LOG_INTERVAL_NANOS && lastDropLog.compareAndSet(last, now)){
+            log.error("Audit queue is full ({} entries), dropped {} of patient {}; see the {} metric for the total",
+                    queue.capacity(), entry.action(), entry.patientId(), ENTRIES_COUNTER);
+        }
+    }
+
+    private void writeLoop(){
+        long flushIntervalNanos = properties.flushInterval().toNanos();
+        long backoff = properties.retryBackoff().toMillis();
+        while(running){
+            if(queue.size() < properties.batchSize()){
+                LockSupport.parkNanos(flushIntervalNanos);
+            }
+            if(flush()){
+                backoff = properties.retryBackoff().toMillis();
+            } else if(running){
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoff));
+                backoff = Math.min(backoff * 2, properties.maxRetryBackoff().toMillis());
+            }
+        }
+        //last drain on shutdown; the database gets one more attempt below if this fails
+        flush();
+    }
+
+    private void flushAfterStop(){
+        if(!flush()){
+            log.error("Could not write the patient audit log while stopping, {} entries are not written",
+                    queue.size() + pending.size());
+        }
+    }
+
+    //Writes batches until the queue is empty; false when the database refused one, which then stays pending
+    private boolean flush(){
+        consumerLock.lock();
+        try {
+            while(true){
+                if(pending.isEmpty()){
+                    queue.drain(pending::add, properties.batchSize());
+                }
+                if(pending.isEmpty()){
+                    return true;
+                }
+                insert(pending);
+                written.increment(pending.size());
+                pending.clear();
+            }
+        } catch(SQLException e){
+            log.warn("Could not write a batch of {} patient audit entries, {} more queued", pending.size(), queue.size(), e);
+            closeConnection();
+            return false;
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    //One transaction per batch, so a retried batch is never written twice
+    private void insert(List<PatientAuditEntry> entries) throws SQLException {
+        if(connection == null){
+            connection = connect();
+        }
+        try(PreparedStatement statement = connection.prepareStatement(INSERT)){
+            for(PatientAuditEntry entry : entries){
+                statement.setLong(1, entry.patientId());
+                statement.setString(2, entry.action().name());
+                statement.setLong(3, entry.version());
+                statement.setTimestamp(4, Timestamp.from(entry.occurredAt()));
+                bindSnapshot(statement, 5, entry.before());
+                bindSnapshot(statement, 9, entry.after());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            connection.commit();
+        } catch(SQLException e){
+            try {
+                connection.rollback();
+            } catch(SQLException ignored){
+                //the connection is dropped anyway
+            }
+            throw e;
+        }
+    }
+
+    private static void bindSnapshot(PreparedStatement statement, int index, PatientSnapshot snapshot) throws SQLException {
+        if(snapshot == null){
+            statement.setNull(index, Types.VARCHAR);
+            statement.setNull(index + 1, Types.VARCHAR);
+            statement.setNull(index + 2, Types.VARCHAR);
+            statement.setNull(index + 3, Types.BOOLEAN);
+            return;
+        }
+        statement.setString(index, snapshot.name());
+        statement.setString(index + 1, snapshot.email());
+        statement.setString(index + 2, snapshot.phone());
+        statement.setBoolean(index + 3, snapshot.active());
+    }
+
+    private Connection connect() throws SQLException {
+        Properties info = new Properties();
+        if(connectionDetails.getUsername() != null){
+            info.setProperty("user", connectionDetails.getUsername());
+        }
+        if(connectionDetails.getPassword() != null){
+            info.setProperty("password", connectionDetails.getPassword());
+        }
+        info.setProperty("ApplicationName", "clinic-api-audit");
+        Connection opened = DriverManager.getConnection(connectionDetails.getJdbcUrl(), info);
+        opened.setAutoCommit(false);
+        return opened;
+    }
+
+    private void closeConnection(){
+        if(connection == null){
+            return;
+        }
+        try {
+            connection.close();
+        } catch(SQLException ignored){
+            //already broken, nothing left to release
+        } finally {
+            connection = null;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package br.com.brunolegal.clinic_api.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the Postgres LISTEN/NOTIFY bus that keeps the per-node patient caches in sync.
+ *
+ * @param enabled            turns the bus on; it needs a PostgreSQL datasource
+ * @param channel            NOTIFY channel, must be a plain lower-case SQL identifier
+ * @param pollTimeout        how long the listener waits for notifications before checking its connection
+ * @param reconnectBackoff   first delay before reconnecting after the connection drops
+ * @param maxReconnectBackoff upper bound of the doubling reconnect delay
+ */
+@ConfigurationProperties(prefix = "clinic.cache.invalidation")
+public record CacheInvalidationProperties(
+
+        boolean enabled,
+        @DefaultValue("patient_cache_invalidation") String channel,
+        @DefaultValue("5s") Duration pollTimeout,
+        @DefaultValue("500ms") Duration reconnectBackoff,
+        @DefaultValue("30s") Duration maxReconnectBackoff
+
+) {
+
+    public CacheInvalidationProperties {
+        if(!channel.matches("[a-z_][a-z0-9_]*")){
+            throw new IllegalArgumentException("Invalid cache invalidation channel: " + channel);
+        }
+    }
+}
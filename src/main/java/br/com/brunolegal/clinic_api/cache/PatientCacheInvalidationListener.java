@@ -0,0 +1,167 @@
+package br.com.brunolegal.clinic_api.cache;
+
+import br.com.brunolegal.clinic_api.config.CacheConfig;
+import br.com.brunolegal.clinic_api.lookup.PatientLookupIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Listens on the Postgres NOTIFY channel, evicts the announced patients from the local cache and
+ * reloads them into the lookup index.
+ * <p>
+ * It keeps one dedicated connection outside the Hikari pool. When that connection drops the
+ * listener reconnects with a doubling backoff, clears the whole cache and rebuilds the lookup
+ * index, since notifications sent while it was disconnected are lost.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "clinic.cache.invalidation", name = "enabled", havingValue = "true")
+@Profile("!reactive")
+public class PatientCacheInvalidationListener implements SmartLifecycle {
+    private final JdbcConnectionDetails connectionDetails;
+    private final CacheInvalidationProperties properties;
+    private final Cache cache;
+    private final PatientLookupIndex lookupIndex;
+
+    private volatile boolean running;
+    private volatile Connection connection;
+    private Thread thread;
+
+    public PatientCacheInvalidationListener(JdbcConnectionDetails connectionDetails, CacheInvalidationProperties properties, CacheManager cacheManager,
+                                            PatientLookupIndex lookupIndex){
+        this.connectionDetails = connectionDetails;
+        this.properties = properties;
+        this.cache = Objects.requireNonNull(cacheManager.getCache(CacheConfig.PATIENTS_CACHE), "patients cache is not configured");
+        this.lookupIndex = lookupIndex;
+    }
+
+    @Override
+    public void start(){
+        running = true;
+        thread = new Thread(this::listenLoop, "patient-cache-invalidation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void stop(){
+        running = false;
+        closeQuietly(connection);
+        if(thread != null){
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning(){
+        return running;
+    }
+
+    private void listenLoop(){
+        long backoff = properties.reconnectBackoff().toMillis();
+        boolean reconnecting = false;
+        while(running){
+            try(Connection listening = connect()){
+                connection = listening;
+                try(Statement statement = listening.createStatement()){
+                    statement.execute("LISTEN " + properties.channel());
+                }
+                //anything announced while we were disconnected is lost
+                cache.clear();
+                //the index loaded itself at startup, only a reconnect leaves it behind
+                if(reconnecting){
+                    lookupIndex.rebuild();
+                }
+                reconnecting = true;
+                backoff = properties.reconnectBackoff().toMillis();
+                log.info("Listening for patient cache invalidations on channel '{}'", properties.channel());
+                receive(listening.unwrap(PGConnection.class), listening);
+            } catch(SQLException e){
+                if(!running){
+                    return;
+                }
+                log.warn("Cache invalidation listener lost its connection, reconnecting in {} ms", backoff, e);
+                if(!sleep(backoff)){
+                    return;
+                }
+                backoff = Math.min(backoff * 2, properties.maxReconnectBackoff().toMillis());
+            }
+        }
+    }
+
+    private void receive(PGConnection pgConnection, Connection listening) throws SQLException {
+        int pollTimeout = (int) properties.pollTimeout().toMillis();
+        while(running){
+            PGNotification[] notifications = pgConnection.getNotifications(pollTimeout);
+            if(notifications == null || notifications.length == 0){
+                //a silently dropped connection only shows up when we talk to the server
+                if(!listening.isValid(pollTimeout / 1000 + 1)){
+                    throw new SQLException("Cache invalidation connection is no longer valid");
+                }
+                continue;
+            }
+            for(PGNotification notification : notifications){
+                evict(notification.getParameter());
+            }
+        }
+    }
+
+    private void evict(String payload){
+        try {
+            long id = Long.parseLong(payload);
+            cache.evict(id);
+            lookupIndex.refresh(id);
+        } catch(NumberFormatException e){
+            log.warn("Ignoring malformed cache invalidation payload '{}'", payload);
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        Properties info = new Properties();
+        if(connectionDetails.getUsername() != null){
+            info.setProperty("user", connectionDetails.getUsername());
+        }
+        if(connectionDetails.getPassword() != null){
+            info.setProperty("password", connectionDetails.getPassword());
+        }
+        info.setProperty("tcpKeepAlive", "true");
+        info.setProperty("ApplicationName", "clinic-api-cache-invalidation");
+        return DriverManager.getConnection(connectionDetails.getJdbcUrl(), info);
+    }
+
+    private boolean sleep(long millis){
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void closeQuietly(Connection connection){
+        if(connection == null){
+            return;
+        }
+        try {
+            connection.close();
+        } catch(SQLException ignored){
+            //already broken, nothing left to release
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package br.com.brunolegal.clinic_api.cache;
+
+import br.com.brunolegal.clinic_api.event.PatientChangedEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Announces patient writes on the Postgres NOTIFY channel so every node evicts its cached copy.
+ * <p>
+ * The NOTIFY is issued inside the writing transaction on purpose: Postgres holds it until the
+ * transaction commits and drops it on rollback, so listeners only ever hear about committed
+ * changes and no extra connection is needed.
+ * <p>
+ * Registrations are not announced: no node can have a new patient cached yet, and a batch
+ * registration would otherwise send one notification per row.
+ */
+@Component
+@ConditionalOnProperty(prefix = "clinic.cache.invalidation", name = "enabled", havingValue = "true")
+@Profile("!reactive")
+public class PatientCacheInvalidationPublisher {
+    private final JdbcTemplate jdbcTemplate;
+    private final CacheInvalidationProperties properties;
+
+    public PatientCacheInvalidationPublisher(JdbcTemplate jdbcTemplate, CacheInvalidationProperties properties){
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onPatientChanged(PatientChangedEvent event){
+        if(event.type() == PatientChangedEvent.ChangeType.CREATED){
+            return;
+        }
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, properties.channel(), event.patientId().toString());
+    }
+}
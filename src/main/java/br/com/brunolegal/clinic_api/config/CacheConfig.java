@@ -0,0 +1,16 @@
+package br.com.brunolegal.clinic_api.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Enables Spring caching. The caches themselves are Caffeine caches declared in
+ * {@code application.properties} ({@code spring.cache.*}), with statistics recorded so
+ * hit/miss/eviction counts show up under {@code /actuator/metrics/cache.*}.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    //PatientDetailsDTO by patient id
+    public static final String PATIENTS_CACHE = "patients";
+}
@@ -0,0 +1,85 @@
+package br.com.brunolegal.clinic_api.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Logs the effective connection pool and JDBC settings once the application is ready, so the
+ * values a node actually runs with (after profiles and overrides) end up in its startup log.
+ */
+@Slf4j
+@Component
+@Profile("!reactive")
+public class ConnectionPoolReport {
+    private final DataSource dataSource;
+    private final JpaProperties jpaProperties;
+    private final Environment environment;
+
+    public ConnectionPoolReport(DataSource dataSource, JpaProperties jpaProperties, Environment environment){
+        this.dataSource = dataSource;
+        this.jpaProperties = jpaProperties;
+        this.environment = environment;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void report(){
+        reportThreading();
+        HikariDataSource hikari = DataSourceUnwrapper.unwrap(dataSource, HikariDataSource.class);
+        if(hikari == null){
+            log.info("Connection pool: {} (not a Hikari pool, no settings to report)", dataSource.getClass().getName());
+            return;
+        }
+        log.info("Connection pool '{}': maximumPoolSize={}, minimumIdle={}, connectionTimeout={}ms, validationTimeout={}ms, "
+                        + "idleTimeout={}ms, maxLifetime={}ms, keepaliveTime={}ms, leakDetectionThreshold={}ms, autoCommit={}",
+                hikari.getPoolName(), hikari.getMaximumPoolSize(), hikari.getMinimumIdle(), hikari.getConnectionTimeout(),
+                hikari.getValidationTimeout(), hikari.getIdleTimeout(), hikari.getMaxLifetime(), hikari.getKeepaliveTime(),
+                hikari.getLeakDetectionThreshold(), hikari.isAutoCommit());
+        log.info("JDBC driver properties: {}", withoutSecrets(hikari.getDataSourceProperties()));
+        log.info("Hibernate JDBC settings: {}", hibernateJdbcSettings());
+    }
+
+    private void reportThreading(){
+        boolean requested = environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false);
+        if(Threading.VIRTUAL.isActive(environment)){
+            log.info("Request threads: virtual, concurrency is bounded by the connection pool");
+        } else if(requested){
+            log.warn("spring.threads.virtual.enabled is set but this runtime is Java {}, virtual threads need Java 21+; using platform threads",
+                    JavaVersion.getJavaVersion());
+        } else {
+            log.info("Request threads: platform");
+        }
+    }
+
+    private Map<String, Object> withoutSecrets(Map<Object, Object> properties){
+        Map<String, Object> visible = new TreeMap<>();
+        properties.forEach((key, value) -> {
+            String name = key.toString();
+            visible.put(name, name.toLowerCase(Locale.ROOT).contains("password") ? "******" : value);
+        });
+        return visible;
+    }
+
+    private Map<String, String> hibernateJdbcSettings(){
+        Map<String, String> settings = new TreeMap<>();
+        jpaProperties.getProperties().forEach((key, value) -> {
+            if(key.startsWith("hibernate.jdbc.") || key.startsWith("hibernate.order_") || key.startsWith("hibernate.query.")){
+                settings.put(key, value);
+            }
+        });
+        return settings;
+    }
+}
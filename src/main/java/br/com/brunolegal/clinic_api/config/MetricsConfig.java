@@ -0,0 +1,25 @@
+package br.com.brunolegal.clinic_api.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Application meters on top of the ones Spring Boot binds on its own (http.server.requests,
+ * spring.data.repository.invocations, hikaricp.*, cache.*). Everything is scraped from
+ * {@code /actuator/prometheus}; histogram buckets are switched on in {@code application.properties}.
+ */
+@Configuration
+public class MetricsConfig {
+    //Timer for every public PatientService method, tagged with class and method
+    public static final String SERVICE_TIMER = "clinic.patient.service";
+    //Counter of exceptions mapped to an HTTP error by GlobalExceptionHandler, tagged with exception
+    public static final String EXCEPTIONS_COUNTER = "clinic.exceptions";
+
+    //Makes @Timed work on Spring beans
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry){
+        return new TimedAspect(meterRegistry);
+    }
+}
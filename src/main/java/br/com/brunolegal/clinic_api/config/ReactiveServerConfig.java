@@ -0,0 +1,21 @@
+package br.com.brunolegal.clinic_api.config;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Runs the {@code reactive} profile on Reactor Netty. Tomcat is on the classpath for the servlet stack and
+ * Spring Boot would otherwise pick it for WebFlux too, through its servlet adapter. {@code server.*}
+ * settings (port, compression, shutdown) still apply to this factory.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveServerConfig {
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory(){
+        return new NettyReactiveWebServerFactory();
+    }
+}
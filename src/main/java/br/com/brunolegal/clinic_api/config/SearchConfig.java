@@ -0,0 +1,27 @@
+package br.com.brunolegal.clinic_api.config;
+
+import br.com.brunolegal.clinic_api.repository.NativePatientSearchRepository;
+import br.com.brunolegal.clinic_api.repository.PatientSearchRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Picks the patient search strategy for the configured database: pg_trgm ranking on
+ * PostgreSQL, plain LIKE matching anywhere else (the H2 test database).
+ */
+@Configuration
+@Profile("!reactive")
+public class SearchConfig {
+
+    @Bean
+    public PatientSearchRepository patientSearchRepository(EntityManager entityManager, JdbcConnectionDetails connectionDetails){
+        if(DatabaseDriver.fromJdbcUrl(connectionDetails.getJdbcUrl()) == DatabaseDriver.POSTGRESQL){
+            return NativePatientSearchRepository.trigram(entityManager);
+        }
+        return NativePatientSearchRepository.like(entityManager);
+    }
+}
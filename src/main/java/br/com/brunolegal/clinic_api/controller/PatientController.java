@@ -1,30 +1,84 @@
 package br.com.brunolegal.clinic_api.controller;
 
+import br.com.brunolegal.clinic_api.config.BinaryFormatsConfig;
+import br.com.brunolegal.clinic_api.dto.PatientBatchResultDTO;
+import br.com.brunolegal.clinic_api.dto.PatientChangeDTO;
+import br.com.brunolegal.clinic_api.dto.PatientChangePageDTO;
 import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import br.com.brunolegal.clinic_api.dto.PatientField;
+import br.com.brunolegal.clinic_api.dto.PatientPageDTO;
 import br.com.brunolegal.clinic_api.dto.PatientRegistrationDTO;
+import br.com.brunolegal.clinic_api.dto.PatientSearchPageDTO;
 import br.com.brunolegal.clinic_api.dto.PatientUpdateDTO;
+import br.com.brunolegal.clinic_api.idempotency.IdempotencyStore;
+import br.com.brunolegal.clinic_api.ratelimit.ClientIdentityResolver;
+import br.com.brunolegal.clinic_api.service.PatientLookupService;
 import br.com.brunolegal.clinic_api.service.PatientService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/patients")
+@Profile("!reactive")
 public class PatientController {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
     private final PatientService patientService;
+    private final PatientLookupService patientLookupService;
+    private final IdempotencyStore idempotencyStore;
+    private final ClientIdentityResolver clientIdentity;
+    private final ObjectWriter ndjsonWriter;
 
-    public PatientController (PatientService patientService){
+    public PatientController (PatientService patientService, PatientLookupService patientLookupService, IdempotencyStore idempotencyStore,
+                              ClientIdentityResolver clientIdentity, ObjectMapper objectMapper){
         this.patientService = patientService;
+        this.patientLookupService = patientLookupService;
+        this.idempotencyStore = idempotencyStore;
+        this.clientIdentity = clientIdentity;
+        this.ndjsonWriter = objectMapper.writerFor(PatientDetailsDTO.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
+    //With an Idempotency-Key, a retry of a registration that already succeeded gets the same 201 back
+    //without registering again; keys are per client
     @PostMapping
     public ResponseEntity<PatientDetailsDTO> register (
             @RequestBody @Valid PatientRegistrationDTO dto,
-            UriComponentsBuilder uriBuilder
+            @RequestHeader(name = IdempotencyStore.IDEMPOTENCY_KEY_HEADER, required = false) @Size(min = 1, max = 255) String idempotencyKey,
+            UriComponentsBuilder uriBuilder,
+            HttpServletRequest request
     ){
+            if(idempotencyKey != null){
+                return idempotencyStore.execute(clientIdentity.resolve(request), idempotencyKey, dto, PatientDetailsDTO.class,
+                        () -> create(dto, uriBuilder));
+            }
+            return create(dto, uriBuilder);
+    }
+
+    private ResponseEntity<PatientDetailsDTO> create(PatientRegistrationDTO dto, UriComponentsBuilder uriBuilder){
             PatientDetailsDTO savedDto = patientService.createPatient(dto);
 
             URI uri = uriBuilder
@@ -36,22 +90,136 @@ public class PatientController {
 
     }
 
-    @GetMapping
-    public ResponseEntity<List<PatientDetailsDTO>> listAll(){
-        List<PatientDetailsDTO> patients = patientService.listAll();
-        return ResponseEntity.ok(patients);
+    //Each entry is validated by the service so one bad entry does not reject the whole batch
+    @PostMapping("/batch")
+    public ResponseEntity<PatientBatchResultDTO> registerBatch(@RequestBody List<PatientRegistrationDTO> dtos){
+        PatientBatchResultDTO result = patientService.createPatients(dtos);
+        return ResponseEntity.ok(result);
+    }
+
+    //Collections are also available as CBOR or Smile for clients that ask for them in Accept, JSON stays the default.
+    //fields=name,email,phone reads only those columns; id is always included
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, BinaryFormatsConfig.APPLICATION_SMILE_VALUE})
+    public ResponseEntity<List<PatientDetailsDTO>> listAll(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "" + PatientService.DEFAULT_PAGE_SIZE) int limit,
+            @RequestParam(required = false) Set<PatientField> fields,
+            UriComponentsBuilder uriBuilder
+    ){
+        PatientPageDTO page = patientService.listPage(after, limit, fields);
+        ResponseEntity.BodyBuilder response = PatientValidators.withValidators(ResponseEntity.ok(), page.content(), page.nextCursor() != null)
+                .varyBy(HttpHeaders.ACCEPT);
+
+        if(page.nextCursor() != null){
+            URI next = uriBuilder
+                    .path("/patients")
+                    .queryParam("after", page.nextCursor())
+                    .queryParam("limit", page.content().size())
+                    .queryParamIfPresent("fields", Optional.ofNullable(fields)
+                            .filter(selected -> !selected.isEmpty())
+                            .map(selected -> selected.stream().map(PatientField::attribute).collect(Collectors.joining(","))))
+                    .build()
+                    .toUri();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor().toString());
+        }
+
+        return response.body(page.content());
+    }
+
+    //Ranked by relevance to a partial name, email or phone; paged with the opaque cursor of the previous page
+    @GetMapping(value = "/search", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, BinaryFormatsConfig.APPLICATION_SMILE_VALUE})
+    public ResponseEntity<List<PatientDetailsDTO>> search(
+            @RequestParam @NotBlank @Size(max = 100) String q,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "" + PatientService.DEFAULT_SEARCH_LIMIT) int limit,
+            UriComponentsBuilder uriBuilder
+    ){
+        PatientSearchPageDTO page = patientService.search(q, after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT);
+
+        if(page.nextCursor() != null){
+            URI next = uriBuilder
+                    .path("/patients/search")
+                    .queryParam("q", "{q}")
+                    .queryParam("after", page.nextCursor())
+                    .queryParam("limit", page.content().size())
+                    .encode()
+                    .buildAndExpand(q)
+                    .toUri();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+
+        return response.body(page.content());
+    }
+
+    //Incremental feed for downstream systems: relayed patient events after the sequence in since, oldest first.
+    //Consumers store the sequence of the last event they handled and pass it as since on the next call
+    @GetMapping(value = "/changes", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, BinaryFormatsConfig.APPLICATION_SMILE_VALUE})
+    public ResponseEntity<List<PatientChangeDTO>> changes(
+            @RequestParam(defaultValue = "0") @PositiveOrZero long since,
+            @RequestParam(defaultValue = "" + PatientService.DEFAULT_CHANGES_LIMIT) int limit,
+            UriComponentsBuilder uriBuilder
+    ){
+        PatientChangePageDTO page = patientService.listChanges(since, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT);
+
+        if(page.nextCursor() != null){
+            URI next = uriBuilder
+                    .path("/patients/changes")
+                    .queryParam("since", page.nextCursor())
+                    .queryParam("limit", page.content().size())
+                    .build()
+                    .toUri();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor().toString());
+        }
+
+        return response.body(page.content());
     }
 
+    //Exact match on the email as registered, answered from the in-memory lookup index when it knows the email
+    @GetMapping(value = "/lookup", params = {"email", "!phone"}, produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, BinaryFormatsConfig.APPLICATION_SMILE_VALUE})
+    public ResponseEntity<List<PatientDetailsDTO>> lookupByEmail(@RequestParam @NotBlank String email){
+        return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(patientLookupService.findByEmail(email).stream().toList());
+    }
+
+    //Exact match on the phone digits; a phone can be shared, e.g. by family members
+    @GetMapping(value = "/lookup", params = {"phone", "!email"}, produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, BinaryFormatsConfig.APPLICATION_SMILE_VALUE})
+    public ResponseEntity<List<PatientDetailsDTO>> lookupByPhone(@RequestParam @NotBlank String phone){
+        return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(patientLookupService.findByPhone(phone));
+    }
+
+    //Streams every active patient as one JSON object per line, written while the rows are read
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> export(){
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream, EXPORT_BUFFER_SIZE);
+            patientService.exportActive(dto -> writeLine(out, dto));
+            out.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    //Conditional GETs of a cached patient are answered with 304 without touching the database or Jackson
     @GetMapping("/{id}")
     public ResponseEntity<PatientDetailsDTO> getById(@PathVariable Long id) {
         PatientDetailsDTO dto = patientService.getPatientById(id);
-        return ResponseEntity.ok(dto);
+        return PatientValidators.withValidators(ResponseEntity.ok(), dto).body(dto);
     }
 
+    //If-Match with the ETag of a previous read makes the update fail with 412 when someone else changed the patient meanwhile
     @PutMapping("/{id}")
-    public ResponseEntity<PatientDetailsDTO> update(@PathVariable Long id, @RequestBody @Valid PatientUpdateDTO dto){
-        PatientDetailsDTO updatedDto = patientService.updatePatient(id, dto);
-        return ResponseEntity.ok(updatedDto);
+    public ResponseEntity<PatientDetailsDTO> update(
+            @PathVariable Long id,
+            @RequestBody @Valid PatientUpdateDTO dto,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
+    ){
+        PatientDetailsDTO updatedDto = patientService.updatePatient(id, dto, PatientValidators.expectedVersion(ifMatch));
+        return PatientValidators.withValidators(ResponseEntity.ok(), updatedDto).body(updatedDto);
     }
 
     @DeleteMapping("/{id}")
@@ -60,6 +228,15 @@ public class PatientController {
         return ResponseEntity.noContent().build();
     }
 
+    private void writeLine(OutputStream out, PatientDetailsDTO dto){
+        try {
+            ndjsonWriter.writeValue(out, dto);
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
 }
 
 
@@ -0,0 +1,15 @@
+package br.com.brunolegal.clinic_api.controller;
+
+import br.com.brunolegal.clinic_api.dto.PatientField;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+//Lets ?fields=name,email bind by attribute name instead of the enum constant; unknown names end in 400
+@Component
+class PatientFieldConverter implements Converter<String, PatientField> {
+
+    @Override
+    public PatientField convert(String source){
+        return PatientField.fromAttribute(source);
+    }
+}
@@ -0,0 +1,72 @@
+package br.com.brunolegal.clinic_api.controller;
+
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import br.com.brunolegal.clinic_api.exception.PreconditionFailedException;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+/**
+ * HTTP validators of the patient resources. Spring answers a GET whose {@code If-None-Match} or
+ * {@code If-Modified-Since} matches these headers with 304 before the body is serialized.
+ * <ul>
+ *     <li>A patient's strong ETag is its row version, e.g. {@code "3"}, and Last-Modified its last write</li>
+ *     <li>A page's weak ETag is a hash of the (id, version) pairs it holds and of whether a next page
+ *     exists. It is weak because the same page is served as JSON, CBOR or Smile, gzipped or not, and
+ *     Tomcat does not compress responses with a strong ETag. Pages get no Last-Modified: a patient
+ *     leaving the page does not move any timestamp forward</li>
+ * </ul>
+ */
+final class PatientValidators {
+
+    private PatientValidators(){
+    }
+
+    static <B extends ResponseEntity.HeadersBuilder<B>> B withValidators(B response, PatientDetailsDTO dto){
+        if(dto.version() != null){
+            response.eTag(eTag(dto.version()));
+        }
+        if(dto.updatedAt() != null){
+            response.lastModified(dto.updatedAt());
+        }
+        return response;
+    }
+
+    static <B extends ResponseEntity.HeadersBuilder<B>> B withValidators(B response, List<PatientDetailsDTO> page, boolean hasNext){
+        long hash = hasNext ? 1 : 0;
+        for(PatientDetailsDTO dto : page){
+            if(dto.version() == null){
+                return response;
+            }
+            hash = mix(hash, dto.id());
+            hash = mix(hash, dto.version());
+        }
+        return response.eTag("W/\"" + Long.toHexString(hash) + "\"");
+    }
+
+    //The version an If-Match header asks for, or null when any current version will do ("*" or no header).
+    //Only a single strong ETag of this resource can ever match, anything else fails the precondition
+    static Long expectedVersion(String ifMatch){
+        if(ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")){
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if(tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")){
+            try {
+                return Long.parseLong(tag.substring(1, tag.length() - 1));
+            } catch(NumberFormatException ignored){
+                //not one of our ETags
+            }
+        }
+        throw new PreconditionFailedException("If-Match " + ifMatch + " does not match the current patient");
+    }
+
+    private static String eTag(long version){
+        return "\"" + version + "\"";
+    }
+
+    private static long mix(long hash, long value){
+        hash = (hash ^ value) * 0x100000001b3L;
+        return hash ^ (hash >>> 29);
+    }
+}
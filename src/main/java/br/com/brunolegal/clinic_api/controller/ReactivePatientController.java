@@ -0,0 +1,110 @@
+package br.com.brunolegal.clinic_api.controller;
+
+import br.com.brunolegal.clinic_api.config.BinaryFormatsConfig;
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import br.com.brunolegal.clinic_api.dto.PatientRegistrationDTO;
+import br.com.brunolegal.clinic_api.dto.PatientUpdateDTO;
+import br.com.brunolegal.clinic_api.service.PatientService;
+import br.com.brunolegal.clinic_api.service.ReactivePatientService;
+import jakarta.validation.Valid;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+/**
+ * The five patient endpoints of {@link PatientController} on WebFlux, for the {@code reactive} profile.
+ * Requests wait for the database without holding a thread, so a handful of event-loop threads serve
+ * thousands of concurrent calls. Same paths, DTOs, validators and status codes as the servlet controller.
+ */
+@RestController
+@RequestMapping("/patients")
+@Profile("reactive")
+public class ReactivePatientController {
+    private final ReactivePatientService patientService;
+
+    public ReactivePatientController(ReactivePatientService patientService){
+        this.patientService = patientService;
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<PatientDetailsDTO>> register(
+            @RequestBody @Valid PatientRegistrationDTO dto,
+            UriComponentsBuilder uriBuilder
+    ){
+        return patientService.createPatient(dto)
+                .map(savedDto -> {
+                    URI uri = uriBuilder
+                            .path("/patients/{id}")
+                            .buildAndExpand(savedDto.id())
+                            .toUri();
+                    return ResponseEntity.created(uri).body(savedDto);
+                });
+    }
+
+    //A keyset page as JSON, CBOR or Smile, like the servlet stack. Clients that list application/x-ndjson in
+    //Accept get every active patient after the cursor instead, written as they ask for more: rows are read
+    //one chunk at a time and only when the connection has drained the previous one
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            BinaryFormatsConfig.APPLICATION_SMILE_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<Flux<PatientDetailsDTO>>> listAll(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "" + PatientService.DEFAULT_PAGE_SIZE) int limit,
+            ServerHttpRequest request,
+            UriComponentsBuilder uriBuilder
+    ){
+        if(request.getHeaders().getAccept().stream().anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype)){
+            return Mono.just(ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(patientService.streamActive(after)));
+        }
+
+        return patientService.listPage(after, limit).map(page -> {
+            ResponseEntity.BodyBuilder response = PatientValidators.withValidators(ResponseEntity.ok(), page.content(), page.nextCursor() != null)
+                    .varyBy(HttpHeaders.ACCEPT);
+
+            if(page.nextCursor() != null){
+                URI next = uriBuilder
+                        .path("/patients")
+                        .queryParam("after", page.nextCursor())
+                        .queryParam("limit", page.content().size())
+                        .build()
+                        .toUri();
+                response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+                response.header(PatientController.NEXT_CURSOR_HEADER, page.nextCursor().toString());
+            }
+
+            return response.body(Flux.fromIterable(page.content()));
+        });
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<PatientDetailsDTO>> getById(@PathVariable Long id) {
+        return patientService.getPatientById(id)
+                .map(dto -> PatientValidators.withValidators(ResponseEntity.ok(), dto).body(dto));
+    }
+
+    //If-Match with the ETag of a previous read makes the update fail with 412 when someone else changed the patient meanwhile
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<PatientDetailsDTO>> update(
+            @PathVariable Long id,
+            @RequestBody @Valid PatientUpdateDTO dto,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
+    ){
+        return patientService.updatePatient(id, dto, PatientValidators.expectedVersion(ifMatch))
+                .map(updatedDto -> PatientValidators.withValidators(ResponseEntity.ok(), updatedDto).body(updatedDto));
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> delete(@PathVariable Long id){
+        return patientService.deletePatient(id)
+                .then(Mono.just(ResponseEntity.noContent().build()));
+    }
+}
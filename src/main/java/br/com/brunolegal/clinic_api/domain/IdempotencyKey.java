@@ -0,0 +1,42 @@
+package br.com.brunolegal.clinic_api.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+//A stored response to a request sent with an Idempotency-Key, or a claim on it while status is null.
+//Rows are written with JDBC by IdempotencyKeyRepository, the mapping keeps the table under schema validation
+@Entity
+@Table(name = "idempotency_keys")
+@Getter
+@NoArgsConstructor
+public class IdempotencyKey {
+
+    //the caller's identity and the header value, "ip:10.0.0.7 <Idempotency-Key>"
+    @Id
+    @Column(name = "idempotency_key", length = 512)
+    private String key;
+
+    //SHA-256 of the request body, hex encoded; the key cannot be reused for a different request
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    private Integer status;
+
+    @Column(length = 2048)
+    private String location;
+
+    @Column(length = 4096)
+    private String body;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+}
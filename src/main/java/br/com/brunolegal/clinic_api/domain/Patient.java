@@ -7,17 +7,23 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
 import lombok.*;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
 @Entity
-@Table(name="patients")
+@Table(name="patients", uniqueConstraints = @UniqueConstraint(name = Patient.EMAIL_UNIQUE_CONSTRAINT, columnNames = "email"))
 @Getter
 @Setter
 @NoArgsConstructor
-@AllArgsConstructor
 @EqualsAndHashCode(of = "id")
 public class Patient {
+    //named so a violation can be told apart from other integrity errors
+    public static final String EMAIL_UNIQUE_CONSTRAINT = "uk_patients_email";
 
+    //sequence-backed ids (pooled optimizer, 50 ids per round trip) so Hibernate can batch inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "patients_seq")
+    @SequenceGenerator(name = "patients_seq", sequenceName = "patients_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank //must not be null
@@ -25,7 +31,6 @@ public class Patient {
 
     @NotBlank
     @Email //must be a valid email address
-    @Column(unique = true)
     private String email;
 
     @NotBlank
@@ -34,12 +39,33 @@ public class Patient {
 
     private Boolean active = true;
 
+    //set by the soft delete, null while the patient is active
+    private Instant deletedAt;
+
+    //bumped by every write; the repository's bulk updates increment it themselves
+    @Version
+    private Long version;
+
+    //time of the last write, served as Last-Modified
+    private Instant updatedAt;
+
     public Patient(Long id, String name, String email, String phone) {
+        this(id, name, email, phone, true);
+    }
+
+    public Patient(Long id, String name, String email, String phone, Boolean active) {
         this.id = id;
         this.name = name;
         this.email = email;
         this.phone = phone;
-        this.active = true;
+        this.active = active;
+    }
+
+    @PrePersist
+    void onPersist(){
+        if(updatedAt == null){
+            updatedAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        }
     }
 }
 
@@ -0,0 +1,50 @@
+package br.com.brunolegal.clinic_api.domain;
+
+import br.com.brunolegal.clinic_api.event.PatientChangedEvent;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+//One row of the patient history. Rows are inserted in JDBC batches by PatientAuditLog, the
+//mapping keeps the table under Hibernate's schema validation and lets it be queried
+@Entity
+@Table(name = "patient_audit")
+@Getter
+@NoArgsConstructor
+public class PatientAudit {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long patientId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private PatientChangedEvent.ChangeType action;
+
+    //version of the row after the write
+    @Column(nullable = false)
+    private Long version;
+
+    @Column(nullable = false)
+    private Instant occurredAt;
+
+    //null for registrations
+    @Embedded
+    @AttributeOverride(name = "name", column = @Column(name = "before_name"))
+    @AttributeOverride(name = "email", column = @Column(name = "before_email"))
+    @AttributeOverride(name = "phone", column = @Column(name = "before_phone"))
+    @AttributeOverride(name = "active", column = @Column(name = "before_active"))
+    private PatientSnapshot before;
+
+    @Embedded
+    @AttributeOverride(name = "name", column = @Column(name = "after_name"))
+    @AttributeOverride(name = "email", column = @Column(name = "after_email"))
+    @AttributeOverride(name = "phone", column = @Column(name = "after_phone"))
+    @AttributeOverride(name = "active", column = @Column(name = "after_active"))
+    private PatientSnapshot after;
+}
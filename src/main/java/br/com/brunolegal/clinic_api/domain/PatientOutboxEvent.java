@@ -0,0 +1,71 @@
+package br.com.brunolegal.clinic_api.domain;
+
+import br.com.brunolegal.clinic_api.dto.PatientUpdateDTO;
+import br.com.brunolegal.clinic_api.event.PatientChangedEvent;
+import br.com.brunolegal.clinic_api.event.PatientChangedEvent.ChangeType;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+//One row of the patient outbox. Rows are inserted with JDBC batches by PatientOutboxRepository,
+//the mapping keeps the table under Hibernate's schema validation
+@Entity
+@Table(name = "patient_outbox")
+@Getter
+@NoArgsConstructor
+public class PatientOutboxEvent {
+
+    //taken from the database sequence at insert time, see the V6 migration
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long patientId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private PatientChangedEvent.ChangeType type;
+
+    //version of the row after the write; null for deactivations that did not read it
+    private Long version;
+
+    @Column(nullable = false)
+    private Instant occurredAt;
+
+    //the patient as written, null for deactivations
+    private String name;
+    private String email;
+    private String phone;
+
+    //feed position, null until the relay publishes the event
+    @Column(unique = true)
+    private Long seq;
+
+    private Instant publishedAt;
+
+    private PatientOutboxEvent(Long patientId, ChangeType type, Long version, Instant occurredAt, String name, String email, String phone){
+        this.patientId = patientId;
+        this.type = type;
+        this.version = version;
+        this.occurredAt = occurredAt;
+        this.name = name;
+        this.email = email;
+        this.phone = phone;
+    }
+
+    public static PatientOutboxEvent created(Patient patient){
+        return new PatientOutboxEvent(patient.getId(), ChangeType.CREATED, patient.getVersion(), patient.getUpdatedAt(),
+                patient.getName(), patient.getEmail(), patient.getPhone());
+    }
+
+    public static PatientOutboxEvent updated(Long patientId, PatientUpdateDTO dto, long version, Instant updatedAt){
+        return new PatientOutboxEvent(patientId, ChangeType.UPDATED, version, updatedAt, dto.name(), dto.email(), dto.phone());
+    }
+
+    public static PatientOutboxEvent deactivated(Long patientId, Long version, Instant deletedAt){
+        return new PatientOutboxEvent(patientId, ChangeType.DEACTIVATED, version, deletedAt, null, null, null);
+    }
+}
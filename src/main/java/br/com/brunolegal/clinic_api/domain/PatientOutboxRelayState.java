@@ -0,0 +1,23 @@
+package br.com.brunolegal.clinic_api.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+//The single row holding the last feed sequence number handed out by the outbox relay. Relays lock it
+//for their whole transaction, which is what keeps relays on different nodes from interleaving
+@Entity
+@Table(name = "patient_outbox_relay")
+@Getter
+@NoArgsConstructor
+public class PatientOutboxRelayState {
+
+    @Id
+    private Short id;
+
+    @Column(nullable = false)
+    private Long lastSeq;
+}
@@ -0,0 +1,15 @@
+package br.com.brunolegal.clinic_api.domain;
+
+import jakarta.persistence.Embeddable;
+
+//State of a patient row on one side of a write, as kept in the audit history
+@Embeddable
+public record PatientSnapshot(
+
+        String name,
+        String email,
+        String phone,
+        Boolean active
+
+) {
+}
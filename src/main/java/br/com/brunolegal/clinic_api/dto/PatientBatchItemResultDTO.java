@@ -0,0 +1,33 @@
+package br.com.brunolegal.clinic_api.dto;
+
+/**
+ * Outcome of one entry of a batch registration. {@code index} is the position of the
+ * entry in the request body; {@code id} is only set when the patient was created.
+ */
+public record PatientBatchItemResultDTO(
+
+        int index,
+        Status status,
+        Long id,
+        String message
+
+) {
+
+    public enum Status {
+        CREATED,
+        INVALID,
+        DUPLICATE
+    }
+
+    public static PatientBatchItemResultDTO created(int index, Long id){
+        return new PatientBatchItemResultDTO(index, Status.CREATED, id, null);
+    }
+
+    public static PatientBatchItemResultDTO invalid(int index, String message){
+        return new PatientBatchItemResultDTO(index, Status.INVALID, null, message);
+    }
+
+    public static PatientBatchItemResultDTO duplicate(int index, String message){
+        return new PatientBatchItemResultDTO(index, Status.DUPLICATE, null, message);
+    }
+}
@@ -0,0 +1,13 @@
+package br.com.brunolegal.clinic_api.dto;
+
+import java.util.List;
+
+public record PatientBatchResultDTO(
+
+        int created,
+        int rejected,
+        List<PatientBatchItemResultDTO> items
+
+) {
+
+}
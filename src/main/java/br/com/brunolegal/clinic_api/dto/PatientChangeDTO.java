@@ -0,0 +1,24 @@
+package br.com.brunolegal.clinic_api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+//One event of the patient change feed, as served by GET /patients/changes and handed to the outbox sinks.
+//sequence is gap-free and increasing; eventId stays the same if an event is ever delivered twice.
+//name, email and phone are the patient as written and are omitted for PatientDeactivated
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PatientChangeDTO(
+
+        Long sequence,
+        Long eventId,
+        String type,
+        Long patientId,
+        Long version,
+        Instant occurredAt,
+        String name,
+        String email,
+        String phone
+
+) {
+}
@@ -0,0 +1,16 @@
+package br.com.brunolegal.clinic_api.dto;
+
+import java.util.List;
+
+/**
+ * One page of the change feed. {@code nextCursor} is the sequence to pass as {@code since}
+ * to fetch the following page, or {@code null} when the feed has no more events yet.
+ */
+public record PatientChangePageDTO(
+
+        List<PatientChangeDTO> content,
+        Long nextCursor
+
+) {
+
+}
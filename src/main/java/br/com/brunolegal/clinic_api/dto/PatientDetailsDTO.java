@@ -1,13 +1,26 @@
 package br.com.brunolegal.clinic_api.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
+import java.time.Instant;
+
+//version and updatedAt travel in the ETag and Last-Modified headers, not in the body;
+//they are null where the row version is not read, e.g. in search results.
+//Fields left out by GET /patients?fields= are null and omitted from the JSON
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record PatientDetailsDTO(
 
         Long id,
         String name,
         String email,
-        String phone
+        String phone,
+        @JsonIgnore Long version,
+        @JsonIgnore Instant updatedAt
 
 ) {
 
+    public PatientDetailsDTO(Long id, String name, String email, String phone){
+        this(id, name, email, phone, null, null);
+    }
 }
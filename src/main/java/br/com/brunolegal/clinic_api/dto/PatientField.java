@@ -0,0 +1,30 @@
+package br.com.brunolegal.clinic_api.dto;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+//Optional patient attributes a client can pick with ?fields=; id is always returned
+public enum PatientField {
+    NAME("name"),
+    EMAIL("email"),
+    PHONE("phone");
+
+    private final String attribute;
+
+    PatientField(String attribute){
+        this.attribute = attribute;
+    }
+
+    //Name of the Patient entity attribute, also the JSON property
+    public String attribute(){
+        return attribute;
+    }
+
+    public static PatientField fromAttribute(String attribute){
+        String normalized = attribute.trim().toLowerCase(Locale.ROOT);
+        return Arrays.stream(values())
+                .filter(field -> field.attribute.equals(normalized))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown patient field: " + attribute));
+    }
+}
@@ -0,0 +1,16 @@
+package br.com.brunolegal.clinic_api.dto;
+
+import java.util.List;
+
+/**
+ * One keyset page of patients. {@code nextCursor} is the id to pass as {@code after}
+ * to fetch the following page, or {@code null} when this is the last page.
+ */
+public record PatientPageDTO(
+
+        List<PatientDetailsDTO> content,
+        Long nextCursor
+
+) {
+
+}
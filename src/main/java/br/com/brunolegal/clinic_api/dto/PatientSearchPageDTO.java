@@ -0,0 +1,16 @@
+package br.com.brunolegal.clinic_api.dto;
+
+import java.util.List;
+
+/**
+ * One page of ranked search results. {@code nextCursor} is the opaque value to pass as
+ * {@code after} to fetch the following page, or {@code null} when this is the last page.
+ */
+public record PatientSearchPageDTO(
+
+        List<PatientDetailsDTO> content,
+        String nextCursor
+
+) {
+
+}
@@ -0,0 +1,46 @@
+package br.com.brunolegal.clinic_api.event;
+
+/**
+ * Published by {@code PatientService} whenever a patient is written. Listeners that must only
+ * react to committed data use {@code @TransactionalEventListener}.
+ * <p>
+ * Registrations and updates carry the email and phone as written, deactivations only the id.
+ */
+public record PatientChangedEvent(
+
+        ChangeType type,
+        Long patientId,
+        String email,
+        String phone
+
+) {
+
+    public static PatientChangedEvent created(Long patientId, String email, String phone){
+        return new PatientChangedEvent(ChangeType.CREATED, patientId, email, phone);
+    }
+
+    public static PatientChangedEvent updated(Long patientId, String email, String phone){
+        return new PatientChangedEvent(ChangeType.UPDATED, patientId, email, phone);
+    }
+
+    public static PatientChangedEvent deactivated(Long patientId){
+        return new PatientChangedEvent(ChangeType.DEACTIVATED, patientId, null, null);
+    }
+
+    public enum ChangeType {
+        CREATED("PatientCreated"),
+        UPDATED("PatientUpdated"),
+        DEACTIVATED("PatientDeactivated");
+
+        private final String eventName;
+
+        ChangeType(String eventName){
+            this.eventName = eventName;
+        }
+
+        //Name of the event published by the outbox relay and served by GET /patients/changes
+        public String eventName(){
+            return eventName;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package br.com.brunolegal.clinic_api.exception;
+
+//The change feed no longer holds the events after the requested sequence, the consumer has to resync
+public class ChangesExpiredException extends RuntimeException{
+    public ChangesExpiredException(String message){
+        super(message);
+    }
+}
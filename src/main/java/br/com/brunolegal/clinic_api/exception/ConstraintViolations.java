@@ -0,0 +1,28 @@
+package br.com.brunolegal.clinic_api.exception;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.Locale;
+
+/**
+ * Helpers to recognise which database constraint a {@link DataIntegrityViolationException} comes from.
+ */
+public final class ConstraintViolations {
+
+    private ConstraintViolations(){
+    }
+
+    //Drivers report constraint names with different casing and decoration (H2 appends the index
+    //definition), so the name is matched case-insensitively as a substring
+    public static boolean isViolationOf(DataIntegrityViolationException ex, String constraintName){
+        String expected = constraintName.toLowerCase(Locale.ROOT);
+        for(Throwable cause = ex; cause != null; cause = cause.getCause()){
+            if(cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null){
+                return violation.getConstraintName().toLowerCase(Locale.ROOT).contains(expected);
+            }
+        }
+        String message = ex.getMostSpecificCause().getMessage();
+        return message != null && message.toLowerCase(Locale.ROOT).contains(expected);
+    }
+}
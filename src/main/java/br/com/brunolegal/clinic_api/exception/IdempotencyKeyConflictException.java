@@ -0,0 +1,7 @@
+package br.com.brunolegal.clinic_api.exception;
+
+public class IdempotencyKeyConflictException extends RuntimeException{
+    public IdempotencyKeyConflictException(String message){
+        super(message);
+    }
+}
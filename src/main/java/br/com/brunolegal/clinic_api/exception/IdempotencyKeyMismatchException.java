@@ -0,0 +1,7 @@
+package br.com.brunolegal.clinic_api.exception;
+
+public class IdempotencyKeyMismatchException extends RuntimeException{
+    public IdempotencyKeyMismatchException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package br.com.brunolegal.clinic_api.exception;
+
+public class InvalidCursorException extends RuntimeException{
+    public InvalidCursorException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,31 @@
+package br.com.brunolegal.clinic_api.idempotency;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Settings of the Idempotency-Key response store.
+ *
+ * @param enabled            honours the Idempotency-Key header on POST /patients; when off the header is ignored
+ * @param ttl                how long a response is replayed for its key
+ * @param maxEntries         responses kept in memory; older ones are still found in the database
+ * @param waitTimeout        how long a request waits for another one with the same key to finish before a 409
+ * @param pollInterval       how often a request waiting on another node checks the database
+ * @param inProgressTimeout  a claim older than this is taken to belong to a node that died, and is taken over
+ * @param purgeInterval      how often expired keys are deleted from the database
+ */
+@ConfigurationProperties(prefix = "clinic.idempotency")
+public record IdempotencyProperties(
+
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("24h") Duration ttl,
+        @DefaultValue("10000") int maxEntries,
+        @DefaultValue("10s") Duration waitTimeout,
+        @DefaultValue("50ms") Duration pollInterval,
+        @DefaultValue("1m") Duration inProgressTimeout,
+        @DefaultValue("10m") Duration purgeInterval
+
+) {
+}
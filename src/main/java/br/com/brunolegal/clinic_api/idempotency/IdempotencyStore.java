@@ -0,0 +1,242 @@
+package br.com.brunolegal.clinic_api.idempotency;
+
+import br.com.brunolegal.clinic_api.exception.IdempotencyKeyConflictException;
+import br.com.brunolegal.clinic_api.exception.IdempotencyKeyMismatchException;
+import br.com.brunolegal.clinic_api.repository.IdempotencyKeyRepository;
+import br.com.brunolegal.clinic_api.repository.IdempotencyKeyRepository.StoredKey;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Runs a request sent with an {@code Idempotency-Key} at most once per key and answers every repeat
+ * with the first response (status, {@code Location}, body), marked with {@code Idempotent-Replayed: true}.
+ * <p>
+ * Responses are looked up in a bounded Caffeine cache first, so a retry on the same node costs no
+ * round trip. Requests on this node racing on one key coalesce: one runs, the others wait for its
+ * response. Across nodes the key is claimed in {@code idempotency_keys} before the request runs, and a
+ * node that finds it claimed polls for the response until {@code wait-timeout}, then answers 409.
+ * <p>
+ * Only successful responses are kept. A request that fails gives its key back, so the client's retry
+ * runs again; for a registration that means the retry meets the unique email check, as before. A key
+ * sent again with a different body answers 422.
+ * <p>
+ * Keys are scoped by the caller ({@code ClientIdentityResolver}): the same key sent by two clients
+ * names two requests, and one client cannot replay another's response by guessing its key.
+ */
+@Slf4j
+@Component
+@Profile("!reactive")
+public class IdempotencyStore {
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    //Metric name, tagged with the result (executed, replayed, coalesced, conflict, mismatch)
+    public static final String REQUESTS_COUNTER = "clinic.idempotency.requests";
+
+    private final IdempotencyKeyRepository repository;
+    private final IdempotencyProperties properties;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, IdempotentResponse> responses;
+    //requests of this node currently running, by key; completed with null when nothing was stored
+    private final ConcurrentMap<String, CompletableFuture<IdempotentResponse>> running = new ConcurrentHashMap<>();
+    private final AtomicLong nextPurgeMillis = new AtomicLong();
+
+    public IdempotencyStore(IdempotencyKeyRepository repository, IdempotencyProperties properties, ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry){
+        this.repository = repository;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(properties.maxEntries())
+                .expireAfterWrite(properties.ttl())
+                .build();
+    }
+
+    public <T> ResponseEntity<T> execute(String client, String idempotencyKey, Object request, Class<T> bodyType,
+                                         Supplier<ResponseEntity<T>> action){
+        if(!properties.enabled()){
+            return action.get();
+        }
+        String key = client + " " + idempotencyKey;
+        String requestHash = hash(request);
+        long deadline = System.nanoTime() + properties.waitTimeout().toNanos();
+        while(true){
+            IdempotentResponse cached = responses.getIfPresent(key);
+            if(cached != null){
+                return replay(cached, requestHash, bodyType, "replayed");
+            }
+            CompletableFuture<IdempotentResponse> mine = new CompletableFuture<>();
+            CompletableFuture<IdempotentResponse> other = running.putIfAbsent(key, mine);
+            if(other == null){
+                try {
+                    return lead(key, requestHash, bodyType, action, mine, deadline);
+                } finally {
+                    running.remove(key, mine);
+                    mine.complete(null);
+                }
+            }
+            IdempotentResponse coalesced = await(other, deadline);
+            if(coalesced != null){
+                return replay(coalesced, requestHash, bodyType, "coalesced");
+            }
+            //the other request failed and kept nothing: take our turn
+        }
+    }
+
+    //Claims the key in the database and runs the request, or replays what another node stored for it
+    private <T> ResponseEntity<T> lead(String key, String requestHash, Class<T> bodyType, Supplier<ResponseEntity<T>> action,
+                                       CompletableFuture<IdempotentResponse> mine, long deadline){
+        while(true){
+            Instant now = Instant.now();
+            purgeIfDue(now);
+            if(claim(key, requestHash, now)){
+                return run(key, requestHash, action, mine);
+            }
+            Optional<StoredKey> stored = repository.find(key);
+            if(stored.isPresent() && !stored.get().requestHash().equals(requestHash)){
+                throw mismatch();
+            }
+            if(stored.isPresent() && stored.get().response() != null){
+                IdempotentResponse response = stored.get().response();
+                responses.put(key, response);
+                mine.complete(response);
+                return replay(response, requestHash, bodyType, "replayed");
+            }
+            if(System.nanoTime() - deadline >= 0){
+                throw conflict();
+            }
+            LockSupport.parkNanos(properties.pollInterval().toNanos());
+        }
+    }
+
+    private <T> ResponseEntity<T> run(String key, String requestHash, Supplier<ResponseEntity<T>> action,
+                                      CompletableFuture<IdempotentResponse> mine){
+        ResponseEntity<T> response;
+        try {
+            response = action.get();
+        } catch(RuntimeException e){
+            repository.release(key);
+            throw e;
+        }
+        if(!response.getStatusCode().is2xxSuccessful()){
+            repository.release(key);
+            return response;
+        }
+        URI location = response.getHeaders().getLocation();
+        IdempotentResponse stored = new IdempotentResponse(requestHash, response.getStatusCode().value(),
+                location == null ? null : location.toString(), toJson(response.getBody()));
+        responses.put(key, stored);
+        mine.complete(stored);
+        try {
+            repository.complete(key, stored);
+        } catch(DataAccessException e){
+            //the request did succeed; this node still replays it, others wait for the claim to time out
+            log.warn("Could not store the response for Idempotency-Key {}", key, e);
+        }
+        meterRegistry.counter(REQUESTS_COUNTER, "result", "executed").increment();
+        return response;
+    }
+
+    //An expired key, or a claim left by a node that died, is deleted and claimed again
+    private boolean claim(String key, String requestHash, Instant now){
+        Instant expiresAt = now.plus(properties.ttl());
+        if(repository.claim(key, requestHash, now, expiresAt)){
+            return true;
+        }
+        return repository.deleteStale(key, now, now.minus(properties.inProgressTimeout()))
+                && repository.claim(key, requestHash, now, expiresAt);
+    }
+
+    private IdempotentResponse await(CompletableFuture<IdempotentResponse> other, long deadline){
+        try {
+            return other.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch(TimeoutException e){
+            throw conflict();
+        } catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw conflict();
+        } catch(ExecutionException e){
+            //never completed exceptionally
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private <T> ResponseEntity<T> replay(IdempotentResponse response, String requestHash, Class<T> bodyType, String result){
+        if(!response.requestHash().equals(requestHash)){
+            throw mismatch();
+        }
+        meterRegistry.counter(REQUESTS_COUNTER, "result", result).increment();
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.status()).header(REPLAYED_HEADER, "true");
+        if(response.location() != null){
+            builder.location(URI.create(response.location()));
+        }
+        try {
+            return builder.body(response.body() == null ? null : objectMapper.readValue(response.body(), bodyType));
+        } catch(JsonProcessingException e){
+            throw new IllegalStateException("Stored response for an Idempotency-Key is not valid JSON", e);
+        }
+    }
+
+    private void purgeIfDue(Instant now){
+        long due = nextPurgeMillis.get();
+        if(now.toEpochMilli() < due || !nextPurgeMillis.compareAndSet(due, now.toEpochMilli() + properties.purgeInterval().toMillis())){
+            return;
+        }
+        int purged = repository.deleteExpired(now);
+        if(purged > 0){
+            log.debug("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    private String hash(Object request){
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(objectMapper.writeValueAsBytes(request)));
+        } catch(NoSuchAlgorithmException | JsonProcessingException e){
+            throw new IllegalStateException("Could not fingerprint the request", e);
+        }
+    }
+
+    private String toJson(Object body){
+        try {
+            return body == null ? null : objectMapper.writeValueAsString(body);
+        } catch(JsonProcessingException e){
+            throw new IllegalStateException("Could not store the response for an Idempotency-Key", e);
+        }
+    }
+
+    private IdempotencyKeyMismatchException mismatch(){
+        meterRegistry.counter(REQUESTS_COUNTER, "result", "mismatch").increment();
+        return new IdempotencyKeyMismatchException("Idempotency-Key was already used for a different request");
+    }
+
+    private IdempotencyKeyConflictException conflict(){
+        meterRegistry.counter(REQUESTS_COUNTER, "result", "conflict").increment();
+        return new IdempotencyKeyConflictException("A request with this Idempotency-Key is still in progress, retry later");
+    }
+}
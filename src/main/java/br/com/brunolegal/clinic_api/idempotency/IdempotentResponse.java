@@ -0,0 +1,12 @@
+package br.com.brunolegal.clinic_api.idempotency;
+
+//The first response given to a request with an Idempotency-Key; body is the JSON that was sent
+public record IdempotentResponse(
+
+        String requestHash,
+        int status,
+        String location,
+        String body
+
+) {
+}
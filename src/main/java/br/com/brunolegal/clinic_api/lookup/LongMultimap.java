@@ -0,0 +1,159 @@
+package br.com.brunolegal.clinic_api.lookup;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing multimap from long keys to long values, stored in two parallel primitive
+ * arrays: 16 bytes per entry and no boxing, instead of the ~100 bytes a {@code HashMap<String, Long>}
+ * entry costs. Linear probing, deletion by backward shift (no tombstones), so lookups stay
+ * short after heavy churn. Key 0 marks an empty slot and is not allowed.
+ * <p>
+ * Not thread-safe; {@link PatientLookupIndex} guards it with a read/write lock.
+ */
+final class LongMultimap {
+    private static final long[] NO_VALUES = new long[0];
+    private static final int MIN_CAPACITY = 16;
+    private static final float MAX_LOAD = 0.6f;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private int mask;
+
+    LongMultimap(int expectedEntries){
+        int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit((int) Math.ceil(expectedEntries / MAX_LOAD)) << 1);
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    int size(){
+        return size;
+    }
+
+    //Adds the pair unless it is already present
+    void put(long key, long value){
+        checkKey(key);
+        int slot = slot(key);
+        while(keys[slot] != 0){
+            if(keys[slot] == key && values[slot] == value){
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if(++size > keys.length * MAX_LOAD){
+            resize();
+        }
+    }
+
+    void remove(long key, long value){
+        checkKey(key);
+        int slot = slot(key);
+        while(keys[slot] != 0){
+            if(keys[slot] == key && values[slot] == value){
+                deleteAt(slot);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    //Removes every value of the key and returns the first one removed, or 0 when the key was absent
+    long removeAll(long key){
+        checkKey(key);
+        long removed = 0;
+        int slot = slot(key);
+        while(keys[slot] != 0){
+            if(keys[slot] == key){
+                if(removed == 0){
+                    removed = values[slot];
+                }
+                //the next entry may have shifted into this slot, look at it again
+                deleteAt(slot);
+                continue;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return removed;
+    }
+
+    //First value found for the key, or 0 when absent
+    long get(long key){
+        checkKey(key);
+        int slot = slot(key);
+        while(keys[slot] != 0){
+            if(keys[slot] == key){
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    long[] getAll(long key){
+        checkKey(key);
+        long[] found = NO_VALUES;
+        int count = 0;
+        int slot = slot(key);
+        while(keys[slot] != 0){
+            if(keys[slot] == key){
+                if(count == found.length){
+                    found = Arrays.copyOf(found, Math.max(2, count * 2));
+                }
+                found[count++] = values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return count == found.length ? found : Arrays.copyOf(found, count);
+    }
+
+    private void deleteAt(int slot){
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        //pull back every entry of the probe run that may no longer be reachable past the hole
+        while(keys[next] != 0){
+            int home = slot(keys[next]);
+            if(((next - home) & mask) >= ((next - hole) & mask)){
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = 0;
+        values[hole] = 0;
+        size--;
+    }
+
+    private void resize(){
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldValues.length * 2];
+        mask = keys.length - 1;
+        for(int i = 0; i < oldKeys.length; i++){
+            if(oldKeys[i] != 0){
+                int slot = slot(oldKeys[i]);
+                while(keys[slot] != 0){
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private int slot(long key){
+        //keys are already well mixed hashes or sequential ids; fold and spread the high bits
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static void checkKey(long key){
+        if(key == 0){
+            throw new IllegalArgumentException("0 is reserved for empty slots");
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package br.com.brunolegal.clinic_api.lookup;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings of the in-memory email/phone index.
+ *
+ * @param enabled          warms and maintains the index; when off every lookup goes to the database
+ * @param warmupFetchSize  rows fetched per round trip while the index is loaded from the patients table
+ */
+@ConfigurationProperties(prefix = "clinic.lookup-index")
+public record LookupIndexProperties(
+
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("5000") int warmupFetchSize
+
+) {
+}
@@ -0,0 +1,335 @@
+package br.com.brunolegal.clinic_api.lookup;
+
+import br.com.brunolegal.clinic_api.event.PatientChangedEvent;
+import br.com.brunolegal.clinic_api.routing.ReadRouting;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process index from email and phone to patient id, so existence checks and reception-desk
+ * lookups do not need a database round trip.
+ * <p>
+ * Strings are not kept: each email and phone is reduced to a 64-bit hash and stored with the id in
+ * primitive {@link LongMultimap}s, about 110 bytes per patient for all four maps. Two different
+ * values sharing a hash is possible but unlikely (around 1 in 10^7 for a million patients), and
+ * callers re-check the row they get back.
+ * <p>
+ * Keys are the values exactly as stored: the unique constraint on email is case-sensitive and phones
+ * are validated to digits only. Emails of inactive patients stay in the index because the constraint
+ * still covers them; phones are only kept for active patients.
+ * <p>
+ * The index is loaded from the patients table before the web server starts and then follows
+ * committed writes of this node through {@link PatientChangedEvent}. Writes of other nodes reach it
+ * through {@link #refresh(long)} when the cache invalidation bus is on; registrations are not
+ * announced, so a miss is never final and callers fall back to the database.
+ */
+@Slf4j
+@Component
+@Profile("!reactive")
+public class PatientLookupIndex implements SmartLifecycle {
+    //Metric names, tagged with the index field (email, phone) and the lookup result (hit, miss, unavailable)
+    public static final String LOOKUPS_COUNTER = "clinic.lookup.index.requests";
+    public static final String SIZE_GAUGE = "clinic.lookup.index.size";
+
+    private static final long[] NO_IDS = new long[0];
+    private static final String SELECT_ALL = "SELECT id, email, phone, active FROM patients";
+    private static final String SELECT_ONE = SELECT_ALL + " WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final LookupIndexProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private LongMultimap idByEmail = new LongMultimap(0);
+    private LongMultimap idsByPhone = new LongMultimap(0);
+    private LongMultimap emailById = new LongMultimap(0);
+    private LongMultimap phoneById = new LongMultimap(0);
+    //writes applied while a rebuild is loading, replayed on top of the loaded snapshot
+    private List<Entry> pendingDuringRebuild;
+    private volatile boolean ready;
+    private volatile boolean running;
+
+    public PatientLookupIndex(DataSource dataSource, PlatformTransactionManager transactionManager,
+                              LookupIndexProperties properties, MeterRegistry meterRegistry){
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(properties.warmupFetchSize());
+        //Postgres only streams with a cursor inside a transaction, otherwise the whole table is buffered
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder(SIZE_GAUGE, this, PatientLookupIndex::size).register(meterRegistry);
+    }
+
+    //Loaded before the web server starts accepting requests
+    @Override
+    public int getPhase(){
+        return SmartLifecycle.DEFAULT_PHASE - 2048;
+    }
+
+    @Override
+    public void start(){
+        running = true;
+        if(properties.enabled()){
+            rebuild();
+        }
+    }
+
+    @Override
+    public void stop(){
+        running = false;
+        ready = false;
+    }
+
+    @Override
+    public boolean isRunning(){
+        return running;
+    }
+
+    //Whether lookups are answered from memory; before the first load, or when disabled, everything is a miss
+    public boolean isReady(){
+        return ready;
+    }
+
+    public int size(){
+        lock.readLock().lock();
+        try {
+            return emailById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Id of the patient, active or not, holding the email; empty when unknown to the index
+    public OptionalLong findIdByEmail(String email){
+        if(!ready || email == null){
+            count("email", "unavailable");
+            return OptionalLong.empty();
+        }
+        long id;
+        lock.readLock().lock();
+        try {
+            id = idByEmail.get(hash(email));
+        } finally {
+            lock.readLock().unlock();
+        }
+        count("email", id == 0 ? "miss" : "hit");
+        return id == 0 ? OptionalLong.empty() : OptionalLong.of(id);
+    }
+
+    //Ids of the active patients with the phone, oldest first; empty when unknown to the index
+    public long[] findIdsByPhone(String phone){
+        if(!ready || phone == null){
+            count("phone", "unavailable");
+            return NO_IDS;
+        }
+        long[] ids;
+        lock.readLock().lock();
+        try {
+            ids = idsByPhone.getAll(hash(phone));
+        } finally {
+            lock.readLock().unlock();
+        }
+        Arrays.sort(ids);
+        count("phone", ids.length == 0 ? "miss" : "hit");
+        return ids;
+    }
+
+    //Follows this node's committed writes; rolled back writes never reach the index
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPatientChanged(PatientChangedEvent event){
+        switch(event.type()){
+            case CREATED, UPDATED -> apply(event.patientId(), event.email(), event.phone(), true);
+            case DEACTIVATED -> deactivate(event.patientId());
+        }
+    }
+
+    //Records a patient row as it is in the database
+    public void apply(long id, String email, String phone, boolean active){
+        withWriteLock(new Entry(id, email, phone, active));
+    }
+
+    //Reloads one patient from the database, for writes announced by other nodes
+    public void refresh(long id){
+        if(!properties.enabled()){
+            return;
+        }
+        List<Entry> rows;
+        try {
+            rows = jdbcTemplate.query(SELECT_ONE, (rs, rowNum) ->
+                    new Entry(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getBoolean(4)), id);
+        } catch(DataAccessException e){
+            //a stale entry only costs a database lookup, callers re-check what the index returns
+            log.warn("Could not refresh patient {} in the lookup index", id, e);
+            return;
+        }
+        if(rows.isEmpty()){
+            remove(id);
+        } else {
+            Entry row = rows.get(0);
+            apply(row.id(), row.email(), row.phone(), row.active());
+        }
+    }
+
+    //Reloads the whole table into fresh maps and swaps them in; lookups keep using the old maps meanwhile
+    public synchronized void rebuild(){
+        if(!properties.enabled()){
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            pendingDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long started = System.nanoTime();
+        Maps loaded;
+        try {
+            //never from a read replica: writes it has not replayed yet would be missing until the next rebuild
+            loaded = ReadRouting.onPrimary(() -> readOnlyTransaction.execute(status -> load()));
+        } catch(RuntimeException e){
+            lock.writeLock().lock();
+            try {
+                pendingDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.warn("Could not load the patient lookup index, lookups will use the database", e);
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            idByEmail = loaded.idByEmail();
+            idsByPhone = loaded.idsByPhone();
+            emailById = loaded.emailById();
+            phoneById = loaded.phoneById();
+            for(Entry change : pendingDuringRebuild){
+                put(change);
+            }
+            pendingDuringRebuild = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Patient lookup index loaded {} patients in {} ms", size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private Maps load(){
+        Integer count = jdbcTemplate.queryForObject("SELECT count(*) FROM patients", Integer.class);
+        int expected = count == null ? 0 : count;
+        Maps maps = new Maps(new LongMultimap(expected), new LongMultimap(expected),
+                new LongMultimap(expected), new LongMultimap(expected));
+        jdbcTemplate.query(SELECT_ALL, rs -> {
+            long id = rs.getLong(1);
+            long email = hash(rs.getString(2));
+            maps.idByEmail().put(email, id);
+            maps.emailById().put(id, email);
+            if(rs.getBoolean(4)){
+                long phone = hash(rs.getString(3));
+                maps.idsByPhone().put(phone, id);
+                maps.phoneById().put(id, phone);
+            }
+        });
+        return maps;
+    }
+
+    private void deactivate(long id){
+        withWriteLock(new Entry(id, null, null, false));
+    }
+
+    private void remove(long id){
+        withWriteLock(new Entry(id, null, null, false, true));
+    }
+
+    private void withWriteLock(Entry change){
+        if(!properties.enabled()){
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            put(change);
+            if(pendingDuringRebuild != null){
+                pendingDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    //Must hold the write lock
+    private void put(Entry change){
+        long id = change.id();
+        long oldPhone = phoneById.removeAll(id);
+        if(oldPhone != 0){
+            idsByPhone.remove(oldPhone, id);
+        }
+        if(change.removed() || change.email() != null){
+            long oldEmail = emailById.removeAll(id);
+            if(oldEmail != 0){
+                idByEmail.remove(oldEmail, id);
+            }
+        }
+        if(change.email() != null){
+            long email = hash(change.email());
+            //the unique constraint makes the email key single-valued
+            idByEmail.removeAll(email);
+            idByEmail.put(email, id);
+            emailById.put(id, email);
+        }
+        if(change.active() && change.phone() != null){
+            long phone = hash(change.phone());
+            idsByPhone.put(phone, id);
+            phoneById.put(id, phone);
+        }
+    }
+
+    private void count(String field, String result){
+        meterRegistry.counter(LOOKUPS_COUNTER, "field", field, "result", result).increment();
+    }
+
+    //FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mixer; 0 is reserved by LongMultimap
+    static long hash(String value){
+        long h = 0xcbf29ce484222325L;
+        for(byte b : value.getBytes(StandardCharsets.UTF_8)){
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    private record Entry(long id, String email, String phone, boolean active, boolean removed) {
+        Entry(long id, String email, String phone, boolean active){
+            this(id, email, phone, active, false);
+        }
+    }
+
+    private record Maps(LongMultimap idByEmail, LongMultimap idsByPhone, LongMultimap emailById, LongMultimap phoneById) {
+    }
+}
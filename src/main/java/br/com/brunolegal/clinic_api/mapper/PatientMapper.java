@@ -3,8 +3,11 @@ package br.com.brunolegal.clinic_api.mapper;
 import br.com.brunolegal.clinic_api.domain.Patient;
 import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
 import br.com.brunolegal.clinic_api.dto.PatientRegistrationDTO;
+import br.com.brunolegal.clinic_api.dto.PatientUpdateDTO;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
+
 @Component
 public class PatientMapper {
 
@@ -18,6 +21,11 @@ public class PatientMapper {
     }
 
     public PatientDetailsDTO toDetailsDto(Patient patient){
-        return new PatientDetailsDTO(patient.getId(), patient.getName(), patient.getEmail(), patient.getPhone());
+        return new PatientDetailsDTO(patient.getId(), patient.getName(), patient.getEmail(), patient.getPhone(),
+                patient.getVersion(), patient.getUpdatedAt());
+    }
+
+    public PatientDetailsDTO toDetailsDto(Long id, PatientUpdateDTO dto, Long version, Instant updatedAt){
+        return new PatientDetailsDTO(id, dto.name(), dto.email(), dto.phone(), version, updatedAt);
     }
 }
@@ -0,0 +1,58 @@
+package br.com.brunolegal.clinic_api.outbox;
+
+import br.com.brunolegal.clinic_api.dto.PatientChangeDTO;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends every event as one JSON line to {@code clinic.outbox.file-path}. A batch is written with
+ * one call and synced to disk before the relay commits, so a relayed event is never missing from
+ * the file; a batch retried after a failed commit can show up twice, with the same event ids.
+ * Several nodes must not share one file.
+ */
+@Component
+@ConditionalOnProperty(prefix = "clinic.outbox", name = "sink", havingValue = "file")
+@Profile("!reactive")
+public class FileLogPatientEventSink implements PatientEventSink, AutoCloseable {
+    private final ObjectWriter writer;
+    private final FileChannel channel;
+
+    public FileLogPatientEventSink(OutboxProperties properties, ObjectMapper objectMapper) throws IOException {
+        this.writer = objectMapper.writerFor(PatientChangeDTO.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        Path path = properties.filePath().toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public synchronized void publish(List<PatientChangeDTO> events) throws IOException {
+        ByteArrayOutputStream lines = new ByteArrayOutputStream(events.size() * 256);
+        for(PatientChangeDTO event : events){
+            writer.writeValue(lines, event);
+            lines.write('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+        while(buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
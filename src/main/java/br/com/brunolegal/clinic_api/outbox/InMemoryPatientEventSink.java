@@ -0,0 +1,41 @@
+package br.com.brunolegal.clinic_api.outbox;
+
+import br.com.brunolegal.clinic_api.dto.PatientChangeDTO;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Local stand-in for a message broker: keeps the latest {@code clinic.outbox.memory-capacity} events,
+ * oldest first. Lost on restart, for development and tests.
+ */
+@Component
+@ConditionalOnProperty(prefix = "clinic.outbox", name = "sink", havingValue = "memory", matchIfMissing = true)
+@Profile("!reactive")
+public class InMemoryPatientEventSink implements PatientEventSink {
+    private final int capacity;
+    private final Deque<PatientChangeDTO> events;
+
+    public InMemoryPatientEventSink(OutboxProperties properties){
+        this.capacity = properties.memoryCapacity();
+        this.events = new ArrayDeque<>(Math.min(capacity, 1024));
+    }
+
+    @Override
+    public synchronized void publish(List<PatientChangeDTO> published){
+        for(PatientChangeDTO event : published){
+            if(events.size() == capacity){
+                events.removeFirst();
+            }
+            events.addLast(event);
+        }
+    }
+
+    public synchronized List<PatientChangeDTO> events(){
+        return List.copyOf(events);
+    }
+}
@@ -0,0 +1,44 @@
+package br.com.brunolegal.clinic_api.outbox;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of the patient outbox, its relay and the change feed.
+ *
+ * @param enabled        writes an outbox row with every create, update and delete and runs the relay
+ * @param sink           where the relay publishes events
+ * @param pollInterval   how often the relay looks for events written by other nodes; this node's own
+ *                       writes wake it up right after they commit
+ * @param batchSize      events numbered and published per relay transaction
+ * @param retention      how long relayed events stay readable through GET /patients/changes
+ * @param retryBackoff   first delay before a failed relay batch is retried
+ * @param maxRetryBackoff upper bound of the doubling retry delay
+ * @param memoryCapacity events kept by the {@code memory} sink
+ * @param filePath       NDJSON file the {@code file} sink appends to
+ */
+@ConfigurationProperties(prefix = "clinic.outbox")
+public record OutboxProperties(
+
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("MEMORY") Sink sink,
+        @DefaultValue("1s") Duration pollInterval,
+        @DefaultValue("500") int batchSize,
+        @DefaultValue("7d") Duration retention,
+        @DefaultValue("500ms") Duration retryBackoff,
+        @DefaultValue("30s") Duration maxRetryBackoff,
+        @DefaultValue("10000") int memoryCapacity,
+        @DefaultValue("data/patient-events.ndjson") Path filePath
+
+) {
+
+    public enum Sink {
+        //keeps the latest events in memory, a local stand-in for a broker
+        MEMORY,
+        //appends one JSON event per line to filePath and syncs it to disk per batch
+        FILE
+    }
+}
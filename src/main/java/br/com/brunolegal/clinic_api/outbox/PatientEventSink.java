@@ -0,0 +1,16 @@
+package br.com.brunolegal.clinic_api.outbox;
+
+import br.com.brunolegal.clinic_api.dto.PatientChangeDTO;
+
+import java.util.List;
+
+/**
+ * Destination of the events relayed from the patient outbox. Delivery is at least once: the relay
+ * publishes inside its transaction, so a batch whose commit fails is published again. Consumers
+ * de-duplicate on {@link PatientChangeDTO#eventId()}.
+ */
+public interface PatientEventSink {
+
+    //Publishes the events in sequence order; throwing leaves them in the outbox for the next attempt
+    void publish(List<PatientChangeDTO> events) throws Exception;
+}
@@ -0,0 +1,154 @@
+package br.com.brunolegal.clinic_api.outbox;
+
+import br.com.brunolegal.clinic_api.dto.PatientChangeDTO;
+import br.com.brunolegal.clinic_api.event.PatientChangedEvent;
+import br.com.brunolegal.clinic_api.repository.PatientOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves events from the patient outbox to the {@link PatientEventSink}. Each batch is one
+ * transaction on the primary: lock the relay position, number the oldest unpublished rows after
+ * it, publish them, store the numbers. The lock makes relays on different nodes take turns, so
+ * sequence numbers are gap-free and become visible to GET /patients/changes in order.
+ * <p>
+ * The relay wakes up right after this node commits a patient write and otherwise every
+ * {@code clinic.outbox.poll-interval}, for writes of other nodes. A batch the sink refuses is
+ * rolled back and retried with a doubling backoff. Relayed events older than
+ * {@code clinic.outbox.retention} are deleted about once an hour.
+ */
+@Slf4j
+@Component
+@Profile("!reactive")
+public class PatientOutboxRelay implements SmartLifecycle {
+    //Metric name: events handed to the sink
+    public static final String PUBLISHED_COUNTER = "clinic.outbox.published";
+
+    private static final Duration PURGE_INTERVAL = Duration.ofHours(1);
+
+    private final PatientOutboxRepository outboxRepository;
+    private final PatientEventSink sink;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxProperties properties;
+    private final Counter published;
+
+    private volatile boolean running;
+    private volatile Thread thread;
+    private Instant nextPurge = Instant.now();
+
+    public PatientOutboxRelay(PatientOutboxRepository outboxRepository, PatientEventSink sink, PlatformTransactionManager transactionManager,
+                              OutboxProperties properties, MeterRegistry meterRegistry){
+        this.outboxRepository = outboxRepository;
+        this.sink = sink;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.published = Counter.builder(PUBLISHED_COUNTER).register(meterRegistry);
+    }
+
+    @Override
+    public void start(){
+        running = true;
+        if(properties.enabled()){
+            thread = new Thread(this::relayLoop, "patient-outbox-relay");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @Override
+    public void stop(){
+        running = false;
+        Thread relay = thread;
+        if(relay != null){
+            LockSupport.unpark(relay);
+            try {
+                relay.join(properties.maxRetryBackoff().toMillis());
+            } catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning(){
+        return running;
+    }
+
+    //This node's writes are relayed as soon as they commit instead of at the next poll
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPatientChanged(PatientChangedEvent event){
+        Thread relay = thread;
+        if(relay != null){
+            LockSupport.unpark(relay);
+        }
+    }
+
+    //Relays one batch; returns how many events it published
+    public int relayBatch(){
+        Integer count = transactionTemplate.execute(status -> {
+            long lastSequence = outboxRepository.lockRelayPosition();
+            List<PatientChangeDTO> changes = outboxRepository.findUnpublished(lastSequence, properties.batchSize());
+            if(changes.isEmpty()){
+                return 0;
+            }
+            try {
+                sink.publish(changes);
+            } catch(Exception e){
+                throw new IllegalStateException("Patient event sink refused " + changes.size() + " events", e);
+            }
+            outboxRepository.markPublished(changes, Instant.now().truncatedTo(ChronoUnit.MICROS));
+            return changes.size();
+        });
+        published.increment(count);
+        return count;
+    }
+
+    private void relayLoop(){
+        long backoff = properties.retryBackoff().toMillis();
+        while(running){
+            try {
+                int count = relayBatch();
+                purgeIfDue();
+                backoff = properties.retryBackoff().toMillis();
+                //a full batch means more are waiting
+                if(count < properties.batchSize()){
+                    LockSupport.parkNanos(properties.pollInterval().toNanos());
+                }
+            } catch(RuntimeException e){
+                if(!running){
+                    return;
+                }
+                log.warn("Could not relay patient events, retrying in {} ms", backoff, e);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoff));
+                backoff = Math.min(backoff * 2, properties.maxRetryBackoff().toMillis());
+            }
+        }
+    }
+
+    private void purgeIfDue(){
+        Instant now = Instant.now();
+        if(now.isBefore(nextPurge)){
+            return;
+        }
+        nextPurge = now.plus(PURGE_INTERVAL);
+        int purged = outboxRepository.deletePublishedBefore(now.minus(properties.retention()));
+        if(purged > 0){
+            log.info("Purged {} patient events older than {}", purged, properties.retention());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package br.com.brunolegal.clinic_api.ratelimit;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrency limit that follows the latency of the calls it admits (gradient style). By Little's law
+ * the calls in flight are throughput times latency; once the database is saturated, more concurrency
+ * adds no throughput, only latency, as calls wait for a pooled connection. So every window the average
+ * latency is compared with a slowly moving baseline: at or near the baseline the limit grows by about
+ * its square root (room to probe for more throughput), and the further above it, the more the limit
+ * shrinks, down to half per window. Calls over the limit are rejected right away instead of queuing.
+ * <p>
+ * Admission is a CAS on the in-flight count and samples go to striped adders; only the thread that
+ * closes a window takes the update flag, and others never wait for it.
+ */
+public class AdaptiveConcurrencyLimiter {
+    private final ConcurrencyLimitProperties properties;
+    private final long windowNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    private final LongAdder windowLatencyNanos = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicInteger windowMaxInFlight = new AtomicInteger();
+    private final AtomicLong windowStart;
+    private final AtomicBoolean updating = new AtomicBoolean();
+    //guarded by updating
+    private double estimatedLimit;
+    private double baselineNanos;
+
+    public AdaptiveConcurrencyLimiter(ConcurrencyLimitProperties properties, long nowNanos){
+        this.properties = properties;
+        this.windowNanos = properties.window().toNanos();
+        this.limit = properties.initialLimit();
+        this.estimatedLimit = properties.initialLimit();
+        this.windowStart = new AtomicLong(nowNanos);
+    }
+
+    public boolean tryAcquire(){
+        while(true){
+            int current = inFlight.get();
+            if(current >= limit){
+                return false;
+            }
+            if(inFlight.compareAndSet(current, current + 1)){
+                windowMaxInFlight.accumulateAndGet(current + 1, Math::max);
+                return true;
+            }
+        }
+    }
+
+    //Ends an admitted call that took latencyNanos, closing the window when it is due
+    public void release(long latencyNanos, long nowNanos){
+        inFlight.decrementAndGet();
+        windowLatencyNanos.add(latencyNanos);
+        windowSamples.increment();
+        long start = windowStart.get();
+        if(nowNanos - start < windowNanos || windowSamples.sum() < properties.windowSamples()
+                || !updating.compareAndSet(false, true)){
+            return;
+        }
+        try {
+            //another thread may have closed this window in between
+            if(windowStart.get() != start){
+                return;
+            }
+            windowStart.set(nowNanos);
+            long samples = windowSamples.sumThenReset();
+            double latency = (double) windowLatencyNanos.sumThenReset() / samples;
+            update(latency, windowMaxInFlight.getAndSet(inFlight.get()));
+        } finally {
+            updating.set(false);
+        }
+    }
+
+    public int getLimit(){
+        return limit;
+    }
+
+    public int getInFlight(){
+        return inFlight.get();
+    }
+
+    private void update(double latencyNanos, int maxInFlight){
+        if(baselineNanos == 0){
+            baselineNanos = latencyNanos;
+        } else {
+            baselineNanos += (latencyNanos - baselineNanos) / properties.baselineWindows();
+        }
+        //load dropped after a long congested stretch: let the baseline come down faster
+        if(baselineNanos > 2 * latencyNanos){
+            baselineNanos *= 0.95;
+        }
+        //far below the limit, latency says nothing about whether more concurrency would help
+        if(maxInFlight < estimatedLimit / 2){
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, properties.tolerance() * baselineNanos / latencyNanos));
+        double next = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        estimatedLimit = estimatedLimit * (1 - properties.smoothing()) + next * properties.smoothing();
+        estimatedLimit = Math.max(properties.minLimit(), Math.min(properties.maxLimit(), estimatedLimit));
+        limit = (int) estimatedLimit;
+    }
+}
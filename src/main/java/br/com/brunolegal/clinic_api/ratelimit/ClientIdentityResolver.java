@@ -0,0 +1,34 @@
+package br.com.brunolegal.clinic_api.ratelimit;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tells API clients apart, for the rate limit buckets and for scoping idempotency keys. A request
+ * carrying one of the keys configured in {@code clinic.rate-limit.api-keys} belongs to that client;
+ * any other key is ignored, so making up keys never buys a fresh identity, and the request falls
+ * back to its remote address. Behind a load balancer that address is the caller's own only because
+ * {@code server.forward-headers-strategy} lets Tomcat take it from {@code X-Forwarded-For}.
+ */
+public class ClientIdentityResolver {
+    private final String apiKeyHeader;
+    private final Map<String, String> clientsByKey = new HashMap<>();
+
+    public ClientIdentityResolver(RateLimitProperties properties){
+        this.apiKeyHeader = properties.apiKeyHeader();
+        properties.apiKeys().forEach((client, key) -> {
+            if(clientsByKey.putIfAbsent(key, client) != null){
+                throw new IllegalArgumentException("API key of client " + client + " is also configured for " + clientsByKey.get(key));
+            }
+        });
+    }
+
+    //"key:<client name>" for a known API key, "ip:<remote address>" otherwise
+    public String resolve(HttpServletRequest request){
+        String apiKey = request.getHeader(apiKeyHeader);
+        String client = apiKey == null ? null : clientsByKey.get(apiKey);
+        return client != null ? "key:" + client : "ip:" + request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,55 @@
+package br.com.brunolegal.clinic_api.ratelimit;
+
+import br.com.brunolegal.clinic_api.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+/**
+ * Puts the {@link AdaptiveConcurrencyLimiter} in front of every public {@code PatientService} method.
+ * The NDJSON export is left out: it runs for as long as the client keeps reading, so its duration says
+ * nothing about the database, and it is already held back by its rate limit.
+ * <p>
+ * The aspect wraps the transaction and cache advice, so a rejected call never takes a connection.
+ */
+@Aspect
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ConcurrencyLimitAspect {
+    //Metric names: current limit, calls in flight, calls rejected with 503
+    public static final String LIMIT_GAUGE = "clinic.concurrency.limit";
+    public static final String IN_FLIGHT_GAUGE = "clinic.concurrency.inflight";
+    public static final String REJECTED_COUNTER = "clinic.concurrency.rejected";
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final ConcurrencyLimitProperties properties;
+    private final Counter rejected;
+
+    public ConcurrencyLimitAspect(ConcurrencyLimitProperties properties, MeterRegistry meterRegistry){
+        this.limiter = new AdaptiveConcurrencyLimiter(properties, System.nanoTime());
+        this.properties = properties;
+        this.rejected = Counter.builder(REJECTED_COUNTER).register(meterRegistry);
+        Gauge.builder(LIMIT_GAUGE, limiter, AdaptiveConcurrencyLimiter::getLimit).register(meterRegistry);
+        Gauge.builder(IN_FLIGHT_GAUGE, limiter, AdaptiveConcurrencyLimiter::getInFlight).register(meterRegistry);
+    }
+
+    @Around("execution(public * br.com.brunolegal.clinic_api.service.PatientService.*(..))"
+            + " && !execution(* br.com.brunolegal.clinic_api.service.PatientService.exportActive(..))")
+    public Object limit(ProceedingJoinPoint joinPoint) throws Throwable {
+        if(!limiter.tryAcquire()){
+            rejected.increment();
+            throw new ServiceOverloadedException("Too many patient requests in progress, try again later", properties.retryAfter());
+        }
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            long end = System.nanoTime();
+            limiter.release(end - start, end);
+        }
+    }
+}
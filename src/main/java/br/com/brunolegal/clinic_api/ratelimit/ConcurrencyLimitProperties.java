@@ -0,0 +1,46 @@
+package br.com.brunolegal.clinic_api.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Adaptive limit on concurrent {@code PatientService} calls.
+ *
+ * @param enabled          rejects calls over the limit with 503 instead of letting them queue for a connection
+ * @param initialLimit     limit until the first windows have been measured
+ * @param minLimit         the limit never goes below this, however slow the calls get
+ * @param maxLimit         the limit never goes above this, however fast the calls are
+ * @param window           shortest time over which call latencies are averaged before the limit moves
+ * @param windowSamples    fewest calls a window needs before the limit moves
+ * @param baselineWindows  windows the long-term (baseline) latency is averaged over
+ * @param tolerance        how many times the baseline the recent latency may reach before the limit shrinks
+ * @param smoothing        share of each new estimate taken into the limit, between 0 and 1
+ * @param retryAfter       Retry-After sent with a 503
+ */
+@ConfigurationProperties(prefix = "clinic.concurrency-limit")
+public record ConcurrencyLimitProperties(
+
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("20") int initialLimit,
+        @DefaultValue("4") int minLimit,
+        @DefaultValue("200") int maxLimit,
+        @DefaultValue("100ms") Duration window,
+        @DefaultValue("10") int windowSamples,
+        @DefaultValue("100") int baselineWindows,
+        @DefaultValue("1.5") double tolerance,
+        @DefaultValue("0.2") double smoothing,
+        @DefaultValue("1s") Duration retryAfter
+
+) {
+
+    public ConcurrencyLimitProperties {
+        if(minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit){
+            throw new IllegalArgumentException("Concurrency limits must satisfy 1 <= min <= initial <= max");
+        }
+        if(baselineWindows < 1 || tolerance < 1 || smoothing <= 0 || smoothing > 1){
+            throw new IllegalArgumentException("Concurrency limit baseline windows, tolerance or smoothing out of range");
+        }
+    }
+}
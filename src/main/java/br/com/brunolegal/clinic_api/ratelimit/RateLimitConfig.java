@@ -0,0 +1,48 @@
+package br.com.brunolegal.clinic_api.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Load protection of the patient endpoints: per-client token buckets checked before the handler runs
+ * ({@code clinic.rate-limit.enabled}), then an adaptive concurrency limit around {@code PatientService}
+ * ({@code clinic.concurrency-limit.enabled}). Both are on by default and can be switched off separately.
+ */
+@Configuration
+@Profile("!reactive")
+public class RateLimitConfig {
+
+    //Found by component scanning on its own, so it needs the profile too
+    @Configuration
+    @Profile("!reactive")
+    @ConditionalOnProperty(prefix = "clinic.rate-limit", name = "enabled", havingValue = "true", matchIfMissing = true)
+    static class RateLimitWebConfig implements WebMvcConfigurer {
+        private final RateLimitInterceptor interceptor;
+
+        RateLimitWebConfig(RateLimitProperties properties, ClientIdentityResolver clientIdentity, MeterRegistry meterRegistry){
+            this.interceptor = new RateLimitInterceptor(properties, clientIdentity, meterRegistry);
+        }
+
+        @Override
+        public void addInterceptors(InterceptorRegistry registry){
+            registry.addInterceptor(interceptor).addPathPatterns("/patients", "/patients/**");
+        }
+    }
+
+    //Also used with the rate limit off, idempotency keys are scoped by it
+    @Bean
+    public ClientIdentityResolver clientIdentityResolver(RateLimitProperties properties){
+        return new ClientIdentityResolver(properties);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "clinic.concurrency-limit", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public ConcurrencyLimitAspect concurrencyLimitAspect(ConcurrencyLimitProperties properties, MeterRegistry meterRegistry){
+        return new ConcurrencyLimitAspect(properties, meterRegistry);
+    }
+}
@@ -0,0 +1,68 @@
+package br.com.brunolegal.clinic_api.ratelimit;
+
+import br.com.brunolegal.clinic_api.exception.TooManyRequestsException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Gives every client a {@link TokenBucket} per endpoint and turns the request away with 429 and a
+ * {@code Retry-After} once it is empty. Runs after handler mapping, so the endpoint is the matched
+ * pattern ({@code GET /patients/{id}}) and a client polling many ids shares one bucket.
+ * <p>
+ * Clients are told apart by {@link ClientIdentityResolver}: a known API key, else the remote address.
+ * Buckets live in a bounded Caffeine cache; one evicted while idle comes back full, which it would be anyway.
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+    //Metric names: requests turned away, tagged with endpoint; buckets held in memory
+    public static final String REJECTED_COUNTER = "clinic.ratelimit.rejected";
+    public static final String BUCKETS_GAUGE = "clinic.ratelimit.buckets";
+
+    private final RateLimitProperties properties;
+    private final ClientIdentityResolver clientIdentity;
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, TokenBucket> buckets;
+    private final ConcurrentMap<String, Counter> rejected = new ConcurrentHashMap<>();
+
+    public RateLimitInterceptor(RateLimitProperties properties, ClientIdentityResolver clientIdentity, MeterRegistry meterRegistry){
+        this.properties = properties;
+        this.clientIdentity = clientIdentity;
+        this.meterRegistry = meterRegistry;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.maxClients())
+                .expireAfterAccess(properties.idleTimeout())
+                .build();
+        Gauge.builder(BUCKETS_GAUGE, buckets, Cache::estimatedSize).register(meterRegistry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler){
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if(pattern == null){
+            return true;
+        }
+        String endpoint = request.getMethod() + " " + pattern;
+        long now = System.nanoTime();
+        TokenBucket bucket = buckets.get(endpoint + " " + clientIdentity.resolve(request), key -> {
+            RateLimitProperties.Limit limit = properties.limitFor(endpoint);
+            return new TokenBucket(limit.capacity(), limit.perSecond(), now);
+        });
+        long wait = bucket.tryAcquire(now);
+        if(wait == 0){
+            return true;
+        }
+        rejected.computeIfAbsent(endpoint, tag -> Counter.builder(REJECTED_COUNTER).tag("endpoint", tag).register(meterRegistry))
+                .increment();
+        throw new TooManyRequestsException("Rate limit of " + endpoint + " exceeded", Duration.ofNanos(wait));
+    }
+}
@@ -0,0 +1,59 @@
+package br.com.brunolegal.clinic_api.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Per-client token buckets on the patient endpoints.
+ *
+ * @param enabled       rejects a client's request with 429 once its bucket for the endpoint is empty
+ * @param apiKeyHeader  request header identifying the client; requests without a known key are limited by remote address
+ * @param apiKeys       known API keys by client name, e.g. {@code api-keys.reception=<key>}; unknown keys are ignored
+ * @param defaultLimit  bucket of every endpoint not listed in {@code endpoints}
+ * @param endpoints     buckets by endpoint, keyed by method and path pattern, e.g. {@code [POST /patients]}
+ * @param maxClients    client/endpoint buckets kept in memory; the least recently used ones are dropped first
+ * @param idleTimeout   a bucket unused for this long is dropped, which refills it anyway
+ */
+@ConfigurationProperties(prefix = "clinic.rate-limit")
+public record RateLimitProperties(
+
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("X-API-Key") String apiKeyHeader,
+        Map<String, String> apiKeys,
+        @DefaultValue Limit defaultLimit,
+        Map<String, Limit> endpoints,
+        @DefaultValue("100000") int maxClients,
+        @DefaultValue("10m") Duration idleTimeout
+
+) {
+
+    public RateLimitProperties {
+        apiKeys = apiKeys == null ? Map.of() : Map.copyOf(apiKeys);
+        endpoints = endpoints == null ? Map.of() : Map.copyOf(endpoints);
+    }
+
+    public Limit limitFor(String endpoint){
+        return endpoints.getOrDefault(endpoint, defaultLimit);
+    }
+
+    /**
+     * @param capacity   requests a client can send at once after being idle
+     * @param perSecond  requests per second the bucket refills, the sustained rate
+     */
+    public record Limit(
+
+            @DefaultValue("100") int capacity,
+            @DefaultValue("50") double perSecond
+
+    ) {
+
+        public Limit {
+            if(capacity < 1 || perSecond <= 0){
+                throw new IllegalArgumentException("Rate limit capacity and rate must be positive");
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package br.com.brunolegal.clinic_api.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket kept as a single timestamp (the generic cell rate algorithm): instead of a
+ * token count refilled by a timer, it stores the time at which the bucket will be full again. Taking a
+ * token pushes that time one refill interval further; a request that would push it more than
+ * {@code capacity} intervals into the future finds the bucket empty. One CAS per request, no refill thread.
+ */
+public class TokenBucket {
+    private final long intervalNanos;
+    private final long burstNanos;
+    //when the bucket is full again; at or before now means it is full
+    private final AtomicLong fullAt;
+
+    public TokenBucket(int capacity, double perSecond, long nowNanos){
+        this.intervalNanos = Math.max(1L, Math.round(TimeUnit.SECONDS.toNanos(1) / perSecond));
+        this.burstNanos = intervalNanos * capacity;
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    //Takes a token; returns 0 when granted, otherwise how long until the next token
+    public long tryAcquire(long nowNanos){
+        while(true){
+            long current = fullAt.get();
+            //a bucket that has been full for a while does not bank extra tokens
+            long next = (current - nowNanos > 0 ? current : nowNanos) + intervalNanos;
+            long wait = next - nowNanos - burstNanos;
+            if(wait > 0){
+                return wait;
+            }
+            if(fullAt.compareAndSet(current, next)){
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package br.com.brunolegal.clinic_api.repository;
+
+import br.com.brunolegal.clinic_api.idempotency.IdempotentResponse;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Plain JDBC access to {@code idempotency_keys}. Called outside any transaction, so every statement
+ * commits on its own on the primary and a claim is visible to the other nodes before the request runs.
+ */
+@Repository
+@Profile("!reactive")
+public class IdempotencyKeyRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdempotencyKeyRepository(DataSource dataSource){
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    //A row of the table; response is null while the request is still running
+    public record StoredKey(String requestHash, IdempotentResponse response, Instant createdAt, Instant expiresAt) {
+    }
+
+    //creates an INSERT INTO idempotency_keys without a status; false when the key is already taken
+    public boolean claim(String key, String requestHash, Instant now, Instant expiresAt){
+        try {
+            jdbcTemplate.update("INSERT INTO idempotency_keys (idempotency_key, request_hash, created_at, expires_at) VALUES (?, ?, ?, ?)",
+                    key, requestHash, Timestamp.from(now), Timestamp.from(expiresAt));
+            return true;
+        } catch(DuplicateKeyException e){
+            return false;
+        }
+    }
+
+    public Optional<StoredKey> find(String key){
+        List<StoredKey> found = jdbcTemplate.query("SELECT request_hash, status, location, body, created_at, expires_at "
+                + "FROM idempotency_keys WHERE idempotency_key = ?", (rs, rowNum) -> {
+            String requestHash = rs.getString(1);
+            Integer status = rs.getObject(2, Integer.class);
+            IdempotentResponse response = status == null ? null : new IdempotentResponse(requestHash, status, rs.getString(3), rs.getString(4));
+            return new StoredKey(requestHash, response, rs.getTimestamp(5).toInstant(), rs.getTimestamp(6).toInstant());
+        }, key);
+        return found.stream().findFirst();
+    }
+
+    //Turns the claim into the stored response
+    public void complete(String key, IdempotentResponse response){
+        jdbcTemplate.update("UPDATE idempotency_keys SET status = ?, location = ?, body = ? WHERE idempotency_key = ?",
+                response.status(), response.location(), response.body(), key);
+    }
+
+    //Gives the key back after a request that failed, so a retry runs it again
+    public void release(String key){
+        jdbcTemplate.update("DELETE FROM idempotency_keys WHERE idempotency_key = ? AND status IS NULL", key);
+    }
+
+    //Removes the key if it expired, or if it is a claim made before abandonedBefore; true when it is gone
+    public boolean deleteStale(String key, Instant now, Instant abandonedBefore){
+        return jdbcTemplate.update("DELETE FROM idempotency_keys WHERE idempotency_key = ? "
+                + "AND (expires_at < ? OR (status IS NULL AND created_at < ?))", key, Timestamp.from(now), Timestamp.from(abandonedBefore)) > 0;
+    }
+
+    public int deleteExpired(Instant now){
+        return jdbcTemplate.update("DELETE FROM idempotency_keys WHERE expires_at < ?", Timestamp.from(now));
+    }
+}
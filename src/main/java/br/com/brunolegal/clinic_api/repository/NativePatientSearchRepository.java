@@ -0,0 +1,88 @@
+package br.com.brunolegal.clinic_api.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+
+import java.util.List;
+
+/**
+ * Native SQL search with keyset paging on (score, id). The scoring and matching query
+ * depends on the database:
+ * <ul>
+ *     <li>{@link #trigram} for PostgreSQL: pg_trgm similarity on name and email plus a phone
+ *     prefix match, all served by the partial indexes of the V3 migration</li>
+ *     <li>{@link #like} for H2 and other databases: plain LIKE matching with a fixed score
+ *     for exact, prefix and substring matches</li>
+ * </ul>
+ */
+public class NativePatientSearchRepository implements PatientSearchRepository {
+
+    //LIKE patterns are built from the escaped term, so every LIKE declares the escape character
+    static final String TRIGRAM_MATCHES = """
+            SELECT id, name, email, phone,
+                   GREATEST(similarity(lower(name), :term), similarity(lower(email), :term),
+                            CASE WHEN phone LIKE :prefix ESCAPE '\\' THEN CAST(1 AS real) ELSE CAST(0 AS real) END) AS score
+            FROM patients
+            WHERE active
+              AND (lower(name) LIKE :contains ESCAPE '\\' OR lower(name) % :term
+                   OR lower(email) LIKE :contains ESCAPE '\\' OR lower(email) % :term
+                   OR phone LIKE :prefix ESCAPE '\\')
+            """;
+
+    static final String LIKE_MATCHES = """
+            SELECT id, name, email, phone,
+                   CASE WHEN lower(name) = :term OR lower(email) = :term OR phone = :term THEN CAST(1 AS real)
+                        WHEN lower(name) LIKE :prefix ESCAPE '\\' OR lower(email) LIKE :prefix ESCAPE '\\'
+                             OR phone LIKE :prefix ESCAPE '\\' THEN CAST(0.75 AS real)
+                        ELSE CAST(0.5 AS real) END AS score
+            FROM patients
+            WHERE active
+              AND (lower(name) LIKE :contains ESCAPE '\\' OR lower(email) LIKE :contains ESCAPE '\\'
+                   OR phone LIKE :prefix ESCAPE '\\')
+            """;
+
+    private final EntityManager entityManager;
+    private final String matchesSql;
+
+    private NativePatientSearchRepository(EntityManager entityManager, String matchesSql){
+        this.entityManager = entityManager;
+        this.matchesSql = matchesSql;
+    }
+
+    public static NativePatientSearchRepository trigram(EntityManager entityManager){
+        return new NativePatientSearchRepository(entityManager, TRIGRAM_MATCHES);
+    }
+
+    public static NativePatientSearchRepository like(EntityManager entityManager){
+        return new NativePatientSearchRepository(entityManager, LIKE_MATCHES);
+    }
+
+    @Override
+    public List<PatientSearchHit> search(String term, PatientSearchHit after, int limit){
+        String sql = "SELECT id, name, email, phone, score FROM (" + matchesSql + ") hits "
+                + (after == null ? "" : "WHERE score < CAST(:afterScore AS real) OR (score = CAST(:afterScore AS real) AND id > :afterId) ")
+                + "ORDER BY score DESC, id LIMIT :limit";
+        String escaped = escapeLike(term);
+
+        Query query = entityManager.createNativeQuery(sql)
+                .setParameter("term", term)
+                .setParameter("prefix", escaped + "%")
+                .setParameter("contains", "%" + escaped + "%")
+                .setParameter("limit", limit);
+        if(after != null){
+            query.setParameter("afterScore", after.score())
+                    .setParameter("afterId", after.id());
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = query.getResultList();
+        return rows.stream()
+                .map(row -> new PatientSearchHit(((Number) row[0]).longValue(), (String) row[1], (String) row[2],
+                        (String) row[3], ((Number) row[4]).floatValue()))
+                .toList();
+    }
+
+    private static String escapeLike(String term){
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,129 @@
+package br.com.brunolegal.clinic_api.repository;
+
+import br.com.brunolegal.clinic_api.domain.PatientOutboxEvent;
+import br.com.brunolegal.clinic_api.dto.PatientChangeDTO;
+import br.com.brunolegal.clinic_api.event.PatientChangedEvent.ChangeType;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Plain JDBC access to the patient outbox ({@code patient_outbox}) and the relay position
+ * ({@code patient_outbox_relay}). Inserts go out as one JDBC batch with ids taken from the database
+ * sequence, which Hibernate cannot batch for an identity column. Every statement joins the
+ * surrounding JPA transaction, so outbox rows commit or roll back with the patient write.
+ */
+@Repository
+@Profile("!reactive")
+public class PatientOutboxRepository {
+    private static final String INSERT = "INSERT INTO patient_outbox (patient_id, type, version, occurred_at, name, email, phone) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_EVENT = "SELECT seq, id, type, patient_id, version, occurred_at, name, email, phone FROM patient_outbox ";
+    static final int RELAY_ID = 1;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PatientOutboxRepository(DataSource dataSource){
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    //creates a batch of INSERT INTO patient_outbox (...) VALUES (...), one row per event
+    public void append(Collection<PatientOutboxEvent> events){
+        if(events.isEmpty()){
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT, events, events.size(), (statement, event) -> {
+            statement.setLong(1, event.getPatientId());
+            statement.setString(2, event.getType().name());
+            if(event.getVersion() == null){
+                statement.setNull(3, Types.BIGINT);
+            } else {
+                statement.setLong(3, event.getVersion());
+            }
+            statement.setTimestamp(4, Timestamp.from(event.getOccurredAt()));
+            statement.setString(5, event.getName());
+            statement.setString(6, event.getEmail());
+            statement.setString(7, event.getPhone());
+        });
+    }
+
+    //creates a query SELECT ... FROM patient_outbox WHERE seq > ?1 ORDER BY seq LIMIT ?2 (published events only)
+    public List<PatientChangeDTO> findChanges(long since, int limit){
+        return jdbcTemplate.query(SELECT_EVENT + "WHERE seq > ? ORDER BY seq LIMIT ?", this::toChange, since, limit);
+    }
+
+    //Last sequence number handed out, 0 before the first event is relayed
+    public long findLastSequence(){
+        List<Long> last = jdbcTemplate.queryForList("SELECT last_seq FROM patient_outbox_relay WHERE id = ?", Long.class, RELAY_ID);
+        return last.isEmpty() ? 0L : last.get(0);
+    }
+
+    //creates a query SELECT last_seq FROM patient_outbox_relay WHERE id = 1 FOR UPDATE; the lock is held
+    //until the relay transaction ends, so only one relay hands out sequence numbers at a time.
+    //V6 seeds the row; a schema built without the migrations (H2 tests) gets it on the first call
+    public long lockRelayPosition(){
+        List<Long> position = selectRelayPositionForUpdate();
+        if(!position.isEmpty()){
+            return position.get(0);
+        }
+        //two relays racing here: the loser's insert fails and its batch is retried like any other failure
+        jdbcTemplate.update("INSERT INTO patient_outbox_relay (id, last_seq) VALUES (?, 0)", RELAY_ID);
+        return selectRelayPositionForUpdate().get(0);
+    }
+
+    private List<Long> selectRelayPositionForUpdate(){
+        return jdbcTemplate.queryForList("SELECT last_seq FROM patient_outbox_relay WHERE id = ? FOR UPDATE", Long.class, RELAY_ID);
+    }
+
+    //Oldest events not relayed yet, with the sequence numbers they are about to get
+    public List<PatientChangeDTO> findUnpublished(long lastSequence, int limit){
+        List<PatientChangeDTO> pending = jdbcTemplate.query(SELECT_EVENT + "WHERE seq IS NULL ORDER BY id LIMIT ?", this::toChange, limit);
+        List<PatientChangeDTO> numbered = new ArrayList<>(pending.size());
+        long sequence = lastSequence;
+        for(PatientChangeDTO change : pending){
+            numbered.add(new PatientChangeDTO(++sequence, change.eventId(), change.type(), change.patientId(), change.version(),
+                    change.occurredAt(), change.name(), change.email(), change.phone()));
+        }
+        return numbered;
+    }
+
+    //Stores the sequence numbers of relayed events and moves the relay position past them
+    public void markPublished(List<PatientChangeDTO> changes, Instant publishedAt){
+        jdbcTemplate.batchUpdate("UPDATE patient_outbox SET seq = ?, published_at = ? WHERE id = ?", changes, changes.size(),
+                (statement, change) -> {
+                    statement.setLong(1, change.sequence());
+                    statement.setTimestamp(2, Timestamp.from(publishedAt));
+                    statement.setLong(3, change.eventId());
+                });
+        jdbcTemplate.update("UPDATE patient_outbox_relay SET last_seq = ? WHERE id = ?", changes.get(changes.size() - 1).sequence(), RELAY_ID);
+    }
+
+    //Drops relayed events older than the retention; the feed answers 410 Gone to consumers that fall behind them
+    public int deletePublishedBefore(Instant cutoff){
+        return jdbcTemplate.update("DELETE FROM patient_outbox WHERE seq IS NOT NULL AND published_at < ?", Timestamp.from(cutoff));
+    }
+
+    private PatientChangeDTO toChange(ResultSet rs, int rowNum) throws SQLException {
+        return new PatientChangeDTO(
+                rs.getObject(1, Long.class),
+                rs.getLong(2),
+                ChangeType.valueOf(rs.getString(3)).eventName(),
+                rs.getLong(4),
+                rs.getObject(5, Long.class),
+                rs.getTimestamp(6).toInstant(),
+                rs.getString(7),
+                rs.getString(8),
+                rs.getString(9));
+    }
+}
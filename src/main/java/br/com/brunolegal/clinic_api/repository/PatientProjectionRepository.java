@@ -0,0 +1,15 @@
+package br.com.brunolegal.clinic_api.repository;
+
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import br.com.brunolegal.clinic_api.dto.PatientField;
+
+import java.util.List;
+import java.util.Set;
+
+//Fragment of PatientRepository for reads whose select list is only known at runtime
+public interface PatientProjectionRepository {
+
+    //Keyset page of active patients ordered by id, selecting only id, version and the requested fields;
+    //the other DTO components are left null
+    List<PatientDetailsDTO> findActivePage(long after, int limit, Set<PatientField> fields);
+}
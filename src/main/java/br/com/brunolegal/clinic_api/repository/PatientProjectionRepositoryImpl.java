@@ -0,0 +1,55 @@
+package br.com.brunolegal.clinic_api.repository;
+
+import br.com.brunolegal.clinic_api.domain.Patient;
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import br.com.brunolegal.clinic_api.dto.PatientField;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+//Criteria tuple query: the SELECT list only names the requested columns and no entity is loaded
+@Transactional(readOnly = true)
+public class PatientProjectionRepositoryImpl implements PatientProjectionRepository {
+    private final EntityManager entityManager;
+
+    public PatientProjectionRepositoryImpl(EntityManager entityManager){
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<PatientDetailsDTO> findActivePage(long after, int limit, Set<PatientField> fields){
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Patient> patient = query.from(Patient.class);
+
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(patient.get("id").alias("id"));
+        selections.add(patient.get("version").alias("version"));
+        for(PatientField field : fields){
+            selections.add(patient.get(field.attribute()).alias(field.attribute()));
+        }
+        query.multiselect(selections)
+                .where(cb.isTrue(patient.get("active")), cb.greaterThan(patient.get("id"), after))
+                .orderBy(cb.asc(patient.get("id")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultStream()
+                .map(row -> new PatientDetailsDTO(
+                        row.get("id", Long.class),
+                        fields.contains(PatientField.NAME) ? row.get("name", String.class) : null,
+                        fields.contains(PatientField.EMAIL) ? row.get("email", String.class) : null,
+                        fields.contains(PatientField.PHONE) ? row.get("phone", String.class) : null,
+                        row.get("version", Long.class),
+                        null))
+                .toList();
+    }
+}
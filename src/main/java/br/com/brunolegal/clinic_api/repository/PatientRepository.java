@@ -1,20 +1,78 @@
 package br.com.brunolegal.clinic_api.repository;
 
 import br.com.brunolegal.clinic_api.domain.Patient;
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 @Repository
-public interface PatientRepository extends JpaRepository<Patient, Long> {
-    //creates a query SELECT * FROM patients WHERE email = ?1
-    boolean existsByEmail(String email);
-    //creates a query SELECT * FROM patients WHERE email = ?1 that returns an Optional<Patient>
+public interface PatientRepository extends JpaRepository<Patient, Long>, PatientProjectionRepository {
+    //Read paths select straight into the DTO: no managed entities, no dirty-checking snapshots
+    String SELECT_DETAILS = "select new br.com.brunolegal.clinic_api.dto.PatientDetailsDTO("
+            + "p.id, p.name, p.email, p.phone, p.version, p.updatedAt) from Patient p ";
+
+    //creates a query SELECT email FROM patients WHERE email IN (?1) returning the emails already taken
+    @Query("select p.email from Patient p where p.email in :emails")
+    Set<String> findExistingEmails(Collection<String> emails);
+    //creates a query SELECT id, name, email, phone, version, updated_at FROM patients WHERE active = true AND id > ?1
+    //ORDER BY id LIMIT ?2 (keyset page on the primary key)
+    @Query(SELECT_DETAILS + "where p.active = true and p.id > :after order by p.id")
+    List<PatientDetailsDTO> findDetailsPage(Long after, Limit limit);
+    //creates a query SELECT id, name, email, phone, version, updated_at FROM patients WHERE id = ?1 AND active = true
+    @Query(SELECT_DETAILS + "where p.id = :id and p.active = true")
+    Optional<PatientDetailsDTO> findDetailsById(Long id);
+    //same SELECT ... FOR UPDATE: the row stays as read until the transaction ends, for writes that need its prior state
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(SELECT_DETAILS + "where p.id = :id and p.active = true")
+    Optional<PatientDetailsDTO> findDetailsByIdForUpdate(Long id);
+    //creates a query SELECT * FROM patients WHERE email = ?1, active or not (the unique constraint covers both)
     Optional<Patient> findByEmail(String email);
-    //creates a query SELECT * FROM patients WHERE active = true
-    List<Patient> findAllByActiveTrue();
-    //creates a query SELECT * FROM patients WHERE id = ?1 AND active = true
-    Optional<Patient> findByIdAndActiveTrue(Long id);
+    //creates a query SELECT 1 FROM patients WHERE email = ?1 LIMIT 1, active or not
+    boolean existsByEmail(String email);
+    //creates a query SELECT 1 FROM patients WHERE email = ?1 AND id <> ?2 LIMIT 1, active or not
+    boolean existsByEmailAndIdNot(String email, Long id);
+    //creates a query SELECT * FROM patients WHERE phone = ?1 AND active = true ORDER BY id
+    List<Patient> findByPhoneAndActiveTrueOrderByIdAsc(String phone);
+    //streams SELECT id, name, email, phone, version, updated_at FROM patients WHERE active = true ORDER BY id
+    //through a JDBC cursor, 500 rows per fetch; must be consumed inside a transaction and closed afterwards
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_DETAILS + "where p.active = true order by p.id")
+    Stream<PatientDetailsDTO> streamDetailsByActiveTrue();
+    //creates a query SELECT version FROM patients WHERE id = ?1
+    @Query("select p.version from Patient p where p.id = :id")
+    Long findVersionById(Long id);
+    //creates a query SELECT 1 FROM patients WHERE id = ?1 AND active = true LIMIT 1
+    boolean existsByIdAndActiveTrue(Long id);
+    //creates a query UPDATE patients SET name = ?2, email = ?3, phone = ?4, version = version + 1, updated_at = ?5
+    //WHERE id = ?1 AND active = true, returns the number of updated rows, 0 when there is no active patient with that id
+    @Modifying
+    @Query("update Patient p set p.name = :name, p.email = :email, p.phone = :phone, p.version = p.version + 1, p.updatedAt = :updatedAt "
+            + "where p.id = :id and p.active = true")
+    int updateActive(Long id, String name, String email, String phone, Instant updatedAt);
+    //same UPDATE with AND version = ?2, returns 0 as well when the patient was changed since that version
+    @Modifying
+    @Query("update Patient p set p.name = :name, p.email = :email, p.phone = :phone, p.version = p.version + 1, p.updatedAt = :updatedAt "
+            + "where p.id = :id and p.active = true and p.version = :version")
+    int updateActiveIfVersion(Long id, Long version, String name, String email, String phone, Instant updatedAt);
+    //creates a query UPDATE patients SET active = false, deleted_at = ?2, version = version + 1, updated_at = ?2
+    //WHERE id = ?1 AND active = true, returns the number of deactivated rows, 0 when there is no active patient with that id
+    @Modifying
+    @Query("update Patient p set p.active = false, p.deletedAt = :deletedAt, p.version = p.version + 1, p.updatedAt = :deletedAt "
+            + "where p.id = :id and p.active = true")
+    int softDeleteById(Long id, Instant deletedAt);
 }
@@ -0,0 +1,17 @@
+package br.com.brunolegal.clinic_api.repository;
+
+/**
+ * An active patient matching a search term, with its relevance score (higher is better).
+ * The (score, id) pair of the last hit of a page is the keyset cursor of the next one.
+ */
+public record PatientSearchHit(
+
+        Long id,
+        String name,
+        String email,
+        String phone,
+        float score
+
+) {
+
+}
@@ -0,0 +1,13 @@
+package br.com.brunolegal.clinic_api.repository;
+
+import java.util.List;
+
+/**
+ * Ranked search over active patients by partial name, email or phone. The implementation
+ * depends on the database, see {@link NativePatientSearchRepository}.
+ */
+public interface PatientSearchRepository {
+
+    //Hits for the lower-cased term, best score first and ties by id, strictly after the given hit when not null
+    List<PatientSearchHit> search(String term, PatientSearchHit after, int limit);
+}
@@ -0,0 +1,124 @@
+package br.com.brunolegal.clinic_api.repository;
+
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import io.r2dbc.spi.Readable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Non-blocking access to the patients table for the {@code reactive} profile. The statements are the
+ * SQL the JPA {@link PatientRepository} generates, written against R2DBC so no thread waits on the database.
+ */
+@Repository
+@Profile("reactive")
+public class ReactivePatientRepository {
+    private static final String SELECT_DETAILS = "SELECT id, name, email, phone, version, updated_at FROM patients ";
+    private static final String UPDATE_ACTIVE = "UPDATE patients SET name = :name, email = :email, phone = :phone, "
+            + "version = version + 1, updated_at = :updatedAt WHERE id = :id AND active = true";
+
+    private final DatabaseClient databaseClient;
+
+    public ReactivePatientRepository(DatabaseClient databaseClient){
+        this.databaseClient = databaseClient;
+    }
+
+    //SELECT id, name, email, phone, version, updated_at FROM patients WHERE id = ?1 AND active = true
+    public Mono<PatientDetailsDTO> findDetailsById(long id){
+        return databaseClient.sql(SELECT_DETAILS + "WHERE id = :id AND active = true")
+                .bind("id", id)
+                .map(ReactivePatientRepository::toDetails)
+                .one();
+    }
+
+    //Keyset page on the primary key, same statement as PatientRepository.findDetailsPage
+    public Flux<PatientDetailsDTO> findDetailsPage(long after, int limit){
+        return databaseClient.sql(SELECT_DETAILS + "WHERE active = true AND id > :after ORDER BY id LIMIT :limit")
+                .bind("after", after)
+                .bind("limit", limit)
+                .map(ReactivePatientRepository::toDetails)
+                .all();
+    }
+
+    //Every active patient after the cursor, read one keyset page of chunkSize rows at a time. The next page is
+    //only queried once the subscriber has asked for the rows of the previous one, so a slow client holds
+    //neither a connection nor more than a chunk in memory
+    public Flux<PatientDetailsDTO> streamDetailsAfter(long after, int chunkSize){
+        return findDetailsPage(after, chunkSize).collectList()
+                .expand(chunk -> chunk.size() < chunkSize
+                        ? Mono.empty()
+                        : findDetailsPage(chunk.get(chunk.size() - 1).id(), chunkSize).collectList())
+                .concatMapIterable(Function.<List<PatientDetailsDTO>>identity(), 1);
+    }
+
+    //Ids come from the sequence Hibernate allocates from: a servlet node that draws value v hands out
+    //(v - 49 .. v], so drawing a value here and taking the bottom of its block never collides with them
+    public Mono<PatientDetailsDTO> insert(String name, String email, String phone, Instant updatedAt){
+        return databaseClient.sql("INSERT INTO patients (id, name, email, phone, active, version, updated_at) "
+                        + "VALUES (GREATEST(nextval('patients_seq') - 49, 1), :name, :email, :phone, true, 0, :updatedAt) "
+                        + "RETURNING id, name, email, phone, version, updated_at")
+                .bind("name", name)
+                .bind("email", email)
+                .bind("phone", phone)
+                .bind("updatedAt", updatedAt)
+                .map(ReactivePatientRepository::toDetails)
+                .one();
+    }
+
+    //UPDATE ... WHERE id = ?1 AND active = true [AND version = ?2] RETURNING version;
+    //empty when there is no active patient with that id or it was changed since the expected version
+    public Mono<Long> updateActive(long id, Long expectedVersion, String name, String email, String phone, Instant updatedAt){
+        DatabaseClient.GenericExecuteSpec update = databaseClient
+                .sql(UPDATE_ACTIVE + (expectedVersion == null ? "" : " AND version = :version") + " RETURNING version")
+                .bind("id", id)
+                .bind("name", name)
+                .bind("email", email)
+                .bind("phone", phone)
+                .bind("updatedAt", updatedAt);
+        if(expectedVersion != null){
+            update = update.bind("version", expectedVersion);
+        }
+        return update.map(row -> row.get("version", Long.class)).one();
+    }
+
+    //SELECT 1 FROM patients WHERE id = ?1 AND active = true LIMIT 1
+    public Mono<Boolean> existsActive(long id){
+        return databaseClient.sql("SELECT 1 FROM patients WHERE id = :id AND active = true LIMIT 1")
+                .bind("id", id)
+                .fetch()
+                .first()
+                .hasElement();
+    }
+
+    //UPDATE patients SET active = false, deleted_at = ?2, version = version + 1, updated_at = ?2
+    //WHERE id = ?1 AND active = true, emits the number of deactivated rows
+    public Mono<Long> softDelete(long id, Instant deletedAt){
+        return databaseClient.sql("UPDATE patients SET active = false, deleted_at = :deletedAt, version = version + 1, "
+                        + "updated_at = :deletedAt WHERE id = :id AND active = true")
+                .bind("id", id)
+                .bind("deletedAt", deletedAt)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    //Same NOTIFY as PatientCacheInvalidationPublisher; inside a transaction Postgres holds it until commit
+    public Mono<Void> notify(String channel, long patientId){
+        return databaseClient.sql("SELECT pg_notify(:channel, :payload)")
+                .bind("channel", channel)
+                .bind("payload", Long.toString(patientId))
+                .then();
+    }
+
+    private static PatientDetailsDTO toDetails(Readable row){
+        OffsetDateTime updatedAt = row.get("updated_at", OffsetDateTime.class);
+        return new PatientDetailsDTO(row.get("id", Long.class), row.get("name", String.class), row.get("email", String.class),
+                row.get("phone", String.class), row.get("version", Long.class), updatedAt == null ? null : updatedAt.toInstant());
+    }
+}
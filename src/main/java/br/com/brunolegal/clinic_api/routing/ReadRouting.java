@@ -0,0 +1,42 @@
+package br.com.brunolegal.clinic_api.routing;
+
+import java.util.function.Supplier;
+
+/**
+ * Per-thread switch that keeps read-only transactions on the primary when replica routing is on.
+ * {@link ReadYourWritesFilter} turns it on for clients that wrote a moment ago; code that feeds a
+ * node-local cache or index turns it on around its read, so a lagging replica never ends up cached.
+ * Without replica routing every connection comes from the primary and the switch has no effect.
+ */
+public final class ReadRouting {
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+
+    private ReadRouting(){
+    }
+
+    public static <T> T onPrimary(Supplier<T> read){
+        boolean previous = pinToPrimary();
+        try {
+            return read.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    public static boolean isPinnedToPrimary(){
+        return PRIMARY.get() != null;
+    }
+
+    //Returns the previous state, to be handed back to restore
+    static boolean pinToPrimary(){
+        boolean previous = isPinnedToPrimary();
+        PRIMARY.set(Boolean.TRUE);
+        return previous;
+    }
+
+    static void restore(boolean previous){
+        if(!previous){
+            PRIMARY.remove();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package br.com.brunolegal.clinic_api.routing;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+
+/**
+ * Replaces the primary pool as the application's DataSource. Connections are only fetched when
+ * the first statement runs, after the transaction manager marked them read-only or not: read-only
+ * ones come from the replica routing, all others from the primary.
+ * <p>
+ * Closing it closes the primary pool, as closing the pool it replaces would.
+ */
+class ReadWriteDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+    private final HikariDataSource primary;
+
+    ReadWriteDataSource(HikariDataSource primary, DataSource readOnly){
+        super(primary);
+        this.primary = primary;
+        setReadOnlyDataSource(readOnly);
+    }
+
+    @Override
+    public void close(){
+        primary.close();
+    }
+}
@@ -0,0 +1,129 @@
+package br.com.brunolegal.clinic_api.routing;
+
+import br.com.brunolegal.clinic_api.event.PatientChangedEvent;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Read-your-writes for clients of the replicas: a request whose patient write commits gets a cookie
+ * holding the end of the {@code sticky-for} window, and requests carrying a cookie that has not
+ * expired read from the primary. The cookie holds an absolute time, so it works on any node.
+ * <p>
+ * The time is signed with {@code cookie-secret} and never honored past {@code sticky-for} from now,
+ * so a client cannot pin its reads to the primary by writing its own cookie.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    private static final String ISSUED_ATTRIBUTE = ReadYourWritesFilter.class.getName() + ".ISSUED";
+    private static final String HMAC = "HmacSHA256";
+
+    private final ReplicaRoutingProperties properties;
+    private final SecretKeySpec key;
+
+    public ReadYourWritesFilter(ReplicaRoutingProperties properties){
+        this.properties = properties;
+        byte[] secret;
+        if(properties.cookieSecret() == null || properties.cookieSecret().isBlank()){
+            secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+        } else {
+            secret = properties.cookieSecret().getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(secret, HMAC);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long now = System.currentTimeMillis();
+        if(Math.min(primaryUntil(request), now + properties.stickyFor().toMillis()) <= now){
+            chain.doFilter(request, response);
+            return;
+        }
+        boolean previous = ReadRouting.pinToPrimary();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadRouting.restore(previous);
+        }
+    }
+
+    //Runs in the request thread after the write committed, before the controller writes the response
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPatientChanged(PatientChangedEvent event){
+        if(!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)
+                || attributes.getResponse() == null){
+            return;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        if(request.getAttribute(ISSUED_ATTRIBUTE) != null){
+            return;
+        }
+        request.setAttribute(ISSUED_ATTRIBUTE, Boolean.TRUE);
+        String until = Long.toString(System.currentTimeMillis() + properties.stickyFor().toMillis());
+        ResponseCookie cookie = ResponseCookie.from(properties.cookieName(), until + "." + sign(until))
+                .path("/")
+                .maxAge(properties.stickyFor())
+                .httpOnly(true)
+                .sameSite("Lax")
+                .build();
+        attributes.getResponse().addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
+    //The signed time of the cookie, 0 when there is none or its signature does not match
+    private long primaryUntil(HttpServletRequest request){
+        Cookie[] cookies = request.getCookies();
+        if(cookies == null){
+            return 0;
+        }
+        for(Cookie cookie : cookies){
+            if(properties.cookieName().equals(cookie.getName())){
+                String value = cookie.getValue();
+                int dot = value.indexOf('.');
+                if(dot < 0){
+                    return 0;
+                }
+                String until = value.substring(0, dot);
+                if(!MessageDigest.isEqual(sign(until).getBytes(StandardCharsets.US_ASCII),
+                        value.substring(dot + 1).getBytes(StandardCharsets.US_ASCII))){
+                    return 0;
+                }
+                try {
+                    return Long.parseLong(until);
+                } catch(NumberFormatException e){
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    //Cookie values may not hold '=', hence unpadded base64url
+    private String sign(String until){
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(mac.doFinal(until.getBytes(StandardCharsets.US_ASCII)));
+        } catch(GeneralSecurityException e){
+            throw new IllegalStateException("Could not sign the read-your-writes cookie", e);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package br.com.brunolegal.clinic_api.routing;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.SmartLifecycle;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One connection pool per read replica, plus the replay lag of each one.
+ * <p>
+ * A background thread measures every replica's lag each {@code lag-check-interval}. A replica that
+ * is further behind than {@code max-lag}, or that cannot be reached, gets no reads until a later
+ * check sees it caught up; reads rotate over the remaining ones and fall back to the primary when
+ * none is left. Replicas start out unmeasured, so until the first check all reads use the primary.
+ */
+@Slf4j
+public class ReplicaPools implements SmartLifecycle, MeterBinder, DisposableBean {
+    //Metric names: replay lag per replica, and routed read-only connections by target and reason
+    public static final String LAG_GAUGE = "clinic.datasource.replica.lag";
+    public static final String READS_COUNTER = "clinic.datasource.reads";
+
+    static final String PRIMARY = "primary";
+
+    //Zero while the replica has replayed everything it received, otherwise the age of the last replayed commit
+    private static final String LAG_QUERY = "SELECT CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE EXTRACT(EPOCH FROM clock_timestamp() - pg_last_xact_replay_timestamp()) END";
+
+    private final ReplicaRoutingProperties properties;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder pinnedReads = new LongAdder();
+    private final LongAdder fallbackReads = new LongAdder();
+
+    private ScheduledExecutorService lagChecks;
+    private volatile boolean running;
+
+    public ReplicaPools(ReplicaRoutingProperties properties, JdbcConnectionDetails primary){
+        this.properties = properties;
+        for(String url : properties.urls()){
+            HikariDataSource pool = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(primary.getDriverClassName())
+                    .url(url)
+                    .username(properties.username() != null ? properties.username() : primary.getUsername())
+                    .password(properties.password() != null ? properties.password() : primary.getPassword())
+                    .build();
+            String name = "replica-" + (replicas.size() + 1);
+            pool.setPoolName("clinic-api-" + name);
+            pool.setMaximumPoolSize(properties.maximumPoolSize());
+            pool.setReadOnly(true);
+            //a replica that cannot hand out a connection within max-lag is no better than a lagging one
+            pool.setConnectionTimeout(Math.max(250, properties.maxLag().toMillis()));
+            //an unreachable replica must not stop the application from starting, the lag check reports it
+            pool.setInitializationFailTimeout(-1);
+            replicas.add(new Replica(name, pool));
+        }
+    }
+
+    //Lookup keys and pools, for the routing data source
+    Map<Object, Object> dataSources(){
+        Map<Object, Object> dataSources = new LinkedHashMap<>();
+        replicas.forEach(replica -> dataSources.put(replica.name, replica.pool));
+        return dataSources;
+    }
+
+    //Picks where the next read-only connection comes from: the next replica in turn that is within max-lag
+    String route(){
+        if(ReadRouting.isPinnedToPrimary()){
+            pinnedReads.increment();
+            return PRIMARY;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for(int i = 0; i < size; i++){
+            Replica replica = replicas.get((start + i) % size);
+            if(replica.eligible){
+                replica.reads.increment();
+                return replica.name;
+            }
+        }
+        fallbackReads.increment();
+        return PRIMARY;
+    }
+
+    public boolean hasEligibleReplica(){
+        return replicas.stream().anyMatch(replica -> replica.eligible);
+    }
+
+    void checkLag(){
+        double maxLagSeconds = properties.maxLag().toNanos() / 1e9;
+        for(Replica replica : replicas){
+            double lag = measureLag(replica);
+            boolean eligible = !Double.isNaN(lag) && lag <= maxLagSeconds;
+            if(replica.eligible && !eligible){
+                log.warn("Read replica {} is {} behind the primary, its reads go elsewhere until it catches up",
+                        replica.name, Double.isNaN(lag) ? "unreachable or" : String.format("%.1f s", lag));
+            } else if(!replica.eligible && eligible){
+                log.info("Read replica {} is serving reads ({} s behind the primary)", replica.name, String.format("%.3f", lag));
+            }
+            replica.lagSeconds = lag;
+            replica.eligible = eligible;
+        }
+    }
+
+    private double measureLag(Replica replica){
+        try(Connection connection = replica.pool.getConnection();
+            Statement statement = connection.createStatement();
+            ResultSet rs = statement.executeQuery(LAG_QUERY)){
+            rs.next();
+            double lag = rs.getDouble(1);
+            return rs.wasNull() ? Double.NaN : lag;
+        } catch(SQLException e){
+            log.debug("Could not measure the lag of read replica {}", replica.name, e);
+            return Double.NaN;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry){
+        for(Replica replica : replicas){
+            Gauge.builder(LAG_GAUGE, replica, r -> r.lagSeconds)
+                    .description("Replay lag of the read replica, NaN when it cannot be measured")
+                    .baseUnit("seconds")
+                    .tag("replica", replica.name)
+                    .register(registry);
+            readsCounter(registry, replica.name, "replica", replica.reads);
+            if(!replica.pool.isRunning()){
+                replica.pool.setMetricRegistry(registry);
+            }
+        }
+        readsCounter(registry, PRIMARY, "pinned", pinnedReads);
+        readsCounter(registry, PRIMARY, "replicas-behind", fallbackReads);
+    }
+
+    private void readsCounter(MeterRegistry registry, String target, String reason, LongAdder adder){
+        FunctionCounter.builder(READS_COUNTER, adder, LongAdder::doubleValue)
+                .description("Read-only connections by where they were routed")
+                .tag("target", target)
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    @Override
+    public void start(){
+        lagChecks = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lagChecks.scheduleWithFixedDelay(this::checkLag, 0, properties.lagCheckInterval().toMillis(), TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop(){
+        running = false;
+        if(lagChecks != null){
+            lagChecks.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning(){
+        return running;
+    }
+
+    @Override
+    public void destroy(){
+        replicas.forEach(replica -> replica.pool.close());
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final HikariDataSource pool;
+        private final LongAdder reads = new LongAdder();
+        private volatile double lagSeconds = Double.NaN;
+        private volatile boolean eligible;
+
+        private Replica(String name, HikariDataSource pool){
+            this.name = name;
+            this.pool = pool;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package br.com.brunolegal.clinic_api.routing;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Splits reads from writes when {@code clinic.replicas.enabled=true}. The primary pool Spring Boot
+ * configures from {@code spring.datasource.*} stays as it is and gets wrapped: transactions marked
+ * {@code @Transactional(readOnly = true)}, including the find methods repositories inherit from
+ * Spring Data, take their connection from a replica; everything else uses the primary.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "clinic.replicas", name = "enabled", havingValue = "true")
+@Profile("!reactive")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    public ReplicaPools replicaPools(ReplicaRoutingProperties properties, JdbcConnectionDetails connectionDetails){
+        return new ReplicaPools(properties, connectionDetails);
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(ReplicaRoutingProperties properties){
+        return new ReadYourWritesFilter(properties);
+    }
+
+    //Wrapping the pool instead of declaring another DataSource keeps Boot's DataSource auto-configuration,
+    //pool metrics and connection details in place
+    @Bean
+    public static BeanPostProcessor replicaRoutingDataSourcePostProcessor(ObjectProvider<ReplicaPools> replicaPools){
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName){
+                if(bean instanceof HikariDataSource primary){
+                    return new ReadWriteDataSource(primary, new ReplicaRoutingDataSource(primary, replicaPools.getObject()));
+                }
+                return bean;
+            }
+        };
+    }
+}
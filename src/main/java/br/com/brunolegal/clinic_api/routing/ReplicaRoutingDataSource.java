@@ -0,0 +1,26 @@
+package br.com.brunolegal.clinic_api.routing;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+//Read-only side of the routing: hands out connections of the replica ReplicaPools picks, or of the primary
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    private final ReplicaPools replicaPools;
+
+    ReplicaRoutingDataSource(DataSource primary, ReplicaPools replicaPools){
+        this.replicaPools = replicaPools;
+        Map<Object, Object> targets = replicaPools.dataSources();
+        targets.put(ReplicaPools.PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey(){
+        return replicaPools.route();
+    }
+}
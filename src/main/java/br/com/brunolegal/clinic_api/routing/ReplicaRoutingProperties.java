@@ -0,0 +1,46 @@
+package br.com.brunolegal.clinic_api.routing;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Read replicas that take the read-only transactions off the primary.
+ *
+ * @param enabled          routes read-only transactions to the replicas; writes always go to the primary
+ * @param urls             JDBC URLs of the streaming replicas
+ * @param username         replica user, defaults to the primary's
+ * @param password         replica password, defaults to the primary's
+ * @param maximumPoolSize  connections per replica pool
+ * @param maxLag           a replica further behind the primary than this gets no reads until it catches up
+ * @param lagCheckInterval how often each replica's replay lag is measured
+ * @param stickyFor        how long a client that wrote keeps reading from the primary; at least
+ *                         maxLag + lagCheckInterval, so it then only meets replicas that have its write
+ * @param cookieName       cookie that carries the end of that window to whichever node serves the client next
+ * @param cookieSecret     HMAC key signing that cookie, the same on every node; unset, each node picks a random
+ *                         key and ignores the cookies of the others
+ */
+@ConfigurationProperties(prefix = "clinic.replicas")
+public record ReplicaRoutingProperties(
+
+        boolean enabled,
+        @DefaultValue List<String> urls,
+        String username,
+        String password,
+        @DefaultValue("10") int maximumPoolSize,
+        @DefaultValue("2s") Duration maxLag,
+        @DefaultValue("1s") Duration lagCheckInterval,
+        @DefaultValue("5s") Duration stickyFor,
+        @DefaultValue("clinic_primary_until") String cookieName,
+        String cookieSecret
+
+) {
+
+    public ReplicaRoutingProperties {
+        if(stickyFor.compareTo(maxLag.plus(lagCheckInterval)) < 0){
+            throw new IllegalArgumentException("clinic.replicas.sticky-for must be at least max-lag + lag-check-interval");
+        }
+    }
+}
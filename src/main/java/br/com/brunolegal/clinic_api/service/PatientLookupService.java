@@ -0,0 +1,86 @@
+package br.com.brunolegal.clinic_api.service;
+
+import br.com.brunolegal.clinic_api.config.MetricsConfig;
+import br.com.brunolegal.clinic_api.domain.Patient;
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import br.com.brunolegal.clinic_api.exception.ResourceNotFoundException;
+import br.com.brunolegal.clinic_api.lookup.PatientLookupIndex;
+import br.com.brunolegal.clinic_api.mapper.PatientMapper;
+import br.com.brunolegal.clinic_api.repository.PatientRepository;
+import br.com.brunolegal.clinic_api.routing.ReadRouting;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+//Exact email and phone lookups: ids come from the in-memory index and details from the patients
+//cache, the database is only asked when the index has nothing (or only stale entries) for the value.
+//Those database reads go to the primary even with read replicas, since what they find is taught to the index
+@Service
+@Timed(MetricsConfig.SERVICE_TIMER)
+@Profile("!reactive")
+public class PatientLookupService {
+    final PatientService patientService;
+    final PatientRepository patientRepository;
+    final PatientMapper patientMapper;
+    final PatientLookupIndex lookupIndex;
+
+    public PatientLookupService(PatientService patientService, PatientRepository patientRepository,
+                                PatientMapper patientMapper, PatientLookupIndex lookupIndex){
+        this.patientService = patientService;
+        this.patientRepository = patientRepository;
+        this.patientMapper = patientMapper;
+        this.lookupIndex = lookupIndex;
+    }
+
+    public Optional<PatientDetailsDTO> findByEmail(String email){
+        OptionalLong id = lookupIndex.findIdByEmail(email);
+        if(id.isPresent()){
+            Optional<PatientDetailsDTO> found = findActive(id.getAsLong())
+                    .filter(dto -> dto.email().equals(email));
+            if(found.isPresent()){
+                return found;
+            }
+        }
+
+        Optional<Patient> patient = ReadRouting.onPrimary(() -> patientRepository.findByEmail(email));
+        patient.ifPresent(this::learn);
+        return patient.filter(p -> Boolean.TRUE.equals(p.getActive())).map(patientMapper::toDetailsDto);
+    }
+
+    public List<PatientDetailsDTO> findByPhone(String phone){
+        List<PatientDetailsDTO> found = new ArrayList<>();
+        for(long id : lookupIndex.findIdsByPhone(phone)){
+            findActive(id)
+                    .filter(dto -> dto.phone().equals(phone))
+                    .ifPresent(found::add);
+        }
+        if(!found.isEmpty()){
+            return found;
+        }
+
+        List<Patient> patients = ReadRouting.onPrimary(() -> patientRepository.findByPhoneAndActiveTrueOrderByIdAsc(phone));
+        patients.forEach(this::learn);
+        return patients.stream()
+                .map(patientMapper::toDetailsDto)
+                .toList();
+    }
+
+    //Goes through the service proxy so the patients cache answers repeated lookups
+    private Optional<PatientDetailsDTO> findActive(long id){
+        try {
+            return Optional.of(patientService.getPatientById(id));
+        } catch(ResourceNotFoundException e){
+            return Optional.empty();
+        }
+    }
+
+    //A database hit the index missed, e.g. a registration on another node: teach it to the index
+    private void learn(Patient patient){
+        lookupIndex.apply(patient.getId(), patient.getEmail(), patient.getPhone(), Boolean.TRUE.equals(patient.getActive()));
+    }
+}
@@ -1,81 +1,401 @@
 package br.com.brunolegal.clinic_api.service;
 
+import br.com.brunolegal.clinic_api.audit.PatientAuditEntry;
+import br.com.brunolegal.clinic_api.audit.PatientAuditLog;
+import br.com.brunolegal.clinic_api.config.CacheConfig;
+import br.com.brunolegal.clinic_api.config.MetricsConfig;
 import br.com.brunolegal.clinic_api.domain.Patient;
+import br.com.brunolegal.clinic_api.domain.PatientOutboxEvent;
+import br.com.brunolegal.clinic_api.dto.PatientBatchItemResultDTO;
+import br.com.brunolegal.clinic_api.dto.PatientBatchResultDTO;
+import br.com.brunolegal.clinic_api.dto.PatientChangeDTO;
+import br.com.brunolegal.clinic_api.dto.PatientChangePageDTO;
 import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import br.com.brunolegal.clinic_api.dto.PatientField;
+import br.com.brunolegal.clinic_api.dto.PatientPageDTO;
 import br.com.brunolegal.clinic_api.dto.PatientRegistrationDTO;
+import br.com.brunolegal.clinic_api.dto.PatientSearchPageDTO;
 import br.com.brunolegal.clinic_api.dto.PatientUpdateDTO;
+import br.com.brunolegal.clinic_api.event.PatientChangedEvent;
+import br.com.brunolegal.clinic_api.exception.ChangesExpiredException;
+import br.com.brunolegal.clinic_api.exception.ConstraintViolations;
 import br.com.brunolegal.clinic_api.exception.DuplicateResourceException;
+import br.com.brunolegal.clinic_api.exception.InvalidCursorException;
+import br.com.brunolegal.clinic_api.exception.PreconditionFailedException;
 import br.com.brunolegal.clinic_api.exception.ResourceNotFoundException;
+import br.com.brunolegal.clinic_api.lookup.PatientLookupIndex;
 import br.com.brunolegal.clinic_api.mapper.PatientMapper;
+import br.com.brunolegal.clinic_api.outbox.OutboxProperties;
+import br.com.brunolegal.clinic_api.repository.PatientOutboxRepository;
 import br.com.brunolegal.clinic_api.repository.PatientRepository;
+import br.com.brunolegal.clinic_api.repository.PatientSearchHit;
+import br.com.brunolegal.clinic_api.repository.PatientSearchRepository;
+import br.com.brunolegal.clinic_api.routing.ReadRouting;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Locale;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@Timed(MetricsConfig.SERVICE_TIMER)
+@Profile("!reactive")
 public class PatientService {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+    public static final int DEFAULT_SEARCH_LIMIT = 20;
+    public static final int MAX_SEARCH_LIMIT = 100;
+    public static final int DEFAULT_CHANGES_LIMIT = 100;
+    public static final int MAX_CHANGES_LIMIT = 1000;
+    //rows inserted per flush in a batch registration, a multiple of hibernate.jdbc.batch_size
+    static final int BATCH_CHUNK_SIZE = 500;
+    //emails checked per IN query, keeps the bind parameter count well under the driver limit
+    static final int EMAIL_LOOKUP_CHUNK_SIZE = 1000;
+
     final PatientRepository patientRepository;
+    final PatientSearchRepository patientSearchRepository;
     final PatientMapper patientMapper;
+    final EntityManager entityManager;
+    final Validator validator;
+    final ApplicationEventPublisher eventPublisher;
+    final PatientLookupIndex lookupIndex;
+    final PatientAuditLog auditLog;
+    final PatientOutboxRepository outboxRepository;
+    final OutboxProperties outboxProperties;
 
-    public PatientService(PatientRepository patientRepository, PatientMapper patientMapper){
+    public PatientService(PatientRepository patientRepository, PatientSearchRepository patientSearchRepository,
+                          PatientMapper patientMapper, EntityManager entityManager, Validator validator,
+                          ApplicationEventPublisher eventPublisher, PatientLookupIndex lookupIndex, PatientAuditLog auditLog,
+                          PatientOutboxRepository outboxRepository, OutboxProperties outboxProperties){
         this.patientRepository = patientRepository;
+        this.patientSearchRepository = patientSearchRepository;
         this.patientMapper = patientMapper;
+        this.entityManager = entityManager;
+        this.validator = validator;
+        this.eventPublisher = eventPublisher;
+        this.lookupIndex = lookupIndex;
+        this.auditLog = auditLog;
+        this.outboxRepository = outboxRepository;
+        this.outboxProperties = outboxProperties;
     }
 
+    //An email known to the lookup index is confirmed with a SELECT before it is rejected, the index can be
+    //stale; otherwise the unique constraint decides, which is one round trip and also holds when two registrations race
+    @Transactional
     public PatientDetailsDTO createPatient(PatientRegistrationDTO dto){
-        if(patientRepository.existsByEmail(dto.email())){
+        if(lookupIndex.findIdByEmail(dto.email()).isPresent() && patientRepository.existsByEmail(dto.email())){
             throw new DuplicateResourceException("Email already in use");
         }
         Patient patient = patientMapper.toEntity(dto);
 
-        Patient savedPatient = patientRepository.save(patient);
+        Patient savedPatient;
+        try {
+            savedPatient = patientRepository.saveAndFlush(patient);
+        } catch(DataIntegrityViolationException e){
+            throw translateEmailViolation(e);
+        }
 
+        eventPublisher.publishEvent(PatientChangedEvent.created(savedPatient.getId(), savedPatient.getEmail(), savedPatient.getPhone()));
+        if(auditLog.isEnabled()){
+            eventPublisher.publishEvent(PatientAuditEntry.created(savedPatient));
+        }
+        appendToOutbox(List.of(PatientOutboxEvent.created(savedPatient)));
         return patientMapper.toDetailsDto(savedPatient);
 
     }
 
+    //Registers many patients in one transaction: invalid entries and emails that are repeated
+    //or already taken are reported per item, the rest are inserted with JDBC batching
+    @Transactional
+    public PatientBatchResultDTO createPatients(List<PatientRegistrationDTO> dtos){
+        PatientBatchItemResultDTO[] results = new PatientBatchItemResultDTO[dtos.size()];
+        Map<String, Integer> indexByEmail = new LinkedHashMap<>();
+
+        for(int i = 0; i < dtos.size(); i++){
+            PatientRegistrationDTO dto = dtos.get(i);
+            if(dto == null){
+                results[i] = PatientBatchItemResultDTO.invalid(i, "Patient can't be null");
+                continue;
+            }
+            Set<ConstraintViolation<PatientRegistrationDTO>> violations = validator.validate(dto);
+            if(!violations.isEmpty()){
+                results[i] = PatientBatchItemResultDTO.invalid(i, violations.stream()
+                        .map(ConstraintViolation::getMessage)
+                        .sorted()
+                        .collect(Collectors.joining("; ")));
+            } else if(indexByEmail.putIfAbsent(dto.email(), i) != null){
+                results[i] = PatientBatchItemResultDTO.duplicate(i, "Email repeated in batch");
+            }
+        }
+
+        Set<String> existingEmails = findExistingEmails(indexByEmail.keySet());
+        List<Patient> pending = new ArrayList<>(BATCH_CHUNK_SIZE);
+        List<Integer> pendingIndexes = new ArrayList<>(BATCH_CHUNK_SIZE);
+
+        for(Map.Entry<String, Integer> entry : indexByEmail.entrySet()){
+            int index = entry.getValue();
+            if(existingEmails.contains(entry.getKey())){
+                results[index] = PatientBatchItemResultDTO.duplicate(index, "Email already in use");
+                continue;
+            }
+            pending.add(patientMapper.toEntity(dtos.get(index)));
+            pendingIndexes.add(index);
+            if(pending.size() == BATCH_CHUNK_SIZE){
+                insertChunk(pending, pendingIndexes, results);
+            }
+        }
+        insertChunk(pending, pendingIndexes, results);
+
+        int created = (int) Arrays.stream(results)
+                .filter(result -> result.status() == PatientBatchItemResultDTO.Status.CREATED)
+                .count();
+        return new PatientBatchResultDTO(created, results.length - created, Arrays.asList(results));
+    }
+
+    //Every email is queried: a hit of the lookup index could be stale and would need the same round trip
+    private Set<String> findExistingEmails(Collection<String> candidates){
+        Set<String> existing = new HashSet<>();
+        List<String> emails = new ArrayList<>(candidates);
+        for(int from = 0; from < emails.size(); from += EMAIL_LOOKUP_CHUNK_SIZE){
+            int to = Math.min(from + EMAIL_LOOKUP_CHUNK_SIZE, emails.size());
+            existing.addAll(patientRepository.findExistingEmails(emails.subList(from, to)));
+        }
+        return existing;
+    }
+
+    //Flushes one chunk of inserts and clears the persistence context so it does not grow with the batch
+    private void insertChunk(List<Patient> patients, List<Integer> indexes, PatientBatchItemResultDTO[] results){
+        if(patients.isEmpty()){
+            return;
+        }
+        List<Patient> saved = patientRepository.saveAll(patients);
+        entityManager.flush();
+        List<PatientOutboxEvent> outboxEvents = new ArrayList<>(saved.size());
+        for(int i = 0; i < saved.size(); i++){
+            int index = indexes.get(i);
+            Patient patient = saved.get(i);
+            results[index] = PatientBatchItemResultDTO.created(index, patient.getId());
+            eventPublisher.publishEvent(PatientChangedEvent.created(patient.getId(), patient.getEmail(), patient.getPhone()));
+            if(auditLog.isEnabled()){
+                eventPublisher.publishEvent(PatientAuditEntry.created(patient));
+            }
+            outboxEvents.add(PatientOutboxEvent.created(patient));
+        }
+        appendToOutbox(outboxEvents);
+        entityManager.clear();
+        patients.clear();
+        indexes.clear();
+    }
+
+    //Misses read the primary: an entry loaded from a lagging replica would outlive the lag by the cache TTL
+    @Cacheable(cacheNames = CacheConfig.PATIENTS_CACHE, key = "#id")
     public PatientDetailsDTO getPatientById(Long id){
-        Patient patient = patientRepository.findByIdAndActiveTrue(id)
+        return ReadRouting.onPrimary(() -> patientRepository.findDetailsById(id))
                 .orElseThrow(() -> new ResourceNotFoundException("Patient not found with id: " + id));
-        return patientMapper.toDetailsDto(patient);
     }
 
-    public List<PatientDetailsDTO> listAll(){
-        List<Patient> patients = patientRepository.findAllByActiveTrue();
-        return patients.stream()
-                .map(patientMapper::toDetailsDto)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public PatientPageDTO listPage(Long after, int limit){
+        return listPage(after, limit, null);
     }
 
-    public PatientDetailsDTO updatePatient(Long id, PatientUpdateDTO dto){
-        Patient patient = patientRepository.findByIdAndActiveTrue(id).orElseThrow(() -> new ResourceNotFoundException("Patient not found with id: " + id));
-        Optional<Patient> patientByEmail = patientRepository.findByEmail(dto.email());
-        if(patientByEmail.isPresent() && !patientByEmail.get().getId().equals(id)){
-            throw new DuplicateResourceException("Email already in use");
+    //Keyset pagination on id: fetches one extra row to know whether there is a next page.
+    //Without fields (or with all of them) every column is read, otherwise only id, version and those fields
+    @Transactional(readOnly = true)
+    public PatientPageDTO listPage(Long after, int limit, Set<PatientField> fields){
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        long cursor = after == null ? 0L : after;
+
+        List<PatientDetailsDTO> patients = fields == null || fields.isEmpty() || fields.containsAll(EnumSet.allOf(PatientField.class))
+                ? patientRepository.findDetailsPage(cursor, Limit.of(pageSize + 1))
+                : patientRepository.findActivePage(cursor, pageSize + 1, fields);
+        boolean hasNext = patients.size() > pageSize;
+
+        List<PatientDetailsDTO> content = hasNext ? patients.subList(0, pageSize) : patients;
+        Long nextCursor = hasNext ? content.get(content.size() - 1).id() : null;
+
+        return new PatientPageDTO(content, nextCursor);
+    }
+
+    //Ranked search keyset-paged on (score, id): fetches one extra hit to know whether there is a next page
+    @Transactional(readOnly = true)
+    public PatientSearchPageDTO search(String query, String after, int limit){
+        int pageSize = Math.min(Math.max(limit, 1), MAX_SEARCH_LIMIT);
+        String term = query.trim().toLowerCase(Locale.ROOT);
+
+        List<PatientSearchHit> hits = patientSearchRepository.search(term, decodeSearchCursor(after), pageSize + 1);
+        boolean hasNext = hits.size() > pageSize;
+
+        List<PatientDetailsDTO> content = hits.stream()
+                .limit(pageSize)
+                .map(hit -> new PatientDetailsDTO(hit.id(), hit.name(), hit.email(), hit.phone()))
+                .toList();
+        String nextCursor = hasNext ? encodeSearchCursor(hits.get(pageSize - 1)) : null;
+
+        return new PatientSearchPageDTO(content, nextCursor);
+    }
+
+    //Streams every active patient to the consumer; rows are read straight into DTOs, so the
+    //persistence context stays empty however large the table is
+    @Transactional(readOnly = true)
+    public void exportActive(Consumer<PatientDetailsDTO> consumer){
+        try(Stream<PatientDetailsDTO> patients = patientRepository.streamDetailsByActiveTrue()){
+            patients.forEach(consumer);
+        }
+    }
+
+    //Relayed patient events after the sequence in since, oldest first; fetches one extra event to know whether
+    //there is a next page. Sequence numbers have no gaps, so a jump past since means the events in between
+    //were purged and the consumer has to resync; since = 0 starts at the oldest event still kept
+    @Transactional(readOnly = true)
+    public PatientChangePageDTO listChanges(long since, int limit){
+        int pageSize = Math.min(Math.max(limit, 1), MAX_CHANGES_LIMIT);
+        //read before the events: a relay committing in between must not look like a purge
+        long lastSequence = since > 0 ? outboxRepository.findLastSequence() : 0L;
+
+        List<PatientChangeDTO> changes = outboxRepository.findChanges(since, pageSize + 1);
+        long first = changes.isEmpty() ? lastSequence + 1 : changes.get(0).sequence();
+        if(since > 0 && since < lastSequence && first > since + 1){
+            throw new ChangesExpiredException("Patient changes after sequence " + since + " are no longer kept, reload GET /patients");
         }
+        boolean hasNext = changes.size() > pageSize;
 
-        patient.setName(dto.name());
-        patient.setEmail(dto.email());
-        patient.setPhone(dto.phone());
+        List<PatientChangeDTO> content = hasNext ? changes.subList(0, pageSize) : changes;
+        Long nextCursor = hasNext ? content.get(content.size() - 1).sequence() : null;
 
-        Patient updatedPatient = patientRepository.save(patient);
-        return patientMapper.toDetailsDto(updatedPatient);
+        return new PatientChangePageDTO(content, nextCursor);
     }
-    //Logic delete: set active to false
-    public void deletePatient(Long id){
-        Patient patient = patientRepository.findByIdAndActiveTrue(id).orElseThrow(() -> new ResourceNotFoundException("Patient not found with id: " + id));
 
-        patient.setActive(false);
+    @Transactional
+    @CachePut(cacheNames = CacheConfig.PATIENTS_CACHE, key = "#id")
+    public PatientDetailsDTO updatePatient(Long id, PatientUpdateDTO dto){
+        return updatePatient(id, dto, null);
+    }
 
-        patientRepository.save(patient);
+    //With an expected version the UPDATE only applies to that version (optimistic locking, If-Match) and is the
+    //only statement; without one the new version is read back so the cached entry can still carry its ETag.
+    //With the audit log on, the row is read and locked first instead, which also gives the new version
+    @Transactional
+    @CachePut(cacheNames = CacheConfig.PATIENTS_CACHE, key = "#id")
+    public PatientDetailsDTO updatePatient(Long id, PatientUpdateDTO dto, Long expectedVersion){
+        OptionalLong emailOwner = lookupIndex.findIdByEmail(dto.email());
+        if(emailOwner.isPresent() && emailOwner.getAsLong() != id && patientRepository.existsByEmailAndIdNot(dto.email(), id)){
+            throw new DuplicateResourceException("Email already in use");
+        }
+        PatientDetailsDTO before = auditLog.isEnabled() ? lockForAudit(id, expectedVersion) : null;
+        Instant updatedAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        int updatedRows;
+        try {
+            updatedRows = expectedVersion == null
+                    ? patientRepository.updateActive(id, dto.name(), dto.email(), dto.phone(), updatedAt)
+                    : patientRepository.updateActiveIfVersion(id, expectedVersion, dto.name(), dto.email(), dto.phone(), updatedAt);
+        } catch(DataIntegrityViolationException e){
+            throw translateEmailViolation(e);
+        }
+        if(updatedRows == 0){
+            if(expectedVersion != null && patientRepository.existsByIdAndActiveTrue(id)){
+                throw new PreconditionFailedException("Patient " + id + " was modified since version " + expectedVersion);
+            }
+            throw new ResourceNotFoundException("Patient not found with id: " + id);
+        }
+        long version = before != null ? before.version() + 1
+                : expectedVersion == null ? patientRepository.findVersionById(id) : expectedVersion + 1;
 
+        PatientDetailsDTO updated = patientMapper.toDetailsDto(id, dto, version, updatedAt);
+        eventPublisher.publishEvent(PatientChangedEvent.updated(id, dto.email(), dto.phone()));
+        if(before != null){
+            eventPublisher.publishEvent(PatientAuditEntry.updated(before, updated));
+        }
+        appendToOutbox(List.of(PatientOutboxEvent.updated(id, dto, version, updatedAt)));
+        return updated;
     }
+    //Logic delete: set active to false in a single UPDATE, without loading the entity
+    //(with the audit log on, after reading and locking the row it replaces)
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.PATIENTS_CACHE, key = "#id")
+    public void deletePatient(Long id){
+        PatientDetailsDTO before = auditLog.isEnabled() ? lockForAudit(id, null) : null;
+        Instant deletedAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        int deletedRows = patientRepository.softDeleteById(id, deletedAt);
+        if(deletedRows == 0){
+            throw new ResourceNotFoundException("Patient not found with id: " + id);
+        }
 
+        eventPublisher.publishEvent(PatientChangedEvent.deactivated(id));
+        if(before != null){
+            eventPublisher.publishEvent(PatientAuditEntry.deactivated(before, deletedAt));
+        }
+        appendToOutbox(List.of(PatientOutboxEvent.deactivated(id, before == null ? null : before.version() + 1, deletedAt)));
+    }
 
+    //Same transaction as the write: the event is relayed if and only if the write commits
+    private void appendToOutbox(List<PatientOutboxEvent> events){
+        if(outboxProperties.enabled()){
+            outboxRepository.append(events);
+        }
+    }
+
+    //The audit entry needs the state a write replaces: the row is locked until the write commits, so
+    //it cannot change in between, and a stale expected version fails here instead of at the UPDATE
+    private PatientDetailsDTO lockForAudit(Long id, Long expectedVersion){
+        PatientDetailsDTO current = patientRepository.findDetailsByIdForUpdate(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Patient not found with id: " + id));
+        if(expectedVersion != null && !expectedVersion.equals(current.version())){
+            throw new PreconditionFailedException("Patient " + id + " was modified since version " + expectedVersion);
+        }
+        return current;
+    }
 
+    //The cursor is opaque to clients: base64url of "score:id"
+    private static String encodeSearchCursor(PatientSearchHit hit){
+        String cursor = hit.score() + ":" + hit.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
 
+    private static PatientSearchHit decodeSearchCursor(String cursor){
+        if(cursor == null){
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            return new PatientSearchHit(Long.parseLong(parts[1]), null, null, null, Float.parseFloat(parts[0]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new InvalidCursorException("Invalid search cursor: " + cursor);
+        }
+    }
 
+    private static RuntimeException translateEmailViolation(DataIntegrityViolationException e){
+        if(ConstraintViolations.isViolationOf(e, Patient.EMAIL_UNIQUE_CONSTRAINT)){
+            return new DuplicateResourceException("Email already in use");
+        }
+        return e;
+    }
 
 }
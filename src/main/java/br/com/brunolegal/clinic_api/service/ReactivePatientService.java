@@ -0,0 +1,121 @@
+package br.com.brunolegal.clinic_api.service;
+
+import br.com.brunolegal.clinic_api.cache.CacheInvalidationProperties;
+import br.com.brunolegal.clinic_api.domain.Patient;
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import br.com.brunolegal.clinic_api.dto.PatientPageDTO;
+import br.com.brunolegal.clinic_api.dto.PatientRegistrationDTO;
+import br.com.brunolegal.clinic_api.dto.PatientUpdateDTO;
+import br.com.brunolegal.clinic_api.exception.ConstraintViolations;
+import br.com.brunolegal.clinic_api.exception.DuplicateResourceException;
+import br.com.brunolegal.clinic_api.exception.PreconditionFailedException;
+import br.com.brunolegal.clinic_api.exception.ResourceNotFoundException;
+import br.com.brunolegal.clinic_api.mapper.PatientMapper;
+import br.com.brunolegal.clinic_api.repository.ReactivePatientRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * The patient operations of {@link PatientService} for the {@code reactive} profile: the same rules,
+ * status codes and DTOs, on R2DBC. Reactive nodes keep no patient cache and no lookup index, every
+ * read goes to the database; updates and deletes still NOTIFY so servlet nodes evict their copies.
+ */
+@Service
+@Profile("reactive")
+public class ReactivePatientService {
+    //rows per keyset query of the streamed list
+    static final int STREAM_CHUNK_SIZE = 500;
+
+    final ReactivePatientRepository patientRepository;
+    final PatientMapper patientMapper;
+    final TransactionalOperator transactionalOperator;
+    final CacheInvalidationProperties cacheInvalidation;
+
+    public ReactivePatientService(ReactivePatientRepository patientRepository, PatientMapper patientMapper,
+                                  TransactionalOperator transactionalOperator, CacheInvalidationProperties cacheInvalidation){
+        this.patientRepository = patientRepository;
+        this.patientMapper = patientMapper;
+        this.transactionalOperator = transactionalOperator;
+        this.cacheInvalidation = cacheInvalidation;
+    }
+
+    //The unique constraint decides whether the email is taken, also when two registrations race
+    public Mono<PatientDetailsDTO> createPatient(PatientRegistrationDTO dto){
+        return patientRepository.insert(dto.name(), dto.email(), dto.phone(), Instant.now().truncatedTo(ChronoUnit.MICROS))
+                .onErrorMap(DataIntegrityViolationException.class, ReactivePatientService::translateEmailViolation);
+    }
+
+    public Mono<PatientDetailsDTO> getPatientById(Long id){
+        return patientRepository.findDetailsById(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Patient not found with id: " + id)));
+    }
+
+    //Keyset pagination on id: fetches one extra row to know whether there is a next page
+    public Mono<PatientPageDTO> listPage(Long after, int limit){
+        int pageSize = Math.min(Math.max(limit, 1), PatientService.MAX_PAGE_SIZE);
+        long cursor = after == null ? 0L : after;
+
+        return patientRepository.findDetailsPage(cursor, pageSize + 1)
+                .collectList()
+                .map(patients -> {
+                    boolean hasNext = patients.size() > pageSize;
+                    List<PatientDetailsDTO> content = hasNext ? patients.subList(0, pageSize) : patients;
+                    Long nextCursor = hasNext ? content.get(content.size() - 1).id() : null;
+                    return new PatientPageDTO(content, nextCursor);
+                });
+    }
+
+    //Every active patient after the cursor, emitted as fast as the subscriber requests them
+    public Flux<PatientDetailsDTO> streamActive(Long after){
+        return patientRepository.streamDetailsAfter(after == null ? 0L : after, STREAM_CHUNK_SIZE);
+    }
+
+    //With an expected version the UPDATE only applies to that version (optimistic locking, If-Match);
+    //either way the new version comes back from the UPDATE itself
+    public Mono<PatientDetailsDTO> updatePatient(Long id, PatientUpdateDTO dto, Long expectedVersion){
+        Instant updatedAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        return patientRepository.updateActive(id, expectedVersion, dto.name(), dto.email(), dto.phone(), updatedAt)
+                .switchIfEmpty(Mono.defer(() -> missingOrChanged(id, expectedVersion)))
+                .flatMap(version -> announce(id).thenReturn(patientMapper.toDetailsDto(id, dto, version, updatedAt)))
+                .as(transactionalOperator::transactional)
+                .onErrorMap(DataIntegrityViolationException.class, ReactivePatientService::translateEmailViolation);
+    }
+
+    //Logic delete: set active to false in a single UPDATE
+    public Mono<Void> deletePatient(Long id){
+        return patientRepository.softDelete(id, Instant.now().truncatedTo(ChronoUnit.MICROS))
+                .flatMap(deletedRows -> deletedRows == 0
+                        ? Mono.<Void>error(new ResourceNotFoundException("Patient not found with id: " + id))
+                        : announce(id))
+                .as(transactionalOperator::transactional);
+    }
+
+    private Mono<Long> missingOrChanged(Long id, Long expectedVersion){
+        if(expectedVersion == null){
+            return Mono.error(new ResourceNotFoundException("Patient not found with id: " + id));
+        }
+        return patientRepository.existsActive(id)
+                .flatMap(exists -> Mono.error(exists
+                        ? new PreconditionFailedException("Patient " + id + " was modified since version " + expectedVersion)
+                        : new ResourceNotFoundException("Patient not found with id: " + id)));
+    }
+
+    private Mono<Void> announce(Long id){
+        return cacheInvalidation.enabled() ? patientRepository.notify(cacheInvalidation.channel(), id) : Mono.empty();
+    }
+
+    private static Throwable translateEmailViolation(DataIntegrityViolationException e){
+        if(ConstraintViolations.isViolationOf(e, Patient.EMAIL_UNIQUE_CONSTRAINT)){
+            return new DuplicateResourceException("Email already in use");
+        }
+        return e;
+    }
+}
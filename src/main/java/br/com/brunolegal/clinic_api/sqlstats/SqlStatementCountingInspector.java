@@ -0,0 +1,13 @@
+package br.com.brunolegal.clinic_api.sqlstats;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+//Hibernate calls this once for every statement it prepares, including each query of an N+1
+public class SqlStatementCountingInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql){
+        SqlStatementStats.statementPrepared();
+        return sql;
+    }
+}
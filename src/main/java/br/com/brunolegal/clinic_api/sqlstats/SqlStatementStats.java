@@ -0,0 +1,50 @@
+package br.com.brunolegal.clinic_api.sqlstats;
+
+import java.time.Duration;
+
+/**
+ * Statement count and execution time of the HTTP request running on the current thread.
+ * {@link SqlStatsFilter} opens and closes the scope; statements issued outside a request
+ * (startup, scheduled work, async export dispatches) are not counted.
+ */
+public final class SqlStatementStats {
+    private static final ThreadLocal<SqlStatementStats> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long executionNanos;
+
+    private SqlStatementStats(){
+    }
+
+    static SqlStatementStats begin(){
+        SqlStatementStats stats = new SqlStatementStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    static void end(){
+        CURRENT.remove();
+    }
+
+    static void statementPrepared(){
+        SqlStatementStats stats = CURRENT.get();
+        if(stats != null){
+            stats.statements++;
+        }
+    }
+
+    static void executed(long nanos){
+        SqlStatementStats stats = CURRENT.get();
+        if(stats != null){
+            stats.executionNanos += nanos;
+        }
+    }
+
+    public int getStatements(){
+        return statements;
+    }
+
+    public Duration getExecutionTime(){
+        return Duration.ofNanos(executionNanos);
+    }
+}
@@ -0,0 +1,31 @@
+package br.com.brunolegal.clinic_api.sqlstats;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Hooks the statement counter into Hibernate and the request filter into the servlet
+ * chain. On by default; {@code clinic.sql-stats.enabled=false} removes both.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "clinic.sql-stats", name = "enabled", havingValue = "true", matchIfMissing = true)
+@Profile("!reactive")
+public class SqlStatsConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer sqlStatsHibernateCustomizer(){
+        return hibernateProperties -> {
+            hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlStatementCountingInspector());
+            hibernateProperties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, SqlTimingSessionListener.class.getName());
+        };
+    }
+
+    @Bean
+    public SqlStatsFilter sqlStatsFilter(SqlStatsProperties properties){
+        return new SqlStatsFilter(properties);
+    }
+}
@@ -0,0 +1,104 @@
+package br.com.brunolegal.clinic_api.sqlstats;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Counts the statements each HTTP request issues, warns when a request goes over the
+ * configured budget and, if enabled, reports the counts in response headers.
+ * <p>
+ * The headers have to be set before the body commits the response, so they are written
+ * when the handler first asks for the output stream, which is after all its queries ran.
+ */
+@Slf4j
+public class SqlStatsFilter extends OncePerRequestFilter {
+    public static final String STATEMENTS_HEADER = "X-SQL-Statements";
+    public static final String TIME_HEADER = "X-SQL-Time-Ms";
+
+    private final SqlStatsProperties properties;
+
+    public SqlStatsFilter(SqlStatsProperties properties){
+        this.properties = properties;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlStatementStats stats = SqlStatementStats.begin();
+        HeaderWritingResponse wrapped = new HeaderWritingResponse(response, stats);
+        try {
+            chain.doFilter(request, wrapped);
+        } finally {
+            SqlStatementStats.end();
+            wrapped.writeHeaders();
+            checkBudget(request, stats);
+        }
+    }
+
+    private void checkBudget(HttpServletRequest request, SqlStatementStats stats){
+        if(stats.getStatements() > properties.statementBudget()
+                || stats.getExecutionTime().compareTo(properties.timeBudget()) > 0){
+            log.warn("{} {} issued {} SQL statements in {} ms (budget: {} statements, {} ms)",
+                    request.getMethod(), request.getRequestURI(), stats.getStatements(),
+                    stats.getExecutionTime().toMillis(), properties.statementBudget(), properties.timeBudget().toMillis());
+        }
+    }
+
+    private class HeaderWritingResponse extends HttpServletResponseWrapper {
+        private final SqlStatementStats stats;
+        private boolean headersWritten;
+
+        HeaderWritingResponse(HttpServletResponse response, SqlStatementStats stats){
+            super(response);
+            this.stats = stats;
+        }
+
+        void writeHeaders(){
+            if(headersWritten || !properties.exposeHeaders() || isCommitted()){
+                return;
+            }
+            headersWritten = true;
+            setHeader(STATEMENTS_HEADER, Integer.toString(stats.getStatements()));
+            setHeader(TIME_HEADER, Long.toString(stats.getExecutionTime().toMillis()));
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeaders();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeaders();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeaders();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeHeaders();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeHeaders();
+            super.sendError(sc);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package br.com.brunolegal.clinic_api.sqlstats;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Per-request SQL statement accounting.
+ *
+ * @param enabled         counts the statements Hibernate issues while an HTTP request is handled
+ * @param exposeHeaders   adds the counts to the response as X-SQL-Statements / X-SQL-Time-Ms
+ * @param statementBudget a request issuing more statements than this is logged as a warning
+ * @param timeBudget      a request spending longer than this executing statements is logged as a warning
+ */
+@ConfigurationProperties(prefix = "clinic.sql-stats")
+public record SqlStatsProperties(
+
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("true") boolean exposeHeaders,
+        @DefaultValue("10") int statementBudget,
+        @DefaultValue("500ms") Duration timeBudget
+
+) {
+}
@@ -0,0 +1,33 @@
+package br.com.brunolegal.clinic_api.sqlstats;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Adds the time spent in JDBC executions to the current request. Hibernate creates one
+ * instance per session (hibernate.session.events.auto), and a session is used by a single
+ * thread, so plain fields are enough.
+ */
+public class SqlTimingSessionListener implements SessionEventListener {
+    private long executeStart;
+    private long batchStart;
+
+    @Override
+    public void jdbcExecuteStatementStart(){
+        executeStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd(){
+        SqlStatementStats.executed(System.nanoTime() - executeStart);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart(){
+        batchStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd(){
+        SqlStatementStats.executed(System.nanoTime() - batchStart);
+    }
+}
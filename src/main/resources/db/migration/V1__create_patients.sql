@@ -0,0 +1,40 @@
+-- Baseline of the patients table.
+-- Every statement is idempotent so it also applies on top of a database that was built by
+-- Hibernate's old ddl-auto=update (identity id, generated constraint names).
+
+CREATE SEQUENCE IF NOT EXISTS patients_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS patients (
+    id         BIGINT                      NOT NULL,
+    name       VARCHAR(255)                NOT NULL,
+    email      VARCHAR(255)                NOT NULL,
+    phone      VARCHAR(255)                NOT NULL,
+    active     BOOLEAN                     NOT NULL DEFAULT TRUE,
+    deleted_at TIMESTAMP(6) WITH TIME ZONE,
+    CONSTRAINT pk_patients PRIMARY KEY (id)
+);
+
+ALTER TABLE patients ADD COLUMN IF NOT EXISTS deleted_at TIMESTAMP(6) WITH TIME ZONE;
+
+-- The application tells duplicate emails apart by constraint name, so uk_patients_email must be
+-- the only unique constraint on the table: drop the ones Hibernate generated and add ours.
+DO $$
+DECLARE
+    legacy RECORD;
+BEGIN
+    FOR legacy IN
+        SELECT conname FROM pg_constraint
+        WHERE conrelid = 'patients'::regclass AND contype = 'u' AND conname <> 'uk_patients_email'
+    LOOP
+        EXECUTE format('ALTER TABLE patients DROP CONSTRAINT %I', legacy.conname);
+    END LOOP;
+
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conrelid = 'patients'::regclass AND conname = 'uk_patients_email') THEN
+        ALTER TABLE patients ADD CONSTRAINT uk_patients_email UNIQUE (email);
+    END IF;
+END $$;
+
+-- Ids handed out by the pooled allocator are (value - 49 .. value], so the sequence must start
+-- above every existing id. Never move it backwards: running nodes may hold a block already.
+SELECT setval('patients_seq', GREATEST((SELECT MAX(id) FROM patients), (SELECT last_value FROM patients_seq)))
+WHERE EXISTS (SELECT 1 FROM patients);
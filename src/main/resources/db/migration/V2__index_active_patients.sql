@@ -0,0 +1,4 @@
+-- Partial indexes over live (active) patients only. Every lookup and listing filters on
+-- active = true, so soft-deleted rows never bloat these indexes.
+CREATE INDEX IF NOT EXISTS idx_patients_active_id ON patients (id) WHERE active;
+CREATE INDEX IF NOT EXISTS idx_patients_active_email ON patients (email) WHERE active;
@@ -0,0 +1,8 @@
+-- Indexes behind GET /patients/search. Trigram GIN indexes answer both the similarity (%)
+-- operator and LIKE '%term%' on name and email; text_pattern_ops makes LIKE 'term%' on phone
+-- an index range scan regardless of the database collation. Partial, like the V2 indexes.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_patients_active_name_trgm ON patients USING gin (lower(name) gin_trgm_ops) WHERE active;
+CREATE INDEX IF NOT EXISTS idx_patients_active_email_trgm ON patients USING gin (lower(email) gin_trgm_ops) WHERE active;
+CREATE INDEX IF NOT EXISTS idx_patients_active_phone_prefix ON patients (phone text_pattern_ops) WHERE active;
@@ -0,0 +1,5 @@
+-- Row version for optimistic locking and HTTP validators (ETag, Last-Modified).
+-- Every write bumps version and stamps updated_at. Both defaults are non-volatile, so Postgres
+-- adds the columns without rewriting the table; existing rows start at version 0.
+ALTER TABLE patients ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE patients ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT now();
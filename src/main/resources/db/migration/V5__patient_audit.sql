@@ -0,0 +1,23 @@
+-- Append-only history of patient writes, filled in the background by PatientAuditLog.
+-- There is no foreign key to patients: the history outlives the rows it describes and must not
+-- add work to the writes it records. before_* is null for registrations.
+
+CREATE TABLE IF NOT EXISTS patient_audit (
+    id            BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    patient_id    BIGINT                      NOT NULL,
+    action        VARCHAR(16)                 NOT NULL,
+    version       BIGINT                      NOT NULL,
+    occurred_at   TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    before_name   VARCHAR(255),
+    before_email  VARCHAR(255),
+    before_phone  VARCHAR(255),
+    before_active BOOLEAN,
+    after_name    VARCHAR(255),
+    after_email   VARCHAR(255),
+    after_phone   VARCHAR(255),
+    after_active  BOOLEAN,
+    CONSTRAINT pk_patient_audit PRIMARY KEY (id)
+);
+
+-- History of one patient, in write order
+CREATE INDEX IF NOT EXISTS idx_patient_audit_patient ON patient_audit (patient_id, id);
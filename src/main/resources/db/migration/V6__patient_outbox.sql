@@ -0,0 +1,32 @@
+-- Transactional outbox of patient events. PatientService inserts a row in the same transaction as
+-- the write; PatientOutboxRelay later gives it the next feed sequence number and publishes it.
+-- id is taken from one database sequence at insert time, so the events of a patient, whose writes
+-- are serialized by its row lock, are relayed in the order they happened.
+
+CREATE TABLE IF NOT EXISTS patient_outbox (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    patient_id   BIGINT                      NOT NULL,
+    type         VARCHAR(16)                 NOT NULL,
+    version      BIGINT,
+    occurred_at  TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    name         VARCHAR(255),
+    email        VARCHAR(255),
+    phone        VARCHAR(255),
+    seq          BIGINT,
+    published_at TIMESTAMP(6) WITH TIME ZONE,
+    CONSTRAINT pk_patient_outbox PRIMARY KEY (id)
+);
+
+-- GET /patients/changes?since= reads by sequence; rows waiting for the relay have none yet
+CREATE UNIQUE INDEX IF NOT EXISTS idx_patient_outbox_seq ON patient_outbox (seq);
+CREATE INDEX IF NOT EXISTS idx_patient_outbox_unpublished ON patient_outbox (id) WHERE seq IS NULL;
+
+-- Last sequence number handed out. Relays lock this row for the whole relay transaction, so
+-- numbers are gap-free and become visible in order even with a relay running on every node.
+CREATE TABLE IF NOT EXISTS patient_outbox_relay (
+    id       SMALLINT NOT NULL,
+    last_seq BIGINT   NOT NULL,
+    CONSTRAINT pk_patient_outbox_relay PRIMARY KEY (id)
+);
+
+INSERT INTO patient_outbox_relay (id, last_seq) VALUES (1, 0) ON CONFLICT (id) DO NOTHING;
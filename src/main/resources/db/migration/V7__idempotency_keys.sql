@@ -0,0 +1,16 @@
+-- Responses of POST /patients requests sent with an Idempotency-Key header, shared by every node.
+-- A row without a status is a claim: some node is running the request right now. Rows are deleted
+-- once expires_at has passed; a claim whose node died is taken over after clinic.idempotency.in-progress-timeout.
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    idempotency_key VARCHAR(255)                NOT NULL,
+    request_hash    VARCHAR(64)                 NOT NULL,
+    status          INTEGER,
+    location        VARCHAR(2048),
+    body            VARCHAR(4096),
+    created_at      TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    expires_at      TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    CONSTRAINT pk_idempotency_keys PRIMARY KEY (idempotency_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_expires ON idempotency_keys (expires_at);
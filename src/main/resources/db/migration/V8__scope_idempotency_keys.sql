@@ -0,0 +1,5 @@
+-- Idempotency keys are scoped by the caller: the stored key is its identity ("key:<client>" or
+-- "ip:<address>") followed by the Idempotency-Key header, which may be up to 255 characters itself.
+-- Rows stored before this migration are never matched again and expire within clinic.idempotency.ttl.
+
+ALTER TABLE idempotency_keys ALTER COLUMN idempotency_key TYPE VARCHAR(512);
@@ -0,0 +1,28 @@
+package br.com.brunolegal.clinic_api;
+
+import br.com.brunolegal.clinic_api.ratelimit.ClientIdentityResolver;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Starts the reactive profile without a database (R2DBC connects lazily), so servlet-only beans that leak into it
+//fail here instead of only in the Testcontainers tests, which are skipped without Docker
+@SpringBootTest
+@ActiveProfiles("reactive")
+class ReactiveContextTest {
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Test
+	void contextLoadsWithoutServletBeans() {
+		assertThat(context.getBeansOfType(WebMvcConfigurer.class)).isEmpty();
+		assertThat(context.getBeansOfType(ClientIdentityResolver.class)).isEmpty();
+	}
+
+}
@@ -0,0 +1,97 @@
+package br.com.brunolegal.clinic_api.audit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BoundedMpscQueueTest {
+
+    @Test
+    public void offer_WhenQueueIsFull_ShouldRefuseUntilDrained(){
+        //Arrange
+        BoundedMpscQueue<Integer> queue = new BoundedMpscQueue<>(3);
+        List<Integer> drained = new ArrayList<>();
+
+        //Act
+        for(int i = 0; i < 4; i++){
+            assertThat(queue.offer(i)).isTrue();
+        }
+        boolean overflowAccepted = queue.offer(4);
+        int count = queue.drain(drained::add, 3);
+
+        //Assert: capacity rounds up to 4, elements come back in order
+        assertThat(overflowAccepted).isFalse();
+        assertThat(count).isEqualTo(3);
+        assertThat(drained).containsExactly(0, 1, 2);
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(queue.offer(4)).isTrue();
+    }
+
+    //Every offered element is drained exactly once, and each producer's elements keep their order.
+    //Waiting threads yield rather than spin, so the test stays quick on a single CPU
+    @Test
+    @Timeout(30)
+    public void drain_WhenProducersRace_ShouldDeliverEveryElementOnceInProducerOrder() throws Exception {
+        //Arrange
+        int producers = 4;
+        int perProducer = 10_000;
+        BoundedMpscQueue<Long> queue = new BoundedMpscQueue<>(64);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for(int p = 0; p < producers; p++){
+            long producer = p;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for(long i = 0; i < perProducer; i++){
+                    while(!queue.offer(producer << 32 | i)){
+                        Thread.yield();
+                    }
+                }
+                return null;
+            }));
+        }
+        long[] next = new long[producers];
+        long[] received = new long[1];
+
+        //Act
+        start.countDown();
+        try {
+            while(received[0] < (long) producers * perProducer){
+                int count = queue.drain(element -> {
+                    int producer = (int) (element >>> 32);
+                    assertThat(element & 0xFFFFFFFFL).isEqualTo(next[producer]);
+                    next[producer]++;
+                    received[0]++;
+                }, 128);
+                if(count == 0){
+                    //a producer that threw would leave the loop waiting forever: get() rethrows its failure
+                    for(Future<?> future : futures){
+                        if(future.isDone()){
+                            future.get();
+                        }
+                    }
+                    Thread.yield();
+                }
+            }
+            for(Future<?> future : futures){
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        //Assert
+        assertThat(next).containsOnly(perProducer);
+        assertThat(queue.isEmpty()).isTrue();
+    }
+}
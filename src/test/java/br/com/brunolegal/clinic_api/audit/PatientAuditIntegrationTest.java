@@ -0,0 +1,162 @@
+package br.com.brunolegal.clinic_api.audit;
+
+import br.com.brunolegal.clinic_api.domain.PatientSnapshot;
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import br.com.brunolegal.clinic_api.dto.PatientRegistrationDTO;
+import br.com.brunolegal.clinic_api.dto.PatientUpdateDTO;
+import br.com.brunolegal.clinic_api.event.PatientChangedEvent.ChangeType;
+import br.com.brunolegal.clinic_api.exception.PreconditionFailedException;
+import br.com.brunolegal.clinic_api.repository.PatientRepository;
+import br.com.brunolegal.clinic_api.service.PatientService;
+import br.com.brunolegal.clinic_api.support.PostgresContainerTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.awaitility.Awaitility.await;
+
+@SpringBootTest
+public class PatientAuditIntegrationTest extends PostgresContainerTest {
+    //standalone logs write ids far above the ones the sequence hands out
+    private static final long STANDALONE_FIRST_ID = 7_000_001L;
+
+    @Autowired
+    private PatientService patientService;
+    @Autowired
+    private PatientRepository patientRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void tearDown(){
+        patientRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM patient_audit");
+    }
+
+    /*
+    ------------------
+    Happy Path Tests
+    ------------------
+     */
+
+    @Test
+    public void writes_ShouldBeAuditedWithStateBeforeAndAfter(){
+        //Arrange
+        PatientDetailsDTO created = patientService.createPatient(new PatientRegistrationDTO("John Doe", "johndoe@test.com", "11999998888"));
+
+        //Act
+        patientService.updatePatient(created.id(), new PatientUpdateDTO("John Smith", "johnsmith@test.com", "11999998888"), 0L);
+        patientService.deletePatient(created.id());
+
+        //Assert
+        List<Map<String, Object>> rows = await().atMost(Duration.ofSeconds(10)).until(() -> jdbcTemplate.queryForList(
+                "SELECT action, version, before_email, after_email, after_active FROM patient_audit WHERE patient_id = ? ORDER BY id",
+                created.id()), audit -> audit.size() == 3);
+        assertThat(rows).extracting(row -> row.get("action")).containsExactly("CREATED", "UPDATED", "DEACTIVATED");
+        assertThat(rows).extracting(row -> ((Number) row.get("version")).longValue()).containsExactly(0L, 1L, 2L);
+        assertThat(rows).extracting(row -> row.get("before_email")).containsExactly(null, "johndoe@test.com", "johnsmith@test.com");
+        assertThat(rows).extracting(row -> row.get("after_email")).containsExactly("johndoe@test.com", "johnsmith@test.com", "johnsmith@test.com");
+        assertThat(rows).extracting(row -> row.get("after_active")).containsExactly(true, true, false);
+    }
+
+    //Nothing flushes on its own here (long interval, batches larger than the load): only stop() writes
+    @Test
+    public void stop_ShouldWriteEveryQueuedEntry(){
+        //Arrange
+        PatientAuditLog auditLog = standaloneLog(1024, AuditProperties.Overflow.BLOCK, new SimpleMeterRegistry());
+        auditLog.start();
+        for(int i = 0; i < 500; i++){
+            auditLog.record(entry(STANDALONE_FIRST_ID + i));
+        }
+
+        //Act
+        auditLog.stop();
+
+        //Assert
+        assertThat(countStandaloneRows()).isEqualTo(500);
+        assertThat(auditLog.queueDepth()).isZero();
+    }
+
+    /*
+    ------------------
+    Error Path Tests
+    ------------------
+     */
+
+    @Test
+    public void update_WhenVersionIsStale_ShouldNotBeAudited(){
+        //Arrange
+        PatientDetailsDTO created = patientService.createPatient(new PatientRegistrationDTO("John Doe", "johndoe@test.com", "11999998888"));
+
+        //Act
+        assertThrows(PreconditionFailedException.class, () ->
+                patientService.updatePatient(created.id(), new PatientUpdateDTO("John Smith", "johndoe@test.com", "11999998888"), 7L));
+
+        //Assert: the registration is written, the refused update is not
+        await().atMost(Duration.ofSeconds(10)).until(() -> jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM patient_audit WHERE patient_id = ?", Integer.class, created.id()) == 1);
+        assertThat(jdbcTemplate.queryForObject("SELECT action FROM patient_audit WHERE patient_id = ?", String.class, created.id()))
+                .isEqualTo("CREATED");
+    }
+
+    @Test
+    public void record_WhenQueueIsFullAndPolicyIsDrop_ShouldCountDroppedEntries(){
+        //Arrange
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PatientAuditLog auditLog = standaloneLog(4, AuditProperties.Overflow.DROP, meterRegistry);
+        auditLog.start();
+
+        //Act
+        for(int i = 0; i < 10; i++){
+            auditLog.record(entry(STANDALONE_FIRST_ID + i));
+        }
+        auditLog.stop();
+
+        //Assert
+        assertThat(meterRegistry.get(PatientAuditLog.ENTRIES_COUNTER).tag("result", "dropped").counter().count()).isEqualTo(6);
+        assertThat(meterRegistry.get(PatientAuditLog.ENTRIES_COUNTER).tag("result", "written").counter().count()).isEqualTo(4);
+        assertThat(countStandaloneRows()).isEqualTo(4);
+    }
+
+    private PatientAuditLog standaloneLog(int capacity, AuditProperties.Overflow overflow, SimpleMeterRegistry meterRegistry){
+        AuditProperties properties = new AuditProperties(true, capacity, 1000, Duration.ofHours(1), overflow,
+                Duration.ofSeconds(1), Duration.ofMillis(100), Duration.ofSeconds(1), Duration.ofSeconds(30));
+        JdbcConnectionDetails connectionDetails = new JdbcConnectionDetails() {
+            @Override
+            public String getUsername(){
+                return POSTGRES.getUsername();
+            }
+
+            @Override
+            public String getPassword(){
+                return POSTGRES.getPassword();
+            }
+
+            @Override
+            public String getJdbcUrl(){
+                return POSTGRES.getJdbcUrl();
+            }
+        };
+        return new PatientAuditLog(connectionDetails, properties, meterRegistry);
+    }
+
+    private static PatientAuditEntry entry(long patientId){
+        return new PatientAuditEntry(ChangeType.CREATED, patientId, 0L, Instant.now(), null,
+                new PatientSnapshot("Audit Patient", "audit" + patientId + "@test.com", "11999998888", true));
+    }
+
+    private int countStandaloneRows(){
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM patient_audit WHERE patient_id >= ?", Integer.class, STANDALONE_FIRST_ID);
+    }
+}
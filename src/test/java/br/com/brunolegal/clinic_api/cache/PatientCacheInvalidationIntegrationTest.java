@@ -0,0 +1,144 @@
+package br.com.brunolegal.clinic_api.cache;
+
+import br.com.brunolegal.clinic_api.config.CacheConfig;
+import br.com.brunolegal.clinic_api.domain.Patient;
+import br.com.brunolegal.clinic_api.dto.PatientUpdateDTO;
+import br.com.brunolegal.clinic_api.lookup.PatientLookupIndex;
+import br.com.brunolegal.clinic_api.repository.PatientRepository;
+import br.com.brunolegal.clinic_api.service.PatientService;
+import br.com.brunolegal.clinic_api.support.PostgresContainerTest;
+import org.junit.jupiter.api.AfterEach;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.OptionalLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+@SpringBootTest(properties = {
+        "clinic.cache.invalidation.enabled=true",
+        "clinic.cache.invalidation.poll-timeout=200ms",
+        "clinic.cache.invalidation.reconnect-backoff=100ms"
+})
+public class PatientCacheInvalidationIntegrationTest extends PostgresContainerTest {
+
+    @Autowired
+    private PatientService patientService;
+    @Autowired
+    private PatientRepository patientRepository;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private PatientLookupIndex lookupIndex;
+
+    private Cache cache;
+    private Patient patient;
+
+    @BeforeEach
+    public void setUp(){
+        cache = cacheManager.getCache(CacheConfig.PATIENTS_CACHE);
+        patient = patientRepository.save(new Patient(null, "John Doe", "johndoe@test.com", "11999998888"));
+    }
+
+    @AfterEach
+    public void tearDown(){
+        patientRepository.deleteAll();
+        cache.clear();
+        lookupIndex.rebuild();
+    }
+
+    @Test
+    public void whenAnotherNodeNotifies_ShouldEvictLocalEntry() throws Exception {
+        //Arrange
+        awaitListenerPid();
+        patientService.getPatientById(patient.getId());
+        assertThat(cache.get(patient.getId())).isNotNull();
+
+        //Act & Assert: a NOTIFY from another connection stands in for another replica
+        awaitEvictionOnNotify(patient.getId());
+    }
+
+    @Test
+    public void whenUpdateCommits_ShouldNotifyListeners() throws Exception {
+        //Arrange: a LISTEN on a separate connection stands in for another replica
+        patientService.getPatientById(patient.getId());
+        try(Connection listening = open(); Statement statement = listening.createStatement()){
+            statement.execute("LISTEN patient_cache_invalidation");
+
+            //Act
+            patientService.updatePatient(patient.getId(), new PatientUpdateDTO("John Updated", "johnupdated@test.com", "11977776666"));
+
+            //Assert: the local entry is either the @CachePut one or already evicted by our own notification
+            PGNotification[] notifications = listening.unwrap(PGConnection.class).getNotifications(5000);
+            assertThat(notifications).extracting(PGNotification::getParameter).contains(patient.getId().toString());
+            assertThat(patientService.getPatientById(patient.getId()).name()).isEqualTo("John Updated");
+        }
+    }
+
+    @Test
+    public void whenAnotherNodeNotifies_ShouldReloadPatientIntoLookupIndex(){
+        //Arrange: the row was saved behind the index's back, like a registration on another node
+        awaitListenerPid();
+
+        //Act & Assert
+        await().atMost(Duration.ofSeconds(10)).pollInterval(Duration.ofMillis(200)).until(() -> {
+            notify(patient.getId().toString());
+            return lookupIndex.findIdByEmail("johndoe@test.com").equals(OptionalLong.of(patient.getId()));
+        });
+        assertThat(lookupIndex.findIdsByPhone("11999998888")).containsExactly(patient.getId());
+    }
+
+    @Test
+    public void whenListenerConnectionDrops_ShouldReconnectAndKeepEvicting() throws Exception {
+        //Arrange
+        int oldPid = awaitListenerPid();
+        try(Connection connection = open(); Statement statement = connection.createStatement()){
+            statement.execute("SELECT pg_terminate_backend(" + oldPid + ")");
+        }
+        await().atMost(Duration.ofSeconds(10)).until(() -> awaitListenerPid() != oldPid);
+        patientService.getPatientById(patient.getId());
+
+        //Act & Assert
+        awaitEvictionOnNotify(patient.getId());
+    }
+
+    //the listener may still be issuing LISTEN, so keep notifying until the eviction is seen
+    private void awaitEvictionOnNotify(Long id){
+        await().atMost(Duration.ofSeconds(10)).pollInterval(Duration.ofMillis(200)).until(() -> {
+            notify(id.toString());
+            return cache.get(id) == null;
+        });
+    }
+
+    private int awaitListenerPid(){
+        return await().atMost(Duration.ofSeconds(10)).until(() -> {
+            try(Connection connection = open(); Statement statement = connection.createStatement();
+                ResultSet rs = statement.executeQuery("SELECT max(pid) FROM pg_stat_activity WHERE application_name = 'clinic-api-cache-invalidation'")){
+                rs.next();
+                return rs.getInt(1);
+            }
+        }, pid -> pid != 0);
+    }
+
+    private void notify(String payload) throws Exception {
+        try(Connection connection = open(); Statement statement = connection.createStatement()){
+            statement.execute("NOTIFY patient_cache_invalidation, '" + payload + "'");
+        }
+    }
+
+    private Connection open() throws Exception {
+        return DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+    }
+}
@@ -1,25 +1,41 @@
 package br.com.brunolegal.clinic_api.controller;
 
+import br.com.brunolegal.clinic_api.config.BinaryFormatsConfig;
+import br.com.brunolegal.clinic_api.config.MetricsConfig;
 import br.com.brunolegal.clinic_api.domain.Patient;
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
 import br.com.brunolegal.clinic_api.dto.PatientRegistrationDTO;
 import br.com.brunolegal.clinic_api.dto.PatientUpdateDTO;
+import br.com.brunolegal.clinic_api.idempotency.IdempotencyStore;
 import br.com.brunolegal.clinic_api.repository.PatientRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.json.JsonCompareMode;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static br.com.brunolegal.clinic_api.support.SqlStatementMatchers.sqlStatements;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 
@@ -35,6 +51,8 @@ public class PatientControllerTest {
     private ObjectMapper objectMapper;
     @Autowired
     private PatientRepository patientRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     /*
     ------------------
@@ -58,6 +76,81 @@ public class PatientControllerTest {
                 .andExpect(jsonPath("$.phone", is("11999998888")));
     }
 
+    @Test
+    @Transactional
+    public void registerBatch_WhenMixedEntries_ShouldReportEachItem() throws Exception {
+        //Arrange
+        patientRepository.save(new Patient(null, "Taken Email", "taken@test.com", "11955554444"));
+        List<PatientRegistrationDTO> batch = List.of(
+                new PatientRegistrationDTO("Alice Smith", "alicesmith@test.com", "11988887777"),
+                new PatientRegistrationDTO("", "invalid-email", "123"),
+                new PatientRegistrationDTO("Alice Again", "alicesmith@test.com", "11988887777"),
+                new PatientRegistrationDTO("Someone Else", "taken@test.com", "11944443333"),
+                new PatientRegistrationDTO("Bob Johnson", "bobjohnson@test.com", "11977776666"));
+
+        //Act & Assert
+        mockMvc.perform(post("/patients/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created", is(2)))
+                .andExpect(jsonPath("$.rejected", is(3)))
+                .andExpect(jsonPath("$.items", hasSize(5)))
+                .andExpect(jsonPath("$.items[0].status", is("CREATED")))
+                .andExpect(jsonPath("$.items[1].status", is("INVALID")))
+                .andExpect(jsonPath("$.items[2].status", is("DUPLICATE")))
+                .andExpect(jsonPath("$.items[3].status", is("DUPLICATE")))
+                .andExpect(jsonPath("$.items[4].status", is("CREATED")));
+
+        assertThat(patientRepository.findExistingEmails(List.of("bobjohnson@test.com"))).containsExactly("bobjohnson@test.com");
+    }
+
+    @Test
+    @Transactional
+    public void register_WhenRetriedWithSameIdempotencyKey_ShouldReplayFirstResponse() throws Exception {
+        //Arrange
+        String body = objectMapper.writeValueAsString(new PatientRegistrationDTO("Retry Doe", "retrydoe@test.com", "11999998888"));
+        MvcResult first = mockMvc.perform(post("/patients")
+                        .header(IdempotencyStore.IDEMPOTENCY_KEY_HEADER, "register-retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist(IdempotencyStore.REPLAYED_HEADER))
+                .andReturn();
+
+        //Act & Assert: answered from the store, not with the 409 a second registration would get
+        mockMvc.perform(post("/patients")
+                        .header(IdempotencyStore.IDEMPOTENCY_KEY_HEADER, "register-retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(IdempotencyStore.REPLAYED_HEADER, "true"))
+                .andExpect(header().string(HttpHeaders.LOCATION, first.getResponse().getHeader(HttpHeaders.LOCATION)))
+                .andExpect(content().json(first.getResponse().getContentAsString(), JsonCompareMode.STRICT))
+                .andExpect(sqlStatements(0));
+    }
+
+    @Test
+    @Transactional
+    public void register_WhenAnotherClientSendsSameIdempotencyKey_ShouldRegisterSeparately() throws Exception {
+        //Arrange
+        mockMvc.perform(post("/patients")
+                        .header(IdempotencyStore.IDEMPOTENCY_KEY_HEADER, "register-shared-1")
+                        .with(request -> { request.setRemoteAddr("10.0.0.1"); return request; })
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new PatientRegistrationDTO("John Doe", "shared1@test.com", "11999998888"))))
+                .andExpect(status().isCreated());
+
+        //Act & Assert: keys are per client, so neither a replay nor the 422 of a reused key
+        mockMvc.perform(post("/patients")
+                        .header(IdempotencyStore.IDEMPOTENCY_KEY_HEADER, "register-shared-1")
+                        .with(request -> { request.setRemoteAddr("10.0.0.2"); return request; })
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new PatientRegistrationDTO("Jane Doe", "shared2@test.com", "11988887777"))))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist(IdempotencyStore.REPLAYED_HEADER));
+    }
+
     @Test
     @Transactional
     public void listAllWhenPatientsExist_ShouldReturnOk() throws Exception {
@@ -78,6 +171,170 @@ public class PatientControllerTest {
 
     }
 
+    @Test
+    @Transactional
+    public void listAll_WhenClientAcceptsBinaryFormat_ShouldNegotiateCborOrSmile() throws Exception {
+        //Arrange
+        patientRepository.saveAll(List.of(
+                new Patient(null, "Alice Smith", "alicesmith@test.com", "11988887777"),
+                new Patient(null, "Bob Johnson", "bobjohnson@test.com", "11977776666")));
+
+        //Act
+        MvcResult cbor = mockMvc.perform(get("/patients").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+        MvcResult smile = mockMvc.perform(get("/patients").accept(BinaryFormatsConfig.APPLICATION_SMILE_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BinaryFormatsConfig.APPLICATION_SMILE_VALUE))
+                .andReturn();
+
+        //Assert
+        PatientDetailsDTO[] fromCbor = new CBORMapper().readValue(cbor.getResponse().getContentAsByteArray(), PatientDetailsDTO[].class);
+        PatientDetailsDTO[] fromSmile = new SmileMapper().readValue(smile.getResponse().getContentAsByteArray(), PatientDetailsDTO[].class);
+        assertThat(fromCbor).extracting(PatientDetailsDTO::name).containsExactly("Alice Smith", "Bob Johnson");
+        assertThat(fromSmile).extracting(PatientDetailsDTO::name).containsExactly("Alice Smith", "Bob Johnson");
+        //Clients that accept anything keep getting JSON
+        mockMvc.perform(get("/patients").accept(MediaType.ALL))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT)));
+    }
+
+    @Test
+    @Transactional
+    public void listAll_WhenMorePatientsThanLimit_ShouldReturnNextLink() throws Exception {
+        //Arrange
+        Patient patient1 = new Patient(null, "Alice Smith", "alicesmith@test.com", "11988887777");
+        Patient patient2 = new Patient(null, "Bob Johnson", "bobjohnson@test.com", "11977776666");
+        Patient patient3 = new Patient(null, "Carol White", "carolwhite@test.com", "11966665555");
+        patientRepository.saveAll(List.of(patient1, patient2, patient3));
+
+        //Act & Assert
+        mockMvc.perform(get("/patients").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].name", is("Bob Johnson")))
+                .andExpect(header().string("X-Next-Cursor", patient2.getId().toString()))
+                .andExpect(header().string("Link", containsString("after=" + patient2.getId())));
+
+        mockMvc.perform(get("/patients").param("limit", "2").param("after", patient2.getId().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is("Carol White")))
+                .andExpect(header().doesNotExist("Link"));
+    }
+
+    @Test
+    @Transactional
+    public void listAll_WhenFieldsAreSelected_ShouldReturnOnlyIdAndThoseFields() throws Exception {
+        //Arrange
+        Patient patient1 = new Patient(null, "Alice Smith", "alicesmith@test.com", "11988887777");
+        Patient patient2 = new Patient(null, "Bob Johnson", "bobjohnson@test.com", "11977776666");
+        patientRepository.saveAll(List.of(patient1, patient2));
+
+        //Act & Assert
+        mockMvc.perform(get("/patients").param("fields", "name").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(patient1.getId().intValue())))
+                .andExpect(jsonPath("$[0].name", is("Alice Smith")))
+                .andExpect(jsonPath("$[0].email").doesNotExist())
+                .andExpect(jsonPath("$[0].phone").doesNotExist())
+                .andExpect(header().string("Link", containsString("fields=name")));
+    }
+
+    @Test
+    public void export_WhenPatientsExist_ShouldStreamActivePatientsAsNdjson() throws Exception {
+        //Arrange: committed data, the export is read on the async request thread
+        Patient patient1 = new Patient(null, "Alice Smith", "alicesmith@test.com", "11988887777");
+        Patient patient2 = new Patient(null, "Bob Johnson", "bobjohnson@test.com", "11977776666");
+        Patient inactivePatient = new Patient(null, "Inactive Patient", "inactive@test.com", "11966665555", false);
+        List<Patient> savedPatients = patientRepository.saveAll(List.of(patient1, patient2, inactivePatient));
+
+        try {
+            //Act
+            MvcResult asyncResult = mockMvc.perform(get("/patients/export"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            MvcResult result = mockMvc.perform(asyncDispatch(asyncResult))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                    .andReturn();
+
+            //Assert
+            String[] lines = result.getResponse().getContentAsString().split("\n");
+            assertThat(lines).hasSize(2);
+            assertThat(objectMapper.readValue(lines[0], PatientDetailsDTO.class).name()).isEqualTo("Alice Smith");
+            assertThat(objectMapper.readValue(lines[1], PatientDetailsDTO.class).name()).isEqualTo("Bob Johnson");
+        } finally {
+            patientRepository.deleteAll(savedPatients);
+        }
+    }
+
+    @Test
+    @Transactional
+    public void search_WhenPartialName_ShouldReturnRankedActiveMatchesPageByPage() throws Exception {
+        //Arrange
+        patientRepository.saveAllAndFlush(List.of(
+                new Patient(null, "Joanna Ray", "joanna@test.com", "11988887777"),
+                new Patient(null, "Anna Smith", "annasmith@test.com", "11977776666"),
+                new Patient(null, "Bob Johnson", "bobjohnson@test.com", "11966665555"),
+                new Patient(null, "Anna Gone", "annagone@test.com", "11955554444", false)));
+
+        //Act
+        MvcResult firstPage = mockMvc.perform(get("/patients/search").param("q", "ANNA").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is("Anna Smith")))
+                .andExpect(header().string("Link", containsString("/patients/search?q=ANNA&after=")))
+                .andReturn();
+
+        //Assert
+        mockMvc.perform(get("/patients/search").param("q", "ANNA").param("limit", "1")
+                        .param("after", firstPage.getResponse().getHeader("X-Next-Cursor")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is("Joanna Ray")))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+    }
+
+    @Test
+    @Transactional
+    public void search_WhenPhonePrefix_ShouldMatchPhone() throws Exception {
+        //Arrange
+        patientRepository.saveAllAndFlush(List.of(
+                new Patient(null, "John Doe", "johndoe@test.com", "11999998888"),
+                new Patient(null, "Jane Smith", "janesmith@test.com", "21988887777")));
+
+        //Act & Assert
+        mockMvc.perform(get("/patients/search").param("q", "2198"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is("Jane Smith")));
+    }
+
+    @Test
+    @Transactional
+    public void lookup_WhenEmailOrPhoneMatches_ShouldReturnActivePatients() throws Exception {
+        //Arrange
+        patientRepository.save(new Patient(null, "Ana Lookup", "ana.lookup@test.com", "11933332222"));
+        patientRepository.save(new Patient(null, "Bia Lookup", "bia.lookup@test.com", "11933332222"));
+        patientRepository.save(new Patient(null, "Caio Lookup", "caio.lookup@test.com", "11933332222", false));
+
+        //Act & Assert
+        mockMvc.perform(get("/patients/lookup").param("phone", "11933332222"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].email", is("ana.lookup@test.com")))
+                .andExpect(jsonPath("$[1].email", is("bia.lookup@test.com")));
+        mockMvc.perform(get("/patients/lookup").param("email", "bia.lookup@test.com"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name", is("Bia Lookup")));
+        mockMvc.perform(get("/patients/lookup").param("email", "caio.lookup@test.com"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
     @Test
     @Transactional
     public void getById_WhenPatientExists_ShouldReturnOk() throws Exception {
@@ -128,6 +385,114 @@ public class PatientControllerTest {
 
 
 
+    @Test
+    @Transactional
+    public void getById_WhenETagOrDateStillMatches_ShouldReturnNotModified() throws Exception {
+        //Arrange
+        Patient savedPatient = patientRepository.saveAndFlush(new Patient(null, "John Doe", "johndoe@test.com", "11999998888"));
+        MvcResult first = mockMvc.perform(get("/patients/{id}", savedPatient.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn();
+
+        //Act & Assert
+        mockMvc.perform(get("/patients/{id}", savedPatient.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/patients/{id}", savedPatient.getId())
+                        .header(HttpHeaders.IF_MODIFIED_SINCE, first.getResponse().getHeader(HttpHeaders.LAST_MODIFIED)))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(put("/patients/{id}", savedPatient.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new PatientUpdateDTO("John Updated", "johndoe@test.com", "11999998888"))))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+        mockMvc.perform(get("/patients/{id}", savedPatient.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("John Updated")));
+    }
+
+    @Test
+    @Transactional
+    public void listAll_WhenPageIsUnchanged_ShouldReturnNotModified() throws Exception {
+        //Arrange
+        patientRepository.saveAndFlush(new Patient(null, "John Doe", "johndoe@test.com", "11999998888"));
+        String eTag = mockMvc.perform(get("/patients"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        //Act & Assert
+        mockMvc.perform(get("/patients").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        patientRepository.saveAndFlush(new Patient(null, "Jane Smith", "janesmith@test.com", "11988887777"));
+        mockMvc.perform(get("/patients").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    @Transactional
+    public void getById_AfterUpdate_ShouldReturnRefreshedCachedPatient() throws Exception {
+        //Arrange
+        Patient savedPatient = patientRepository.save(new Patient(null, "John Doe", "johndoe@test.com", "11999998888"));
+        PatientUpdateDTO updateDTO = new PatientUpdateDTO("John Updated", "coolnewmail@test.com", "11911112222");
+        mockMvc.perform(get("/patients/{id}", savedPatient.getId())).andExpect(status().isOk());
+
+        //Act
+        mockMvc.perform(put("/patients/{id}", savedPatient.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updateDTO)))
+                .andExpect(status().isOk());
+
+        //Assert
+        mockMvc.perform(get("/patients/{id}", savedPatient.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("John Updated")));
+    }
+
+    @Test
+    @Transactional
+    public void getById_AfterDelete_ShouldNotServeEvictedPatient() throws Exception {
+        //Arrange
+        Patient savedPatient = patientRepository.save(new Patient(null, "John Doe", "johndoe@test.com", "11999998888"));
+        mockMvc.perform(get("/patients/{id}", savedPatient.getId())).andExpect(status().isOk());
+
+        //Act
+        mockMvc.perform(delete("/patients/{id}", savedPatient.getId())).andExpect(status().isNoContent());
+
+        //Assert
+        mockMvc.perform(get("/patients/{id}", savedPatient.getId())).andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    public void endpoints_ShouldIssueExpectedNumberOfSqlStatements() throws Exception {
+        //Arrange
+        Patient savedPatient = patientRepository.saveAndFlush(new Patient(null, "John Doe", "johndoe@test.com", "11999998888"));
+        PatientUpdateDTO updateDTO = new PatientUpdateDTO("John Updated", "coolnewmail@test.com", "11911112222");
+
+        //Act & Assert
+        mockMvc.perform(get("/patients/{id}", savedPatient.getId())).andExpect(sqlStatements(1));
+        //Served from the cache
+        mockMvc.perform(get("/patients/{id}", savedPatient.getId())).andExpect(sqlStatements(0));
+        mockMvc.perform(get("/patients")).andExpect(sqlStatements(1));
+        mockMvc.perform(get("/patients").param("fields", "name,phone")).andExpect(sqlStatements(1));
+        //With the audit log on, writes first lock the row they replace (SELECT ... FOR UPDATE),
+        //which also gives the new version for the ETag, then run the UPDATE
+        mockMvc.perform(put("/patients/{id}", savedPatient.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updateDTO)))
+                .andExpect(sqlStatements(2));
+        mockMvc.perform(put("/patients/{id}", savedPatient.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"1\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updateDTO)))
+                .andExpect(sqlStatements(2));
+        mockMvc.perform(delete("/patients/{id}", savedPatient.getId())).andExpect(sqlStatements(2));
+    }
+
+
+
     /*
     ------------------
     Sad Path Tests
@@ -162,6 +527,45 @@ public class PatientControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    @Transactional
+    public void register_WhenIdempotencyKeyIsReusedForAnotherPatient_ShouldReturnUnprocessableEntity() throws Exception {
+        //Arrange
+        mockMvc.perform(post("/patients")
+                        .header(IdempotencyStore.IDEMPOTENCY_KEY_HEADER, "register-reused-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new PatientRegistrationDTO("John Doe", "reused1@test.com", "11999998888"))))
+                .andExpect(status().isCreated());
+
+        //Act & Assert
+        mockMvc.perform(post("/patients")
+                        .header(IdempotencyStore.IDEMPOTENCY_KEY_HEADER, "register-reused-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new PatientRegistrationDTO("Jane Doe", "reused2@test.com", "11988887777"))))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+
+    @Test
+    public void search_WhenQueryIsBlankOrCursorIsInvalid_ShouldReturnBadRequest() throws Exception{
+        mockMvc.perform(get("/patients/search").param("q", " "))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/patients/search").param("q", "anna").param("after", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void listAll_WhenFieldIsUnknown_ShouldReturnBadRequest() throws Exception{
+        mockMvc.perform(get("/patients").param("fields", "name,password"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void lookup_WhenNotExactlyOneOfEmailAndPhone_ShouldReturnBadRequest() throws Exception{
+        mockMvc.perform(get("/patients/lookup")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/patients/lookup").param("email", "ana.lookup@test.com").param("phone", "11933332222"))
+                .andExpect(status().isBadRequest());
+    }
 
     @Test
     @Transactional
@@ -174,6 +578,24 @@ public class PatientControllerTest {
 
     }
 
+    @Test
+    @Transactional
+    public void getById_WhenPatientDoesNotExist_ShouldRecordServiceTimerAndExceptionCount() throws Exception{
+        //Arrange
+        double notFoundBefore = meterRegistry.counter(MetricsConfig.EXCEPTIONS_COUNTER,
+                "exception", "ResourceNotFoundException").count();
+
+        //Act
+        mockMvc.perform(get("/patients/{id}", 99L))
+                .andExpect(status().isNotFound());
+
+        //Assert
+        assertThat(meterRegistry.counter(MetricsConfig.EXCEPTIONS_COUNTER,
+                "exception", "ResourceNotFoundException").count()).isEqualTo(notFoundBefore + 1);
+        assertThat(meterRegistry.get(MetricsConfig.SERVICE_TIMER)
+                .tags("method", "getPatientById", "exception", "ResourceNotFoundException").timer().count()).isPositive();
+    }
+
     @Test
     @Transactional
     public void update_WhenPatientDoesNotExist_ShouldReturnNotFound() throws Exception {
@@ -205,6 +627,32 @@ public class PatientControllerTest {
                 .andExpect(status().isConflict());
     }
 
+    @Test
+    @Transactional
+    public void update_WhenIfMatchIsStale_ShouldReturnPreconditionFailed() throws Exception {
+        //Arrange
+        Patient savedPatient = patientRepository.saveAndFlush(new Patient(null, "John Doe", "johndoe@test.com", "11999998888"));
+        PatientUpdateDTO updateDTO = new PatientUpdateDTO("John Updated", "johndoe@test.com", "11999998888");
+        mockMvc.perform(put("/patients/{id}", savedPatient.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updateDTO)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+
+        //Act & Assert: a second writer still holding version 0 loses
+        mockMvc.perform(put("/patients/{id}", savedPatient.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new PatientUpdateDTO("Someone Else", "johndoe@test.com", "11999998888"))))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(put("/patients/{id}", savedPatient.getId())
+                        .header(HttpHeaders.IF_MATCH, "W/\"1\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updateDTO)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
     @Test
     @Transactional
     public void delete_WhenPatientDoesNotExist_ShouldReturnNotFound() throws Exception {
@@ -0,0 +1,203 @@
+package br.com.brunolegal.clinic_api.controller;
+
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import br.com.brunolegal.clinic_api.dto.PatientRegistrationDTO;
+import br.com.brunolegal.clinic_api.dto.PatientUpdateDTO;
+import br.com.brunolegal.clinic_api.support.PostgresContainerTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+public class ReactivePatientControllerTest extends PostgresContainerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @DynamicPropertySource
+    static void r2dbcProperties(DynamicPropertyRegistry registry){
+        reactiveProperties(registry);
+    }
+
+    @AfterEach
+    public void tearDown(){
+        databaseClient.sql("DELETE FROM patients").then().block();
+    }
+
+    /*
+    ------------------
+    Happy Path Tests
+    ------------------
+     */
+
+    @Test
+    public void register_ThenGetById_ShouldServeValidators(){
+        //Arrange
+        PatientRegistrationDTO dummyRegistrationDTO = new PatientRegistrationDTO("John Doe", "johndoe@test.com", "11999998888");
+
+        //Act
+        PatientDetailsDTO created = webTestClient.post().uri("/patients")
+                .bodyValue(dummyRegistrationDTO)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().valueMatches(HttpHeaders.LOCATION, ".*/patients/\\d+")
+                .expectBody(PatientDetailsDTO.class)
+                .returnResult().getResponseBody();
+
+        //Assert
+        assertThat(created).isNotNull();
+        webTestClient.get().uri("/patients/{id}", created.id())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"")
+                .expectBody()
+                .jsonPath("$.email").isEqualTo("johndoe@test.com");
+        webTestClient.get().uri("/patients/{id}", created.id())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    @Test
+    public void update_WhenIfMatchIsCurrent_ShouldBumpETag(){
+        //Arrange
+        long id = register("johndoe@test.com");
+        PatientUpdateDTO dummyUpdateDTO = new PatientUpdateDTO("John Smith", "johndoe@test.com", "11999998888");
+
+        //Act & Assert
+        webTestClient.put().uri("/patients/{id}", id)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .bodyValue(dummyUpdateDTO)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"")
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("John Smith");
+    }
+
+    @Test
+    public void delete_WhenPatientExists_ShouldHideIt(){
+        //Arrange
+        long id = register("johndoe@test.com");
+
+        //Act & Assert
+        webTestClient.delete().uri("/patients/{id}", id).exchange().expectStatus().isNoContent();
+        webTestClient.get().uri("/patients/{id}", id).exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    public void listAll_WhenAcceptIsNdjson_ShouldStreamEveryPatientOnDemand(){
+        //Arrange
+        seed(1200);
+
+        //Act
+        Flux<PatientDetailsDTO> body = webTestClient.get().uri("/patients?after=9000000")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(PatientDetailsDTO.class)
+                .getResponseBody();
+
+        //Assert
+        StepVerifier.create(body, 10)
+                .expectNextMatches(dto -> dto.id() == 9000001L)
+                .expectNextCount(9)
+                .thenRequest(Long.MAX_VALUE)
+                .expectNextCount(1189)
+                .expectNextMatches(dto -> dto.id() == 9001200L)
+                .verifyComplete();
+    }
+
+    @Test
+    public void listAll_WhenMoreThanOnePage_ShouldLinkNextPage(){
+        //Arrange
+        seed(3);
+
+        //Act & Assert
+        webTestClient.get().uri("/patients?after=9000000&limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(PatientController.NEXT_CURSOR_HEADER, "9000002")
+                .expectHeader().valueMatches(HttpHeaders.LINK, "<.*/patients\\?after=9000002&limit=2>; rel=\"next\"")
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2);
+    }
+
+    /*
+    ------------------
+    Error Path Tests
+    ------------------
+     */
+
+    @Test
+    public void register_WhenEmailIsTaken_ShouldReturnConflict(){
+        //Arrange
+        register("johndoe@test.com");
+
+        //Act & Assert
+        webTestClient.post().uri("/patients")
+                .bodyValue(new PatientRegistrationDTO("Jane Doe", "johndoe@test.com", "11988887777"))
+                .exchange()
+                .expectStatus().isEqualTo(409);
+    }
+
+    @Test
+    public void register_WhenDataIsInvalid_ShouldReturnBadRequest(){
+        //Act & Assert
+        webTestClient.post().uri("/patients")
+                .bodyValue(new PatientRegistrationDTO("", "not-an-email", "1"))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void update_WhenIfMatchIsStale_ShouldReturnPreconditionFailed(){
+        //Arrange
+        long id = register("johndoe@test.com");
+
+        //Act & Assert
+        webTestClient.put().uri("/patients/{id}", id)
+                .header(HttpHeaders.IF_MATCH, "\"7\"")
+                .bodyValue(new PatientUpdateDTO("John Smith", "johndoe@test.com", "11999998888"))
+                .exchange()
+                .expectStatus().isEqualTo(412);
+    }
+
+    private long register(String email){
+        PatientDetailsDTO created = webTestClient.post().uri("/patients")
+                .bodyValue(new PatientRegistrationDTO("John Doe", email, "11999998888"))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(PatientDetailsDTO.class)
+                .returnResult().getResponseBody();
+        return Objects.requireNonNull(created).id();
+    }
+
+    //Rows 9000001..9000000+count, far above the ids the sequence hands out
+    private void seed(int count){
+        databaseClient.sql("INSERT INTO patients (id, name, email, phone, active, version, updated_at) "
+                        + "SELECT 9000000 + g, 'Patient ' || g, 'patient' || g || '@test.com', '11999998888', true, 0, now() "
+                        + "FROM generate_series(1, :count) g")
+                .bind("count", count)
+                .then()
+                .block();
+    }
+}
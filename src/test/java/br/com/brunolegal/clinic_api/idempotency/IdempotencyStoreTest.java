@@ -0,0 +1,179 @@
+package br.com.brunolegal.clinic_api.idempotency;
+
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import br.com.brunolegal.clinic_api.dto.PatientRegistrationDTO;
+import br.com.brunolegal.clinic_api.exception.DuplicateResourceException;
+import br.com.brunolegal.clinic_api.exception.IdempotencyKeyConflictException;
+import br.com.brunolegal.clinic_api.repository.IdempotencyKeyRepository;
+import br.com.brunolegal.clinic_api.repository.IdempotencyKeyRepository.StoredKey;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.ResponseEntity;
+
+import java.net.URI;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotencyStoreTest {
+    private static final String CLIENT = "ip:10.0.0.1";
+    private static final PatientRegistrationDTO REGISTRATION = new PatientRegistrationDTO("John Doe", "johndoe@test.com", "11999998888");
+    private static final PatientDetailsDTO CREATED = new PatientDetailsDTO(1L, "John Doe", "johndoe@test.com", "11999998888");
+
+    @Mock
+    private IdempotencyKeyRepository repository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private IdempotencyStore store;
+
+    @BeforeEach
+    public void setUp(){
+        IdempotencyProperties properties = new IdempotencyProperties(true, Duration.ofHours(24), 100, Duration.ofMillis(200),
+                Duration.ofMillis(10), Duration.ofMinutes(1), Duration.ofMinutes(10));
+        store = new IdempotencyStore(repository, properties, objectMapper, meterRegistry);
+    }
+
+    /*
+    ------------------
+    Happy Path Tests
+    ------------------
+     */
+
+    @Test
+    public void execute_WhenAnotherClientSendsSameKey_ShouldRunAgain(){
+        //Arrange
+        when(repository.claim(anyString(), anyString(), any(), any())).thenReturn(true);
+        store.execute(CLIENT, "key-5", REGISTRATION, PatientDetailsDTO.class, () -> ResponseEntity.ok(CREATED));
+
+        //Act
+        ResponseEntity<PatientDetailsDTO> other = store.execute("key:reception", "key-5", REGISTRATION, PatientDetailsDTO.class,
+                () -> ResponseEntity.ok(CREATED));
+
+        //Assert
+        assertThat(other.getHeaders().containsKey(IdempotencyStore.REPLAYED_HEADER)).isFalse();
+        verify(repository).claim(eq("ip:10.0.0.1 key-5"), anyString(), any(), any());
+        verify(repository).claim(eq("key:reception key-5"), anyString(), any(), any());
+    }
+
+    @Test
+    public void execute_WhenSameKeyArrivesConcurrently_ShouldRunOnceAndShareResponse() throws Exception {
+        //Arrange
+        when(repository.claim(eq("ip:10.0.0.1 key-1"), anyString(), any(), any())).thenReturn(true);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        CompletableFuture<ResponseEntity<PatientDetailsDTO>> first = CompletableFuture.supplyAsync(() ->
+                store.execute(CLIENT, "key-1", REGISTRATION, PatientDetailsDTO.class, () -> {
+                    runs.incrementAndGet();
+                    running.countDown();
+                    await(finish);
+                    return ResponseEntity.created(URI.create("http://localhost/patients/1")).body(CREATED);
+                }));
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+
+        //Act
+        CompletableFuture<ResponseEntity<PatientDetailsDTO>> second = CompletableFuture.supplyAsync(() ->
+                store.execute(CLIENT, "key-1", REGISTRATION, PatientDetailsDTO.class, () -> {
+                    runs.incrementAndGet();
+                    return ResponseEntity.internalServerError().build();
+                }));
+        finish.countDown();
+
+        //Assert
+        ResponseEntity<PatientDetailsDTO> coalesced = second.get(5, TimeUnit.SECONDS);
+        assertThat(first.get(5, TimeUnit.SECONDS).getBody()).isEqualTo(CREATED);
+        assertThat(coalesced.getStatusCode().value()).isEqualTo(201);
+        assertThat(coalesced.getBody()).isEqualTo(CREATED);
+        assertThat(coalesced.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(runs).hasValue(1);
+        verify(repository).complete(eq("ip:10.0.0.1 key-1"), any());
+    }
+
+    @Test
+    public void execute_WhenAnotherNodeStoredTheResponse_ShouldReplayItWithoutRunning() throws Exception {
+        //Arrange
+        String requestHash = hash(REGISTRATION);
+        IdempotentResponse stored = new IdempotentResponse(requestHash, 201, "http://other-node/patients/1", objectMapper.writeValueAsString(CREATED));
+        when(repository.claim(eq("ip:10.0.0.1 key-2"), anyString(), any(), any())).thenReturn(false);
+        when(repository.find("ip:10.0.0.1 key-2")).thenReturn(Optional.of(new StoredKey(requestHash, stored, Instant.now(), Instant.now().plusSeconds(60))));
+
+        //Act
+        ResponseEntity<PatientDetailsDTO> response = store.execute(CLIENT, "key-2", REGISTRATION, PatientDetailsDTO.class, () -> {
+            throw new AssertionError("must not run");
+        });
+
+        //Assert
+        assertThat(response.getBody()).isEqualTo(CREATED);
+        assertThat(response.getHeaders().getLocation()).hasToString("http://other-node/patients/1");
+        assertThat(meterRegistry.get(IdempotencyStore.REQUESTS_COUNTER).tag("result", "replayed").counter().count()).isEqualTo(1);
+    }
+
+    /*
+    ------------------
+    Error Path Tests
+    ------------------
+     */
+
+    @Test
+    public void execute_WhenRequestFails_ShouldGiveKeyBackForTheRetry(){
+        //Arrange
+        when(repository.claim(eq("ip:10.0.0.1 key-3"), anyString(), any(), any())).thenReturn(true);
+
+        //Act
+        assertThrows(DuplicateResourceException.class, () -> store.execute(CLIENT, "key-3", REGISTRATION, PatientDetailsDTO.class, () -> {
+            throw new DuplicateResourceException("Email already in use");
+        }));
+        ResponseEntity<PatientDetailsDTO> retry = store.execute(CLIENT, "key-3", REGISTRATION, PatientDetailsDTO.class,
+                () -> ResponseEntity.created(URI.create("http://localhost/patients/1")).body(CREATED));
+
+        //Assert
+        verify(repository).release("ip:10.0.0.1 key-3");
+        assertThat(retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER)).isNull();
+    }
+
+    @Test
+    public void execute_WhenAnotherNodeIsStillRunningTheKey_ShouldThrowConflictAfterWaiting() throws Exception {
+        //Arrange
+        String requestHash = hash(REGISTRATION);
+        when(repository.claim(eq("ip:10.0.0.1 key-4"), anyString(), any(), any())).thenReturn(false);
+        when(repository.find("ip:10.0.0.1 key-4")).thenReturn(Optional.of(new StoredKey(requestHash, null, Instant.now(), Instant.now().plusSeconds(60))));
+
+        //Act & Assert
+        assertThrows(IdempotencyKeyConflictException.class, () -> store.execute(CLIENT, "key-4", REGISTRATION, PatientDetailsDTO.class, () -> {
+            throw new AssertionError("must not run");
+        }));
+        verify(repository, atLeast(2)).find("ip:10.0.0.1 key-4");
+    }
+
+    private String hash(Object request) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request)));
+    }
+
+    private static void await(CountDownLatch latch){
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package br.com.brunolegal.clinic_api.loadtest;
+
+import br.com.brunolegal.clinic_api.support.PostgresContainerTest;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The mobile gateway's fan-out pattern against one stack: {@code loadtest.fanout.concurrency} clients
+ * each read a random patient with {@code GET /patients/{id}} and send the next read as soon as the
+ * previous one returns (closed model), so the server always has that many calls in flight.
+ * <p>
+ * Both stacks get the same database, the same 20 connections and no patient cache, so every call
+ * reaches PostgreSQL. Besides throughput and latency percentiles the run reports how many threads the
+ * server needed, sampled from this JVM; the histograms are written to {@code target/loadtest}.
+ * Subclasses pick the stack, compare {@link ServletFanOutLoadTest} with {@link ReactiveFanOutLoadTest}.
+ */
+@Slf4j
+abstract class FanOutLoadTest extends PostgresContainerTest {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final Path REPORT_DIR = Path.of("target", "loadtest");
+    //Seeded rows sit far above the ids the sequence hands out, so they never meet other tests' patients
+    private static final long SEED_FIRST_ID = 8_000_001L;
+    //The client's default executor grows a thread per pending response, which would crowd out the server
+    private static final int CLIENT_THREADS = 2;
+
+    @LocalServerPort
+    private int port;
+
+    private final LoadTestSettings settings = LoadTestSettings.load();
+
+    private ExecutorService clientExecutor;
+    private HttpClient httpClient;
+
+    //Name of the stack in the report and in the histogram file
+    abstract String stack();
+
+    //Prefix of the threads that serve requests on this stack
+    abstract String serverThreadPrefix();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        clientExecutor = Executors.newFixedThreadPool(CLIENT_THREADS);
+        httpClient = HttpClient.newBuilder()
+                .executor(clientExecutor)
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        try (Connection connection = DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO patients (id, name, email, phone, active, version, updated_at) "
+                             + "SELECT ? + g, 'Fan-out Patient', 'fanout' || g || '@loadtest.com', '11999998888', true, 0, now() "
+                             + "FROM generate_series(0, ? - 1) g")) {
+            insert.setLong(1, SEED_FIRST_ID);
+            insert.setInt(2, settings.seedPatients());
+            insert.executeUpdate();
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        clientExecutor.shutdownNow();
+        try (Connection connection = DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+             Statement delete = connection.createStatement()) {
+            delete.executeUpdate("DELETE FROM patients WHERE id >= " + SEED_FIRST_ID);
+        }
+    }
+
+    @Test
+    public void concurrentReads_ShouldBeServedWithoutErrors() throws Exception {
+        //Arrange
+        runPhase(settings.fanOutWarmup());
+
+        //Act
+        Phase phase = runPhase(settings.fanOutDuration());
+
+        //Assert
+        report(phase);
+        assertThat((double) phase.errors.get() / phase.completed.get()).as("error rate")
+                .isLessThanOrEqualTo(settings.maxErrorRate());
+    }
+
+    private Phase runPhase(Duration duration) throws Exception {
+        Phase phase = new Phase();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(phase::sampleThreads, 0, 100, TimeUnit.MILLISECONDS);
+
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<CompletableFuture<Void>> clients = new ArrayList<>(settings.fanOutConcurrency());
+        for (int i = 0; i < settings.fanOutConcurrency(); i++) {
+            clients.add(readUntil(deadline, new SplittableRandom(i), phase));
+        }
+        CompletableFuture.allOf(clients.toArray(CompletableFuture[]::new))
+                .get(duration.toSeconds() + REQUEST_TIMEOUT.toSeconds() * 2, TimeUnit.SECONDS);
+
+        sampler.shutdownNow();
+        phase.elapsedNanos = System.nanoTime() - (deadline - duration.toNanos());
+        return phase;
+    }
+
+    //One client: the next read is sent from the completion of the previous one
+    private CompletableFuture<Void> readUntil(long deadline, SplittableRandom random, Phase phase){
+        if (System.nanoTime() >= deadline) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long id = SEED_FIRST_ID + random.nextInt(settings.seedPatients());
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/patients/" + id))
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+        long start = System.nanoTime();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .handle((response, failure) -> {
+                    phase.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start),
+                            failure == null && response.statusCode() == 200);
+                    return null;
+                })
+                .thenCompose(ignored -> readUntil(deadline, random, phase));
+    }
+
+    private void report(Phase phase) throws IOException {
+        Files.createDirectories(REPORT_DIR);
+        Histogram histogram = phase.latencies;
+        log.info("Fan-out ({}): {} concurrent clients for {}, {} completed ({} req/s), {} errors",
+                stack(), settings.fanOutConcurrency(), settings.fanOutDuration(), phase.completed.get(),
+                oneDecimal(phase.completed.get() / (phase.elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1))), phase.errors.get());
+        log.info("  GET /patients/{id} p50={}ms p99={}ms p99.9={}ms max={}ms",
+                oneDecimal(histogram.getValueAtPercentile(50.0) / 1000.0), oneDecimal(histogram.getValueAtPercentile(99.0) / 1000.0),
+                oneDecimal(histogram.getValueAtPercentile(99.9) / 1000.0), oneDecimal(histogram.getMaxValue() / 1000.0));
+        log.info("  peak server threads ({}*)={}, peak JVM threads={}",
+                serverThreadPrefix(), phase.peakServerThreads.get(), phase.peakThreads.get());
+
+        Path file = REPORT_DIR.resolve("fanout-" + stack() + ".hgrm");
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private static String oneDecimal(double value){
+        return String.format("%.1f", value);
+    }
+
+    private final class Phase {
+        private final Histogram latencies = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicInteger peakServerThreads = new AtomicInteger();
+        private final AtomicInteger peakThreads = new AtomicInteger();
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        private long elapsedNanos;
+
+        private void record(long micros, boolean ok){
+            latencies.recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+            completed.incrementAndGet();
+            if (!ok) {
+                errors.incrementAndGet();
+            }
+        }
+
+        private void sampleThreads(){
+            int server = 0;
+            for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+                if (info != null && info.getThreadName().startsWith(serverThreadPrefix())) {
+                    server++;
+                }
+            }
+            peakServerThreads.accumulateAndGet(server, Math::max);
+            peakThreads.accumulateAndGet(threads.getThreadCount(), Math::max);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package br.com.brunolegal.clinic_api.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * Load profile and SLO thresholds committed in {@code loadtest/slo.properties}. A system
+ * property with the same key wins, so a run can be reshaped without editing the file.
+ */
+record LoadTestSettings(
+        int rate,
+        Duration warmup,
+        Duration duration,
+        int seedPatients,
+        int createWeight,
+        int readWeight,
+        int updateWeight,
+        int deleteWeight,
+        long readP99Millis,
+        long writeP99Millis,
+        double minThroughputRatio,
+        double maxErrorRate,
+        int fanOutConcurrency,
+        Duration fanOutWarmup,
+        Duration fanOutDuration
+) {
+
+    static LoadTestSettings load(){
+        Properties properties;
+        try {
+            properties = PropertiesLoaderUtils.loadProperties(new ClassPathResource("loadtest/slo.properties"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        properties.putAll(System.getProperties());
+
+        return new LoadTestSettings(
+                Integer.parseInt(properties.getProperty("loadtest.rate")),
+                DurationStyle.detectAndParse(properties.getProperty("loadtest.warmup")),
+                DurationStyle.detectAndParse(properties.getProperty("loadtest.duration")),
+                Integer.parseInt(properties.getProperty("loadtest.seed-patients")),
+                Integer.parseInt(properties.getProperty("loadtest.mix.create")),
+                Integer.parseInt(properties.getProperty("loadtest.mix.read")),
+                Integer.parseInt(properties.getProperty("loadtest.mix.update")),
+                Integer.parseInt(properties.getProperty("loadtest.mix.delete")),
+                Long.parseLong(properties.getProperty("slo.read.p99-ms")),
+                Long.parseLong(properties.getProperty("slo.write.p99-ms")),
+                Double.parseDouble(properties.getProperty("slo.throughput.min-ratio")),
+                Double.parseDouble(properties.getProperty("slo.error-rate.max")),
+                Integer.parseInt(properties.getProperty("loadtest.fanout.concurrency")),
+                DurationStyle.detectAndParse(properties.getProperty("loadtest.fanout.warmup")),
+                DurationStyle.detectAndParse(properties.getProperty("loadtest.fanout.duration")));
+    }
+
+    int totalWeight(){
+        return createWeight + readWeight + updateWeight + deleteWeight;
+    }
+}
@@ -0,0 +1,263 @@
+package br.com.brunolegal.clinic_api.loadtest;
+
+import br.com.brunolegal.clinic_api.dto.PatientBatchItemResultDTO;
+import br.com.brunolegal.clinic_api.dto.PatientBatchResultDTO;
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import br.com.brunolegal.clinic_api.dto.PatientRegistrationDTO;
+import br.com.brunolegal.clinic_api.dto.PatientUpdateDTO;
+import br.com.brunolegal.clinic_api.support.PostgresContainerTest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+/**
+ * Drives mixed create/read/update/delete traffic against a running node backed by a
+ * Testcontainers PostgreSQL and fails when the SLOs in {@code loadtest/slo.properties}
+ * regress. Requests are sent on a fixed schedule (open model) and every latency is
+ * measured from the scheduled send time, so a stalled server cannot hide its queueing
+ * delay by slowing the generator down.
+ * <p>
+ * Only runs with {@code -Dloadtest=true}, which the {@code loadtest} Maven profile sets.
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+//One load driver is one client: its per-client buckets would cap the offered load
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "clinic.rate-limit.enabled=false")
+public class PatientLoadTest extends PostgresContainerTest {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final Path REPORT_DIR = Path.of("target", "loadtest");
+
+    enum Operation { CREATE, READ, UPDATE, DELETE }
+
+    private record Call(Operation operation, HttpRequest request) {}
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final LoadTestSettings settings = LoadTestSettings.load();
+    private final ConcurrentLinkedQueue<Long> createdIds = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Random random = new Random(42);
+
+    private HttpClient httpClient;
+    private List<Long> seededIds;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        List<PatientRegistrationDTO> seed = IntStream.range(0, settings.seedPatients())
+                .mapToObj(i -> new PatientRegistrationDTO("Seed Patient", seedEmail(i), "11999998888"))
+                .toList();
+        HttpResponse<String> response = httpClient.send(
+                json(HttpRequest.newBuilder(uri("/patients/batch")), "POST", seed).build(),
+                HttpResponse.BodyHandlers.ofString());
+        PatientBatchResultDTO result = objectMapper.readValue(response.body(), PatientBatchResultDTO.class);
+        seededIds = result.items().stream().map(PatientBatchItemResultDTO::id).toList();
+    }
+
+    @Test
+    public void mixedTraffic_ShouldMeetLatencyAndThroughputSlos() throws Exception {
+        //Arrange
+        runPhase(settings.warmup());
+
+        //Act
+        Phase phase = runPhase(settings.duration());
+
+        //Assert
+        report(phase);
+        double throughput = phase.completed.get() / phase.elapsedSeconds();
+        double errorRate = (double) phase.errors.get() / phase.completed.get();
+
+        SoftAssertions.assertSoftly(softly -> {
+            softly.assertThat(p99Millis(phase, Operation.READ)).as("read p99 (ms)")
+                    .isLessThanOrEqualTo(settings.readP99Millis());
+            for (Operation write : List.of(Operation.CREATE, Operation.UPDATE, Operation.DELETE)) {
+                softly.assertThat(p99Millis(phase, write)).as(write + " p99 (ms)")
+                        .isLessThanOrEqualTo(settings.writeP99Millis());
+            }
+            softly.assertThat(throughput).as("sustained throughput (req/s)")
+                    .isGreaterThanOrEqualTo(settings.rate() * settings.minThroughputRatio());
+            softly.assertThat(errorRate).as("error rate")
+                    .isLessThanOrEqualTo(settings.maxErrorRate());
+        });
+    }
+
+    private Phase runPhase(Duration duration) throws Exception {
+        Phase phase = new Phase();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / settings.rate();
+        long requests = duration.toNanos() / intervalNanos;
+        List<CompletableFuture<Void>> inFlight = new ArrayList<>((int) requests);
+
+        phase.start = System.nanoTime();
+        for (long i = 0; i < requests; i++) {
+            long scheduled = phase.start + i * intervalNanos;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            inFlight.add(send(nextCall(), scheduled, phase));
+        }
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new))
+                .get(REQUEST_TIMEOUT.toSeconds() * 2, TimeUnit.SECONDS);
+        phase.duration = duration;
+        return phase;
+    }
+
+    private CompletableFuture<Void> send(Call call, long scheduled, Phase phase){
+        return httpClient.sendAsync(call.request(), HttpResponse.BodyHandlers.ofString())
+                .handle((response, failure) -> {
+                    long now = System.nanoTime();
+                    boolean ok = failure == null && response.statusCode() < 400;
+                    phase.record(call.operation(), TimeUnit.NANOSECONDS.toMicros(now - scheduled), now, ok);
+                    if (ok && call.operation() == Operation.CREATE) {
+                        createdIds.add(readId(response.body()));
+                    }
+                    return null;
+                });
+    }
+
+    private Call nextCall() throws JsonProcessingException {
+        int roll = random.nextInt(settings.totalWeight());
+        long n = sequence.incrementAndGet();
+
+        if ((roll -= settings.createWeight()) < 0) {
+            PatientRegistrationDTO dto = new PatientRegistrationDTO("Load Patient", "load" + n + "@loadtest.com", "11999998888");
+            return new Call(Operation.CREATE, json(HttpRequest.newBuilder(uri("/patients")), "POST", dto).build());
+        }
+        if ((roll -= settings.updateWeight()) < 0) {
+            int index = random.nextInt(seededIds.size());
+            PatientUpdateDTO dto = new PatientUpdateDTO("Updated Patient " + n, seedEmail(index), "11988887777");
+            return new Call(Operation.UPDATE,
+                    json(HttpRequest.newBuilder(uri("/patients/" + seededIds.get(index))), "PUT", dto).build());
+        }
+        if ((roll -= settings.deleteWeight()) < 0) {
+            //Deletes only target patients created during the run, so reads and updates never hit a 404
+            Long id = createdIds.poll();
+            if (id != null) {
+                return new Call(Operation.DELETE,
+                        HttpRequest.newBuilder(uri("/patients/" + id)).timeout(REQUEST_TIMEOUT).DELETE().build());
+            }
+        }
+        Long id = seededIds.get(random.nextInt(seededIds.size()));
+        return new Call(Operation.READ, HttpRequest.newBuilder(uri("/patients/" + id)).timeout(REQUEST_TIMEOUT).GET().build());
+    }
+
+    private HttpRequest.Builder json(HttpRequest.Builder builder, String method, Object body) throws JsonProcessingException {
+        return builder.timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+    }
+
+    private Long readId(String body){
+        try {
+            return objectMapper.readValue(body, PatientDetailsDTO.class).id();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unexpected create response: " + body, e);
+        }
+    }
+
+    private URI uri(String path){
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static String seedEmail(int index){
+        return "seed" + index + "@loadtest.com";
+    }
+
+    private static double p99Millis(Phase phase, Operation operation){
+        return phase.latencies.get(operation).getValueAtPercentile(99.0) / 1000.0;
+    }
+
+    private void report(Phase phase) throws IOException {
+        Files.createDirectories(REPORT_DIR);
+        log.info("Load test: {} req/s offered for {}, {} completed ({} req/s), {} errors",
+                settings.rate(), settings.duration(), phase.completed.get(),
+                oneDecimal(phase.completed.get() / phase.elapsedSeconds()), phase.errors.get());
+
+        for (Map.Entry<Operation, Histogram> entry : phase.latencies.entrySet()) {
+            Histogram histogram = entry.getValue();
+            log.info("  {} count={} p50={}ms p99={}ms p99.9={}ms max={}ms", entry.getKey(),
+                    histogram.getTotalCount(), oneDecimal(histogram.getValueAtPercentile(50.0) / 1000.0),
+                    oneDecimal(histogram.getValueAtPercentile(99.0) / 1000.0), oneDecimal(histogram.getValueAtPercentile(99.9) / 1000.0),
+                    oneDecimal(histogram.getMaxValue() / 1000.0));
+
+            Path file = REPORT_DIR.resolve(entry.getKey().name().toLowerCase() + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+                histogram.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    private static String oneDecimal(double value){
+        return String.format("%.1f", value);
+    }
+
+    private static final class Phase {
+        private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final LongAccumulator lastCompletion = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        private long start;
+        private Duration duration;
+
+        private Phase(){
+            for (Operation operation : Operation.values()) {
+                latencies.put(operation, new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3));
+            }
+        }
+
+        private void record(Operation operation, long micros, long completedAt, boolean ok){
+            latencies.get(operation).recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+            lastCompletion.accumulate(completedAt);
+            completed.incrementAndGet();
+            if (!ok) {
+                errors.incrementAndGet();
+            }
+        }
+
+        //A server that falls behind finishes after the schedule ends, which lowers the throughput
+        private double elapsedSeconds(){
+            long elapsed = Math.max(lastCompletion.get() - start, duration.toNanos());
+            return elapsed / (double) TimeUnit.SECONDS.toNanos(1);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package br.com.brunolegal.clinic_api.loadtest;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * {@link FanOutLoadTest} against the {@code reactive} profile: Reactor Netty, WebFlux and R2DBC.
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+public class ReactiveFanOutLoadTest extends FanOutLoadTest {
+
+    @DynamicPropertySource
+    static void r2dbcProperties(DynamicPropertyRegistry registry){
+        reactiveProperties(registry);
+    }
+
+    @Override
+    String stack(){
+        return "reactive";
+    }
+
+    //Reactor Netty's event loops, shared by the HTTP server and the R2DBC connections
+    @Override
+    String serverThreadPrefix(){
+        return "reactor-";
+    }
+}
@@ -0,0 +1,40 @@
+package br.com.brunolegal.clinic_api.loadtest;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.Environment;
+
+/**
+ * {@link FanOutLoadTest} against the default stack: Tomcat, Spring MVC and JPA over Hikari, with the
+ * patient cache switched off and the pool sized like the reactive profile's. Rate and concurrency limits
+ * are off, as the reactive stack has neither.
+ * <p>
+ * Also compares platform with virtual threads: run it with {@code -Dspring.profiles.active=prod} and
+ * then {@code prod,virtual-threads} on a Java 21 runtime. The virtual run reports as {@code servlet-virtual};
+ * its request threads are virtual and do not show in the thread counts.
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.cache.type=none",
+        "spring.datasource.hikari.maximum-pool-size=20",
+        "clinic.rate-limit.enabled=false",
+        "clinic.concurrency-limit.enabled=false"
+})
+public class ServletFanOutLoadTest extends FanOutLoadTest {
+
+    @Autowired
+    private Environment environment;
+
+    @Override
+    String stack(){
+        return Threading.VIRTUAL.isActive(environment) ? "servlet-virtual" : "servlet";
+    }
+
+    //Tomcat's acceptor, poller and request worker threads
+    @Override
+    String serverThreadPrefix(){
+        return "http-nio-";
+    }
+}
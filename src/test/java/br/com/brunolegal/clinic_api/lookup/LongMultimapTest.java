@@ -0,0 +1,81 @@
+package br.com.brunolegal.clinic_api.lookup;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LongMultimapTest {
+
+    @Test
+    public void getAll_WhenKeyHasSeveralValues_ShouldReturnEachOnce(){
+        //Arrange
+        LongMultimap map = new LongMultimap(0);
+
+        //Act
+        map.put(42L, 1L);
+        map.put(42L, 2L);
+        map.put(42L, 2L);
+        map.put(7L, 3L);
+
+        //Assert
+        assertThat(map.getAll(42L)).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(map.get(7L)).isEqualTo(3L);
+        assertThat(map.get(8L)).isZero();
+        assertThat(map.size()).isEqualTo(3);
+    }
+
+    //Backward-shift deletion must keep every colliding entry reachable, through resizes and heavy churn
+    @Test
+    public void putAndRemove_WhenChurningThroughResizes_ShouldMatchReferenceMap(){
+        //Arrange
+        LongMultimap map = new LongMultimap(0);
+        Map<Long, Set<Long>> reference = new HashMap<>();
+        Random random = new Random(42);
+
+        //Act
+        for(int i = 0; i < 200_000; i++){
+            long key = 1 + random.nextInt(5_000);
+            long value = 1 + random.nextInt(4);
+            if(random.nextInt(3) == 0){
+                map.remove(key, value);
+                reference.getOrDefault(key, new HashSet<>()).remove(value);
+            } else {
+                map.put(key, value);
+                reference.computeIfAbsent(key, k -> new HashSet<>()).add(value);
+            }
+        }
+
+        //Assert
+        int expectedSize = 0;
+        for(long key = 1; key <= 5_000; key++){
+            Set<Long> expected = reference.getOrDefault(key, Set.of());
+            expectedSize += expected.size();
+            assertThat(map.getAll(key)).containsExactlyInAnyOrder(expected.stream().mapToLong(Long::longValue).toArray());
+        }
+        assertThat(map.size()).isEqualTo(expectedSize);
+    }
+
+    @Test
+    public void removeAll_WhenKeyHasValues_ShouldRemoveThemAndKeepOtherKeys(){
+        //Arrange
+        LongMultimap map = new LongMultimap(0);
+        map.put(5L, 50L);
+        map.put(5L, 51L);
+        map.put(6L, 60L);
+
+        //Act
+        long removed = map.removeAll(5L);
+
+        //Assert
+        assertThat(removed).isIn(50L, 51L);
+        assertThat(map.getAll(5L)).isEmpty();
+        assertThat(map.get(6L)).isEqualTo(60L);
+        assertThat(map.size()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,95 @@
+package br.com.brunolegal.clinic_api.outbox;
+
+import br.com.brunolegal.clinic_api.dto.PatientChangeDTO;
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import br.com.brunolegal.clinic_api.dto.PatientRegistrationDTO;
+import br.com.brunolegal.clinic_api.dto.PatientUpdateDTO;
+import br.com.brunolegal.clinic_api.exception.ChangesExpiredException;
+import br.com.brunolegal.clinic_api.repository.PatientOutboxRepository;
+import br.com.brunolegal.clinic_api.repository.PatientRepository;
+import br.com.brunolegal.clinic_api.service.PatientService;
+import br.com.brunolegal.clinic_api.support.PostgresContainerTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.awaitility.Awaitility.await;
+
+@SpringBootTest(properties = "clinic.outbox.enabled=true")
+public class PatientOutboxIntegrationTest extends PostgresContainerTest {
+
+    @Autowired
+    private PatientService patientService;
+    @Autowired
+    private PatientRepository patientRepository;
+    @Autowired
+    private PatientOutboxRepository outboxRepository;
+    @Autowired
+    private InMemoryPatientEventSink sink;
+
+    @AfterEach
+    public void tearDown(){
+        patientRepository.deleteAll();
+    }
+
+    /*
+    ------------------
+    Happy Path Tests
+    ------------------
+     */
+
+    @Test
+    public void writes_ShouldReachSinkAndFeedInOrder(){
+        //Arrange
+        long since = outboxRepository.findLastSequence();
+        PatientDetailsDTO created = patientService.createPatient(new PatientRegistrationDTO("John Doe", "outbox.johndoe@test.com", "11999998888"));
+
+        //Act
+        patientService.updatePatient(created.id(), new PatientUpdateDTO("John Smith", "outbox.johndoe@test.com", "11999998888"));
+        patientService.deletePatient(created.id());
+
+        //Assert
+        List<PatientChangeDTO> changes = await().atMost(Duration.ofSeconds(10)).until(() -> changesOf(created.id(), since),
+                feed -> feed.size() == 3);
+        assertThat(changes).extracting(PatientChangeDTO::type).containsExactly("PatientCreated", "PatientUpdated", "PatientDeactivated");
+        assertThat(changes).extracting(PatientChangeDTO::version).containsExactly(0L, 1L, 2L);
+        assertThat(changes).extracting(PatientChangeDTO::sequence).isSorted().doesNotHaveDuplicates();
+        assertThat(changes.get(1).name()).isEqualTo("John Smith");
+        assertThat(sink.events()).containsSubsequence(changes);
+    }
+
+    /*
+    ------------------
+    Error Path Tests
+    ------------------
+     */
+
+    @Test
+    public void listChanges_WhenEventsAfterSinceWerePurged_ShouldThrowChangesExpired(){
+        //Arrange
+        long since = outboxRepository.findLastSequence();
+        patientService.createPatient(new PatientRegistrationDTO("John Doe", "outbox.johnroe@test.com", "11999998888"));
+        patientService.createPatient(new PatientRegistrationDTO("Jane Doe", "outbox.janedoe@test.com", "11988887777"));
+        await().atMost(Duration.ofSeconds(10)).until(() -> outboxRepository.findLastSequence() >= since + 2);
+
+        //Act
+        outboxRepository.deletePublishedBefore(Instant.now().plusSeconds(1));
+
+        //Assert: a consumer behind the purge has to resync, one at the head just sees nothing new
+        assertThrows(ChangesExpiredException.class, () -> patientService.listChanges(since + 1, 10));
+        assertThat(patientService.listChanges(outboxRepository.findLastSequence(), 10).content()).isEmpty();
+    }
+
+    private List<PatientChangeDTO> changesOf(Long patientId, long since){
+        return patientService.listChanges(since, 100).content().stream()
+                .filter(change -> change.patientId().equals(patientId))
+                .toList();
+    }
+}
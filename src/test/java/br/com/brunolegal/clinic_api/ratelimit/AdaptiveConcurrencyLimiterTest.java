@@ -0,0 +1,88 @@
+package br.com.brunolegal.clinic_api.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdaptiveConcurrencyLimiterTest {
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties(true, 20, 4, 200,
+            Duration.ofNanos(WINDOW_NANOS), 1, 100, 1.5, 0.2, Duration.ofSeconds(1));
+
+    private long now = TimeUnit.SECONDS.toNanos(1000);
+
+    /*
+    ------------------
+    Happy Path Tests
+    ------------------
+     */
+
+    @Test
+    public void release_WhenLatencyStaysAtBaseline_ShouldRaiseLimit(){
+        //Arrange
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(properties, now);
+
+        //Act
+        for(int i = 0; i < 20; i++){
+            saturatedWindow(limiter, 10);
+        }
+
+        //Assert
+        assertThat(limiter.getLimit()).isGreaterThan(20);
+    }
+
+    @Test
+    public void release_WhenLatencyClimbsAboveBaseline_ShouldShrinkLimitTowardsMinimum(){
+        //Arrange
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(properties, now);
+        for(int i = 0; i < 20; i++){
+            saturatedWindow(limiter, 10);
+        }
+        int healthyLimit = limiter.getLimit();
+
+        //Act: calls start waiting for connections
+        for(int i = 0; i < 40; i++){
+            saturatedWindow(limiter, 100);
+        }
+
+        //Assert
+        assertThat(limiter.getLimit()).isLessThan(healthyLimit).isLessThanOrEqualTo(8);
+    }
+
+    /*
+    ------------------
+    Error Path Tests
+    ------------------
+     */
+
+    @Test
+    public void tryAcquire_WhenLimitIsReached_ShouldRejectUntilACallEnds(){
+        //Arrange
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(properties, now);
+        for(int i = 0; i < 20; i++){
+            assertThat(limiter.tryAcquire()).isTrue();
+        }
+
+        //Act & Assert
+        assertThat(limiter.tryAcquire()).isFalse();
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(10), now);
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.getInFlight()).isEqualTo(20);
+    }
+
+    //Fills the limit and ends every call with the given latency, one window later
+    private void saturatedWindow(AdaptiveConcurrencyLimiter limiter, long latencyMillis){
+        int admitted = 0;
+        while(limiter.tryAcquire()){
+            admitted++;
+        }
+        now += WINDOW_NANOS;
+        for(int i = 0; i < admitted; i++){
+            limiter.release(TimeUnit.MILLISECONDS.toNanos(latencyMillis), now);
+        }
+    }
+}
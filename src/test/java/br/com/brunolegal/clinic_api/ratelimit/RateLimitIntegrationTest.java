@@ -0,0 +1,76 @@
+package br.com.brunolegal.clinic_api.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "clinic.rate-limit.endpoints.[GET\\ /patients/{id}].capacity=2",
+        "clinic.rate-limit.endpoints.[GET\\ /patients/{id}].per-second=0.1",
+        "clinic.rate-limit.api-keys.greedy=greedy-key",
+        "clinic.rate-limit.api-keys.noisy=noisy-key",
+        "clinic.rate-limit.api-keys.quiet=quiet-key"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class RateLimitIntegrationTest {
+    private static final String ENDPOINT = "GET /patients/{id}";
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void getById_WhenClientSpentItsBucket_ShouldReturnTooManyRequestsWithRetryAfter() throws Exception {
+        //Arrange: the bucket is per endpoint, not per id
+        mockMvc.perform(get("/patients/{id}", 901).header("X-API-Key", "greedy-key")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/patients/{id}", 902).header("X-API-Key", "greedy-key")).andExpect(status().isNotFound());
+        double rejectedBefore = rejected();
+
+        //Act & Assert
+        mockMvc.perform(get("/patients/{id}", 903).header("X-API-Key", "greedy-key"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "10"));
+        assertThat(rejected()).isEqualTo(rejectedBefore + 1);
+    }
+
+    @Test
+    public void getById_WhenAnotherClientIsThrottled_ShouldStillServeThisOne() throws Exception {
+        //Arrange
+        for(int i = 0; i < 3; i++){
+            mockMvc.perform(get("/patients/{id}", 901).header("X-API-Key", "noisy-key"));
+        }
+
+        //Act & Assert
+        mockMvc.perform(get("/patients/{id}", 901).header("X-API-Key", "quiet-key")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/patients/{id}", 901).header("X-API-Key", "noisy-key")).andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    public void getById_WhenClientRotatesUnknownKeys_ShouldShareItsAddressBucket() throws Exception {
+        //Arrange: made-up keys are ignored, so every request counts against 127.0.0.1
+        mockMvc.perform(get("/patients/{id}", 901).header("X-API-Key", "made-up-1")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/patients/{id}", 901).header("X-API-Key", "made-up-2")).andExpect(status().isNotFound());
+
+        //Act & Assert
+        mockMvc.perform(get("/patients/{id}", 901).header("X-API-Key", "made-up-3")).andExpect(status().isTooManyRequests());
+        mockMvc.perform(get("/patients/{id}", 901)).andExpect(status().isTooManyRequests());
+    }
+
+    private double rejected(){
+        return meterRegistry.find(RateLimitInterceptor.REJECTED_COUNTER).tag("endpoint", ENDPOINT).counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+}
@@ -0,0 +1,82 @@
+package br.com.brunolegal.clinic_api.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenBucketTest {
+    private static final long START = TimeUnit.SECONDS.toNanos(1000);
+
+    @Test
+    public void tryAcquire_WhenBurstIsSpent_ShouldWaitForRefill(){
+        //Arrange
+        TokenBucket bucket = new TokenBucket(3, 10, START);
+
+        //Act
+        long first = bucket.tryAcquire(START);
+        long second = bucket.tryAcquire(START);
+        long third = bucket.tryAcquire(START);
+        long fourth = bucket.tryAcquire(START);
+
+        //Assert: one token every 100 ms
+        assertThat(List.of(first, second, third)).containsOnly(0L);
+        assertThat(fourth).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(bucket.tryAcquire(START + TimeUnit.MILLISECONDS.toNanos(100))).isZero();
+        assertThat(bucket.tryAcquire(START + TimeUnit.MILLISECONDS.toNanos(100))).isPositive();
+    }
+
+    @Test
+    public void tryAcquire_WhenIdleForLong_ShouldNotBankMoreThanCapacity(){
+        //Arrange
+        TokenBucket bucket = new TokenBucket(2, 10, START);
+        long later = START + TimeUnit.HOURS.toNanos(1);
+
+        //Act & Assert
+        assertThat(bucket.tryAcquire(later)).isZero();
+        assertThat(bucket.tryAcquire(later)).isZero();
+        assertThat(bucket.tryAcquire(later)).isPositive();
+    }
+
+    @Test
+    public void tryAcquire_WhenRacing_ShouldGrantExactlyCapacity() throws Exception {
+        //Arrange
+        TokenBucket bucket = new TokenBucket(1000, 1, START);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> granted = new ArrayList<>();
+
+        //Act
+        try {
+            for(int t = 0; t < 8; t++){
+                granted.add(executor.submit(() -> {
+                    start.await();
+                    int count = 0;
+                    for(int i = 0; i < 500; i++){
+                        if(bucket.tryAcquire(START) == 0){
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+            start.countDown();
+            int total = 0;
+            for(Future<Integer> future : granted){
+                total += future.get(10, TimeUnit.SECONDS);
+            }
+
+            //Assert
+            assertThat(total).isEqualTo(1000);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package br.com.brunolegal.clinic_api.repository;
+
+import br.com.brunolegal.clinic_api.domain.Patient;
+import br.com.brunolegal.clinic_api.support.PostgresContainerTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//The trigram strategy only exists on PostgreSQL, H2 tests exercise the LIKE fallback
+@SpringBootTest
+@Transactional
+public class PatientSearchRepositoryTest extends PostgresContainerTest {
+
+    @Autowired
+    private PatientSearchRepository patientSearchRepository;
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @BeforeEach
+    public void setUp(){
+        patientRepository.saveAllAndFlush(List.of(
+                new Patient(null, "Joanna Ray", "joanna@test.com", "11988887777"),
+                new Patient(null, "Anna Smith", "annasmith@test.com", "11977776666"),
+                new Patient(null, "Ana Smyth", "anasmyth@test.com", "21966665555"),
+                new Patient(null, "Bob Johnson", "bobjohnson@test.com", "11955554444"),
+                new Patient(null, "Anna Gone", "annagone@test.com", "11944443333", false)));
+    }
+
+    @Test
+    public void search_ShouldRankClosestMatchFirstAndTolerateTypos(){
+        List<PatientSearchHit> hits = patientSearchRepository.search("anna smith", null, 10);
+
+        assertThat(hits).extracting(PatientSearchHit::name).startsWith("Anna Smith", "Ana Smyth")
+                .doesNotContain("Anna Gone", "Bob Johnson");
+        assertThat(hits).extracting(PatientSearchHit::score).isSortedAccordingTo((a, b) -> Float.compare(b, a));
+    }
+
+    @Test
+    public void search_WithCursor_ShouldContinueAfterLastHit(){
+        List<PatientSearchHit> all = patientSearchRepository.search("ann", null, 10);
+
+        List<PatientSearchHit> firstPage = patientSearchRepository.search("ann", null, 1);
+        List<PatientSearchHit> secondPage = patientSearchRepository.search("ann", firstPage.get(0), 10);
+
+        assertThat(firstPage).containsExactly(all.get(0));
+        assertThat(secondPage).containsExactlyElementsOf(all.subList(1, all.size()));
+    }
+
+    @Test
+    public void search_ByPhonePrefix_ShouldMatchWithTopScore(){
+        List<PatientSearchHit> hits = patientSearchRepository.search("2196", null, 10);
+
+        assertThat(hits).extracting(PatientSearchHit::name).containsExactly("Ana Smyth");
+        assertThat(hits.get(0).score()).isEqualTo(1.0f);
+    }
+}
@@ -0,0 +1,52 @@
+package br.com.brunolegal.clinic_api.repository;
+
+import br.com.brunolegal.clinic_api.domain.Patient;
+import br.com.brunolegal.clinic_api.support.PostgresContainerTest;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//The context only starts when Hibernate's schema validation accepts the migrated schema
+@SpringBootTest
+public class SchemaMigrationTest extends PostgresContainerTest {
+
+    @Autowired
+    private Flyway flyway;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Test
+    public void migrations_ShouldAllBeAppliedWithNothingPending(){
+        assertThat(flyway.info().applied()).isNotEmpty();
+        assertThat(flyway.info().pending()).isEmpty();
+    }
+
+    @Test
+    public void migrations_ShouldCreateSequenceAndIndexes(){
+        Integer increment = jdbcTemplate.queryForObject(
+                "SELECT increment_by FROM pg_sequences WHERE sequencename = 'patients_seq'", Integer.class);
+        List<String> indexes = jdbcTemplate.queryForList(
+                "SELECT indexname FROM pg_indexes WHERE tablename = 'patients'", String.class);
+
+        assertThat(increment).isEqualTo(50);
+        assertThat(indexes).contains(Patient.EMAIL_UNIQUE_CONSTRAINT, "idx_patients_active_id", "idx_patients_active_email",
+                "idx_patients_active_name_trgm", "idx_patients_active_email_trgm", "idx_patients_active_phone_prefix");
+    }
+
+    @Test
+    @Transactional
+    public void entities_ShouldRoundTripThroughMigratedSchema(){
+        Patient saved = patientRepository.saveAndFlush(new Patient(null, "John Doe", "johndoe@test.com", "11999998888"));
+
+        assertThat(patientRepository.findDetailsById(saved.getId())).isPresent();
+    }
+}
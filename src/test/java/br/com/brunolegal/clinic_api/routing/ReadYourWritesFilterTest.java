@@ -0,0 +1,80 @@
+package br.com.brunolegal.clinic_api.routing;
+
+import br.com.brunolegal.clinic_api.event.PatientChangedEvent;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReadYourWritesFilterTest {
+    private static final String COOKIE = "clinic_primary_until";
+
+    @AfterEach
+    public void tearDown(){
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    /*
+    ------------------
+    Happy Path Tests
+    ------------------
+     */
+
+    @Test
+    public void whenCookieWasIssuedByAnyNode_ShouldReadFromPrimary() throws Exception {
+        //Arrange: another node sharing the secret issued it
+        Cookie issued = issueCookie(filter("shared-secret"));
+
+        //Act & Assert
+        assertThat(readsFromPrimary(filter("shared-secret"), issued)).isTrue();
+    }
+
+    /*
+    ------------------
+    Error Path Tests
+    ------------------
+     */
+
+    @Test
+    public void whenCookieIsWrittenByTheClient_ShouldReadFromReplicas() throws Exception {
+        //Arrange
+        ReadYourWritesFilter filter = filter("shared-secret");
+        String signature = issueCookie(filter).getValue().split("\\.")[1];
+
+        //Act & Assert
+        assertThat(readsFromPrimary(filter, new Cookie(COOKIE, Long.toString(Long.MAX_VALUE)))).isFalse();
+        assertThat(readsFromPrimary(filter, new Cookie(COOKIE, Long.MAX_VALUE + "." + signature))).isFalse();
+        assertThat(readsFromPrimary(filter("other-secret"), issueCookie(filter))).isFalse();
+    }
+
+    private static ReadYourWritesFilter filter(String secret){
+        return new ReadYourWritesFilter(new ReplicaRoutingProperties(true, List.of(), null, null, 10,
+                Duration.ofSeconds(2), Duration.ofSeconds(1), Duration.ofSeconds(5), COOKIE, secret));
+    }
+
+    private static Cookie issueCookie(ReadYourWritesFilter filter){
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest(), response));
+        filter.onPatientChanged(PatientChangedEvent.created(1L, "johndoe@test.com", "11999998888"));
+        RequestContextHolder.resetRequestAttributes();
+        String header = response.getHeader(HttpHeaders.SET_COOKIE);
+        return new Cookie(COOKIE, header.substring(COOKIE.length() + 1, header.indexOf(';')));
+    }
+
+    private static boolean readsFromPrimary(ReadYourWritesFilter filter, Cookie cookie) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(cookie);
+        boolean[] pinned = new boolean[1];
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> pinned[0] = ReadRouting.isPinnedToPrimary());
+        return pinned[0];
+    }
+}
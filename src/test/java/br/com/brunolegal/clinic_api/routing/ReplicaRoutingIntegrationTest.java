@@ -0,0 +1,198 @@
+package br.com.brunolegal.clinic_api.routing;
+
+import br.com.brunolegal.clinic_api.domain.Patient;
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import br.com.brunolegal.clinic_api.dto.PatientRegistrationDTO;
+import br.com.brunolegal.clinic_api.repository.PatientRepository;
+import br.com.brunolegal.clinic_api.service.PatientService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.images.builder.Transferable;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//A primary and a streaming replica cloned from it with pg_basebackup; pausing WAL replay on the replica makes it lag on demand
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(properties = {
+        "clinic.replicas.enabled=true",
+        "clinic.replicas.max-lag=3s",
+        "clinic.replicas.lag-check-interval=100ms",
+        "clinic.replicas.sticky-for=4s"
+})
+@AutoConfigureMockMvc
+public class ReplicaRoutingIntegrationTest {
+    private static final String COOKIE = "clinic_primary_until";
+
+    private static final Network NETWORK = Network.newNetwork();
+    //The image only lets replication connections in from localhost
+    private static final PostgreSQLContainer<?> PRIMARY = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withNetwork(NETWORK)
+            .withNetworkAliases("primary")
+            .withCopyToContainer(Transferable.of("echo 'host replication all all scram-sha-256' >> \"$PGDATA/pg_hba.conf\"\n"),
+                    "/docker-entrypoint-initdb.d/replication.sh");
+    private static final GenericContainer<?> REPLICA = new GenericContainer<>("postgres:15-alpine")
+            .withNetwork(NETWORK)
+            .withExposedPorts(PostgreSQLContainer.POSTGRESQL_PORT)
+            .withEnv("PGPASSWORD", PRIMARY.getPassword())
+            .withCommand("sh", "-c", "su-exec postgres pg_basebackup -h primary -U " + PRIMARY.getUsername() + " -D \"$PGDATA\" -R -X stream"
+                    + " && chmod 700 \"$PGDATA\" && exec su-exec postgres postgres")
+            .waitingFor(Wait.forLogMessage(".*ready to accept read-only connections.*", 1));
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry){
+        PRIMARY.start();
+        REPLICA.start();
+        registry.add("spring.datasource.url", PRIMARY::getJdbcUrl);
+        registry.add("spring.datasource.username", PRIMARY::getUsername);
+        registry.add("spring.datasource.password", PRIMARY::getPassword);
+        registry.add("spring.datasource.driver-class-name", PRIMARY::getDriverClassName);
+        registry.add("spring.flyway.enabled", () -> "true");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+        registry.add("clinic.replicas.urls[0]", ReplicaRoutingIntegrationTest::replicaUrl);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private PatientService patientService;
+    @Autowired
+    private PatientRepository patientRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ReplicaPools replicaPools;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp(){
+        await().atMost(Duration.ofSeconds(10)).until(replicaPools::hasEligibleReplica);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        try(Connection replica = openReplica(); Statement statement = replica.createStatement()){
+            statement.execute("SELECT pg_wal_replay_resume()");
+        }
+        patientRepository.deleteAll();
+    }
+
+    @Test
+    public void readOnlyTransactions_ShouldUseReplicaAndOthersThePrimary(){
+        //Arrange
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+        //Act
+        Boolean readOnlyInRecovery = readOnly.execute(status -> jdbcTemplate.queryForObject("SELECT pg_is_in_recovery()", Boolean.class));
+        Boolean readWriteInRecovery = readWrite.execute(status -> jdbcTemplate.queryForObject("SELECT pg_is_in_recovery()", Boolean.class));
+
+        //Assert
+        assertThat(readOnlyInRecovery).isTrue();
+        assertThat(readWriteInRecovery).isFalse();
+    }
+
+    @Test
+    public void whenClientJustWrote_ShouldReadItsWriteFromPrimaryWhileReplicaHasNot() throws Exception {
+        //Arrange
+        long marker = pauseReplayAfterCatchingUp();
+        PatientRegistrationDTO registration = new PatientRegistrationDTO("Jane Smith", "janesmith@test.com", "11988887777");
+
+        //Act
+        Cookie sticky = mockMvc.perform(post("/patients")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(registration)))
+                .andExpect(status().isCreated())
+                .andExpect(cookie().exists(COOKIE))
+                .andReturn().getResponse().getCookie(COOKIE);
+
+        //Assert
+        mockMvc.perform(get("/patients").param("after", Long.toString(marker)).cookie(sticky))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].email", is("janesmith@test.com")));
+        mockMvc.perform(get("/patients").param("after", Long.toString(marker)))
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    public void whenReplicaFallsBehindMaxLag_ShouldReadFromPrimary() throws Exception {
+        //Arrange
+        long marker = pauseReplayAfterCatchingUp();
+        Patient saved = patientRepository.save(new Patient(null, "Jane Smith", "janesmith@test.com", "11988887777"));
+
+        //Act
+        await().atMost(Duration.ofSeconds(10)).until(() -> !replicaPools.hasEligibleReplica());
+        double fallbacksBefore = fallbackReads();
+        var page = patientService.listPage(marker, 10);
+
+        //Assert
+        assertThat(page.content()).extracting(PatientDetailsDTO::id).containsExactly(saved.getId());
+        assertThat(fallbackReads()).isGreaterThan(fallbacksBefore);
+    }
+
+    //Writes a row, waits until the replica has replayed it, then stops replay; returns the row's id
+    private long pauseReplayAfterCatchingUp() throws SQLException {
+        Patient marker = patientRepository.save(new Patient(null, "Marker", "marker@test.com", "11900000000"));
+        try(Connection replica = openReplica(); Statement statement = replica.createStatement()){
+            await().atMost(Duration.ofSeconds(10)).until(() -> {
+                try(ResultSet rs = statement.executeQuery("SELECT count(*) FROM patients WHERE id = " + marker.getId())){
+                    return rs.next() && rs.getInt(1) == 1;
+                }
+            });
+            statement.execute("SELECT pg_wal_replay_pause()");
+        }
+        return marker.getId();
+    }
+
+    private double fallbackReads(){
+        return meterRegistry.get(ReplicaPools.READS_COUNTER).tag("reason", "replicas-behind").functionCounter().count();
+    }
+
+    private static Connection openReplica() throws SQLException {
+        return DriverManager.getConnection(replicaUrl(), PRIMARY.getUsername(), PRIMARY.getPassword());
+    }
+
+    private static String replicaUrl(){
+        return "jdbc:postgresql://" + REPLICA.getHost() + ":" + REPLICA.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT)
+                + "/" + PRIMARY.getDatabaseName();
+    }
+}
@@ -1,24 +1,61 @@
 package br.com.brunolegal.clinic_api.service;
 
+import br.com.brunolegal.clinic_api.audit.PatientAuditEntry;
+import br.com.brunolegal.clinic_api.audit.PatientAuditLog;
 import br.com.brunolegal.clinic_api.domain.Patient;
+import br.com.brunolegal.clinic_api.domain.PatientSnapshot;
+import br.com.brunolegal.clinic_api.dto.PatientBatchItemResultDTO;
+import br.com.brunolegal.clinic_api.dto.PatientBatchResultDTO;
+import br.com.brunolegal.clinic_api.dto.PatientChangeDTO;
+import br.com.brunolegal.clinic_api.dto.PatientChangePageDTO;
 import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import br.com.brunolegal.clinic_api.dto.PatientField;
+import br.com.brunolegal.clinic_api.dto.PatientPageDTO;
 import br.com.brunolegal.clinic_api.dto.PatientRegistrationDTO;
+import br.com.brunolegal.clinic_api.dto.PatientSearchPageDTO;
 import br.com.brunolegal.clinic_api.dto.PatientUpdateDTO;
+import br.com.brunolegal.clinic_api.event.PatientChangedEvent;
+import br.com.brunolegal.clinic_api.exception.ChangesExpiredException;
 import br.com.brunolegal.clinic_api.exception.DuplicateResourceException;
+import br.com.brunolegal.clinic_api.exception.InvalidCursorException;
+import br.com.brunolegal.clinic_api.exception.PreconditionFailedException;
 import br.com.brunolegal.clinic_api.exception.ResourceNotFoundException;
+import br.com.brunolegal.clinic_api.lookup.PatientLookupIndex;
 import br.com.brunolegal.clinic_api.mapper.PatientMapper;
+import br.com.brunolegal.clinic_api.outbox.OutboxProperties;
+import br.com.brunolegal.clinic_api.repository.PatientOutboxRepository;
 import br.com.brunolegal.clinic_api.repository.PatientRepository;
+import br.com.brunolegal.clinic_api.repository.PatientSearchHit;
+import br.com.brunolegal.clinic_api.repository.PatientSearchRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
@@ -27,7 +64,23 @@ public class PatientServiceTest {
     @Mock
     private PatientRepository patientRepository;
     @Mock
+    private PatientSearchRepository patientSearchRepository;
+    @Mock
     private PatientMapper patientMapper;
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private PatientLookupIndex lookupIndex;
+    @Mock
+    private PatientAuditLog auditLog;
+    @Mock
+    private PatientOutboxRepository outboxRepository;
+    @Mock
+    private OutboxProperties outboxProperties;
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
 
     @InjectMocks
     private PatientService patientService;
@@ -47,9 +100,8 @@ public class PatientServiceTest {
         Patient dummyPatient = new Patient(1L, "John Doe", "johndoe@test.com", "11999998888");
         PatientDetailsDTO dummyPatientDetailsDTO = new PatientDetailsDTO(1L, "John Doe", "johndoe@test.com", "11999998888");
 
-        when(patientRepository.existsByEmail(dummyRegistrationDTO.email())).thenReturn(false);
         when(patientMapper.toEntity(dummyRegistrationDTO)).thenReturn(dummyPatientNoId);
-        when(patientRepository.save(dummyPatientNoId)).thenReturn(dummyPatient);
+        when(patientRepository.saveAndFlush(dummyPatientNoId)).thenReturn(dummyPatient);
         when(patientMapper.toDetailsDto(dummyPatient)).thenReturn(dummyPatientDetailsDTO);
 
         //Act
@@ -58,37 +110,144 @@ public class PatientServiceTest {
         //Assert
         assertThat(result).isNotNull();
         assertThat(result).isEqualTo(dummyPatientDetailsDTO);
-        verify(patientRepository).existsByEmail(dummyRegistrationDTO.email());
-        verify(patientRepository).save(dummyPatientNoId);
+        verify(patientRepository).saveAndFlush(dummyPatientNoId);
+        verifyNoMoreInteractions(patientRepository);
+
+    }
+    @Test
+    public void createPatient_WhenLookupIndexIsStale_ShouldCreatePatient(){
+        //Arrange
+        PatientRegistrationDTO dummyRegistrationDTO = new PatientRegistrationDTO("John Doe", "johndoe@test.com", "11999998888");
+        Patient dummyPatientNoId = new Patient(null, "John Doe", "johndoe@test.com", "11999998888");
+        Patient dummyPatient = new Patient(1L, "John Doe", "johndoe@test.com", "11999998888");
+        PatientDetailsDTO dummyPatientDetailsDTO = new PatientDetailsDTO(1L, "John Doe", "johndoe@test.com", "11999998888");
+
+        when(lookupIndex.findIdByEmail("johndoe@test.com")).thenReturn(OptionalLong.of(7L));
+        when(patientRepository.existsByEmail("johndoe@test.com")).thenReturn(false);
+        when(patientMapper.toEntity(dummyRegistrationDTO)).thenReturn(dummyPatientNoId);
+        when(patientRepository.saveAndFlush(dummyPatientNoId)).thenReturn(dummyPatient);
+        when(patientMapper.toDetailsDto(dummyPatient)).thenReturn(dummyPatientDetailsDTO);
+
+        //Act
+        PatientDetailsDTO result = patientService.createPatient(dummyRegistrationDTO);
+
+        //Assert
+        assertThat(result).isEqualTo(dummyPatientDetailsDTO);
+        verify(patientRepository).saveAndFlush(dummyPatientNoId);
+    }
 
+    @Test
+    public void createPatients_WhenBatchIsValid_ShouldInsertOnceAndReportIds(){
+        //Arrange
+        PatientRegistrationDTO dummyRegistration1 = new PatientRegistrationDTO("John Doe", "johndoe@test.com", "11999998888");
+        PatientRegistrationDTO dummyRegistration2 = new PatientRegistrationDTO("Jane Smith", "janesmith@test.com", "11988887777");
+        Patient dummyPatient1 = new Patient(null, "John Doe", "johndoe@test.com", "11999998888");
+        Patient dummyPatient2 = new Patient(null, "Jane Smith", "janesmith@test.com", "11988887777");
+
+        when(patientRepository.findExistingEmails(List.of("johndoe@test.com", "janesmith@test.com"))).thenReturn(Set.of());
+        when(patientMapper.toEntity(dummyRegistration1)).thenReturn(dummyPatient1);
+        when(patientMapper.toEntity(dummyRegistration2)).thenReturn(dummyPatient2);
+        when(patientRepository.saveAll(List.of(dummyPatient1, dummyPatient2))).thenReturn(List.of(
+                new Patient(1L, "John Doe", "johndoe@test.com", "11999998888"),
+                new Patient(2L, "Jane Smith", "janesmith@test.com", "11988887777")));
+
+        //Act
+        PatientBatchResultDTO result = patientService.createPatients(List.of(dummyRegistration1, dummyRegistration2));
+
+        //Assert
+        assertThat(result.created()).isEqualTo(2);
+        assertThat(result.rejected()).isZero();
+        assertThat(result.items()).extracting(PatientBatchItemResultDTO::id).containsExactly(1L, 2L);
+        verify(patientRepository, times(1)).findExistingEmails(any());
+        verify(patientRepository, times(1)).saveAll(any());
     }
+
     @Test
-    public void listAll_WhenPatientsExist_ShouldReturnDtoList(){
+    public void listPage_WhenPatientsExist_ShouldReturnDtoList(){
         //Arrange
-        Patient dummyPatient1 = new Patient(1L, "John Doe", "johndoe@test.com", "11999998888");
-        Patient dummyPatient2 = new Patient(2L, "Jane Smith", "janesmith@test.com", "11988887777");
-        List<Patient> dummyPatientList = List.of(dummyPatient1, dummyPatient2);
+        PatientDetailsDTO dummyDetails1 = new PatientDetailsDTO(1L, "John Doe", "johndoe@test.com", "11999998888");
+        PatientDetailsDTO dummyDetails2 = new PatientDetailsDTO(2L, "Jane Smith", "janesmith@test.com", "11988887777");
 
-        when(patientRepository.findAllByActiveTrue()).thenReturn(dummyPatientList);
+        when(patientRepository.findDetailsPage(0L, Limit.of(11))).thenReturn(List.of(dummyDetails1, dummyDetails2));
 
         //Act
-        List<PatientDetailsDTO> result = patientService.listAll();
+        PatientPageDTO result = patientService.listPage(null, 10);
 
         //Assert
         assertThat(result).isNotNull();
-        assertThat(result).hasSize(2);
-        verify(patientRepository).findAllByActiveTrue();
+        assertThat(result.content()).hasSize(2);
+        assertThat(result.nextCursor()).isNull();
+        verify(patientRepository).findDetailsPage(0L, Limit.of(11));
+        verifyNoInteractions(patientMapper);
+    }
+    @Test
+    public void listPage_WhenMoreRowsThanLimit_ShouldReturnNextCursor(){
+        //Arrange
+        PatientDetailsDTO dummyDetails1 = new PatientDetailsDTO(5L, "John Doe", "johndoe@test.com", "11999998888");
+        PatientDetailsDTO dummyDetails2 = new PatientDetailsDTO(7L, "Jane Smith", "janesmith@test.com", "11988887777");
 
+        when(patientRepository.findDetailsPage(4L, Limit.of(2))).thenReturn(List.of(dummyDetails1, dummyDetails2));
 
+        //Act
+        PatientPageDTO result = patientService.listPage(4L, 1);
+
+        //Assert
+        assertThat(result.content()).containsExactly(dummyDetails1);
+        assertThat(result.nextCursor()).isEqualTo(5L);
+    }
+    @Test
+    public void listPage_WhenFieldsAreSelected_ShouldReadOnlyThoseColumns(){
+        //Arrange
+        Set<PatientField> fields = EnumSet.of(PatientField.NAME);
+        PatientDetailsDTO dummyDetails = new PatientDetailsDTO(1L, "John Doe", null, null, 0L, null);
+        when(patientRepository.findActivePage(0L, 11, fields)).thenReturn(List.of(dummyDetails));
+
+        //Act
+        PatientPageDTO partial = patientService.listPage(null, 10, fields);
+        patientService.listPage(null, 10, EnumSet.allOf(PatientField.class));
+
+        //Assert
+        assertThat(partial.content()).containsExactly(dummyDetails);
+        verify(patientRepository).findDetailsPage(0L, Limit.of(11));
+        verify(patientRepository, times(1)).findActivePage(anyLong(), anyInt(), any());
+    }
+    @Test
+    public void search_WhenMoreHitsThanLimit_ShouldReturnCursorThatResumesAfterLastHit(){
+        //Arrange
+        PatientSearchHit hit1 = new PatientSearchHit(3L, "Joanna Smith", "joanna@test.com", "11999998888", 0.5f);
+        PatientSearchHit hit2 = new PatientSearchHit(8L, "Anna Jones", "anna@test.com", "11988887777", 0.25f);
+        when(patientSearchRepository.search("ann", null, 2)).thenReturn(List.of(hit1, hit2));
+
+        //Act
+        PatientSearchPageDTO firstPage = patientService.search("  Ann ", null, 1);
+        patientService.search("ann", firstPage.nextCursor(), 1);
+
+        //Assert
+        assertThat(firstPage.content()).containsExactly(new PatientDetailsDTO(3L, "Joanna Smith", "joanna@test.com", "11999998888"));
+        verify(patientSearchRepository).search(eq("ann"), eq(new PatientSearchHit(3L, null, null, null, 0.5f)), eq(2));
+    }
+    @Test
+    public void exportActive_WhenPatientsExist_ShouldStreamProjectedDtos(){
+        //Arrange
+        PatientDetailsDTO dummyDetails1 = new PatientDetailsDTO(1L, "John Doe", "johndoe@test.com", "11999998888");
+        PatientDetailsDTO dummyDetails2 = new PatientDetailsDTO(2L, "Jane Smith", "janesmith@test.com", "11988887777");
+        List<PatientDetailsDTO> exported = new ArrayList<>();
+
+        when(patientRepository.streamDetailsByActiveTrue()).thenReturn(Stream.of(dummyDetails1, dummyDetails2));
+
+        //Act
+        patientService.exportActive(exported::add);
+
+        //Assert
+        assertThat(exported).containsExactly(dummyDetails1, dummyDetails2);
+        verifyNoInteractions(patientMapper, entityManager);
     }
     @Test
     public void getPatientById_WhenPatientExists_ShouldReturnPatientDetails() {
         //Arrange
         Long patientId = 1L;
-        Patient dummyPatient = new Patient(patientId, "John Doe", "johndoe@test.com", "11999998888");
         PatientDetailsDTO dummyPatientDetailsDTO = new PatientDetailsDTO(patientId, "John Doe", "johndoe@test.com", "11999998888");
-        when(patientRepository.findByIdAndActiveTrue(patientId)).thenReturn(java.util.Optional.of(dummyPatient));
-        when(patientMapper.toDetailsDto(dummyPatient)).thenReturn(dummyPatientDetailsDTO);
+        when(patientRepository.findDetailsById(patientId)).thenReturn(java.util.Optional.of(dummyPatientDetailsDTO));
 
         //Act
         PatientDetailsDTO result = patientService.getPatientById(patientId);
@@ -96,7 +255,7 @@ public class PatientServiceTest {
         //Assert
         assertThat(result).isNotNull();
         assertThat(result).isEqualTo(dummyPatientDetailsDTO);
-        verify(patientRepository).findByIdAndActiveTrue(patientId);
+        verify(patientRepository).findDetailsById(patientId);
 
     }
 
@@ -104,14 +263,12 @@ public class PatientServiceTest {
     public void updatePatient_WhenDataIsValid_ShouldReturnUpdatedPatientDetails(){
         //Arrange
         Long patientId = 1L;
-        Patient oldPatient = new Patient(1L, "John Doe", "johndoe@test.com", "11999998888");
         PatientUpdateDTO updateDTO = new PatientUpdateDTO("John Updated", "johnupdated@test.com", "11977776666");
         PatientDetailsDTO updatedPatientDetailsDTO = new PatientDetailsDTO(1L, "John Updated", "johnupdated@test.com", "11977776666");
 
-        when(patientRepository.findByIdAndActiveTrue(1L)).thenReturn(Optional.of(oldPatient));
-        when(patientRepository.findByEmail(updateDTO.email())).thenReturn(Optional.empty());
-        when(patientRepository.save(oldPatient)).thenReturn(oldPatient);
-        when(patientMapper.toDetailsDto(oldPatient)).thenReturn(updatedPatientDetailsDTO);
+        when(patientRepository.updateActive(eq(patientId), eq(updateDTO.name()), eq(updateDTO.email()), eq(updateDTO.phone()), any(Instant.class))).thenReturn(1);
+        when(patientRepository.findVersionById(patientId)).thenReturn(2L);
+        when(patientMapper.toDetailsDto(eq(patientId), eq(updateDTO), eq(2L), any(Instant.class))).thenReturn(updatedPatientDetailsDTO);
 
         //Act
         PatientDetailsDTO result = patientService.updatePatient(patientId, updateDTO);
@@ -120,28 +277,122 @@ public class PatientServiceTest {
         assertThat(result).isNotNull();
         assertThat(result).isEqualTo(updatedPatientDetailsDTO);
 
-        verify(patientRepository).findByIdAndActiveTrue(patientId);
-        verify(patientRepository).findByEmail(updateDTO.email());
-        verify(patientRepository).save(oldPatient);
-        verify(patientMapper).toDetailsDto(oldPatient);
+        verify(patientRepository).updateActive(eq(patientId), eq(updateDTO.name()), eq(updateDTO.email()), eq(updateDTO.phone()), any(Instant.class));
+        verify(patientRepository).findVersionById(patientId);
+        verifyNoMoreInteractions(patientRepository);
+        verify(eventPublisher).publishEvent(PatientChangedEvent.updated(patientId, updateDTO.email(), updateDTO.phone()));
+
+    }
+
+    @Test
+    public void updatePatient_WhenLookupIndexIsStale_ShouldUpdatePatient(){
+        //Arrange
+        Long patientId = 1L;
+        PatientUpdateDTO updateDTO = new PatientUpdateDTO("John Updated", "johnupdated@test.com", "11977776666");
+        PatientDetailsDTO updatedPatientDetailsDTO = new PatientDetailsDTO(1L, "John Updated", "johnupdated@test.com", "11977776666");
+
+        when(lookupIndex.findIdByEmail("johnupdated@test.com")).thenReturn(OptionalLong.of(7L));
+        when(patientRepository.existsByEmailAndIdNot("johnupdated@test.com", patientId)).thenReturn(false);
+        when(patientRepository.updateActive(eq(patientId), eq(updateDTO.name()), eq(updateDTO.email()), eq(updateDTO.phone()), any(Instant.class))).thenReturn(1);
+        when(patientRepository.findVersionById(patientId)).thenReturn(2L);
+        when(patientMapper.toDetailsDto(eq(patientId), eq(updateDTO), eq(2L), any(Instant.class))).thenReturn(updatedPatientDetailsDTO);
+
+        //Act
+        PatientDetailsDTO result = patientService.updatePatient(patientId, updateDTO);
+
+        //Assert
+        assertThat(result).isEqualTo(updatedPatientDetailsDTO);
+        verify(patientRepository).updateActive(eq(patientId), eq(updateDTO.name()), eq(updateDTO.email()), eq(updateDTO.phone()), any(Instant.class));
+    }
+
+    @Test
+    public void updatePatient_WhenExpectedVersionMatches_ShouldUpdateInOneStatementAndBumpVersion(){
+        //Arrange
+        Long patientId = 1L;
+        PatientUpdateDTO updateDTO = new PatientUpdateDTO("John Updated", "johnupdated@test.com", "11977776666");
+        PatientDetailsDTO updatedPatientDetailsDTO = new PatientDetailsDTO(1L, "John Updated", "johnupdated@test.com", "11977776666");
+
+        when(patientRepository.updateActiveIfVersion(eq(patientId), eq(3L), eq(updateDTO.name()), eq(updateDTO.email()), eq(updateDTO.phone()), any(Instant.class))).thenReturn(1);
+        when(patientMapper.toDetailsDto(eq(patientId), eq(updateDTO), eq(4L), any(Instant.class))).thenReturn(updatedPatientDetailsDTO);
+
+        //Act
+        PatientDetailsDTO result = patientService.updatePatient(patientId, updateDTO, 3L);
 
+        //Assert
+        assertThat(result).isEqualTo(updatedPatientDetailsDTO);
+        verify(patientRepository).updateActiveIfVersion(eq(patientId), eq(3L), eq(updateDTO.name()), eq(updateDTO.email()), eq(updateDTO.phone()), any(Instant.class));
+        verifyNoMoreInteractions(patientRepository);
     }
 
     @Test
     public void deletePatient_WhenPatientExists_ShouldSetActiveToFalse(){
         //Arrange
-        Patient dummyPatient = new Patient(null, "John Doe", "johndoe@test.com", "11999998888", true);
+        when(patientRepository.softDeleteById(eq(1L), any(Instant.class))).thenReturn(1);
+
+        //Act
+        patientService.deletePatient(1L);
 
-        when(patientRepository.findByIdAndActiveTrue(1L)).thenReturn(Optional.of(dummyPatient));
+        //Assert
+        verify(patientRepository).softDeleteById(eq(1L), any(Instant.class));
+        verifyNoMoreInteractions(patientRepository);
+        verify(eventPublisher).publishEvent(PatientChangedEvent.deactivated(1L));
+
+    }
+
+    @Test
+    public void deletePatient_WhenOutboxIsEnabled_ShouldAppendDeactivatedEvent(){
+        //Arrange
+        when(outboxProperties.enabled()).thenReturn(true);
+        when(patientRepository.softDeleteById(eq(1L), any(Instant.class))).thenReturn(1);
 
         //Act
         patientService.deletePatient(1L);
 
         //Assert
-        verify(patientRepository).findByIdAndActiveTrue(1L);
-        verify(patientRepository).save(dummyPatient);
-        assertThat(dummyPatient.getActive()).isFalse();
+        verify(outboxRepository).append(argThat(events -> events.size() == 1
+                && events.iterator().next().getType() == PatientChangedEvent.ChangeType.DEACTIVATED
+                && events.iterator().next().getPatientId() == 1L));
+    }
+
+    @Test
+    public void listChanges_WhenMoreEventsThanLimit_ShouldReturnNextCursor(){
+        //Arrange
+        PatientChangeDTO created = new PatientChangeDTO(4L, 10L, "PatientCreated", 1L, 0L, Instant.EPOCH, "John Doe", "johndoe@test.com", "11999998888");
+        PatientChangeDTO updated = new PatientChangeDTO(5L, 11L, "PatientUpdated", 1L, 1L, Instant.EPOCH, "John Smith", "johndoe@test.com", "11999998888");
+
+        when(outboxRepository.findLastSequence()).thenReturn(9L);
+        when(outboxRepository.findChanges(3L, 2)).thenReturn(List.of(created, updated));
+
+        //Act
+        PatientChangePageDTO page = patientService.listChanges(3L, 1);
+
+        //Assert
+        assertThat(page.content()).containsExactly(created);
+        assertThat(page.nextCursor()).isEqualTo(4L);
+    }
+
+    @Test
+    public void updatePatient_WhenAuditIsEnabled_ShouldLockRowAndPublishBeforeAndAfter(){
+        //Arrange
+        Long patientId = 1L;
+        PatientUpdateDTO updateDTO = new PatientUpdateDTO("John Updated", "johnupdated@test.com", "11977776666");
+        PatientDetailsDTO current = new PatientDetailsDTO(patientId, "John Doe", "johndoe@test.com", "11999998888", 3L, Instant.EPOCH);
+        PatientDetailsDTO updated = new PatientDetailsDTO(patientId, "John Updated", "johnupdated@test.com", "11977776666", 4L, Instant.now());
+
+        when(auditLog.isEnabled()).thenReturn(true);
+        when(patientRepository.findDetailsByIdForUpdate(patientId)).thenReturn(Optional.of(current));
+        when(patientRepository.updateActive(eq(patientId), eq(updateDTO.name()), eq(updateDTO.email()), eq(updateDTO.phone()), any(Instant.class))).thenReturn(1);
+        when(patientMapper.toDetailsDto(eq(patientId), eq(updateDTO), eq(4L), any(Instant.class))).thenReturn(updated);
 
+        //Act
+        PatientDetailsDTO result = patientService.updatePatient(patientId, updateDTO);
+
+        //Assert: the new version comes from the locked row, not from a second SELECT
+        assertThat(result).isEqualTo(updated);
+        verify(patientRepository, never()).findVersionById(any());
+        verify(eventPublisher).publishEvent(new PatientAuditEntry(PatientChangedEvent.ChangeType.UPDATED, patientId, 4L, updated.updatedAt(),
+                new PatientSnapshot("John Doe", "johndoe@test.com", "11999998888", true),
+                new PatientSnapshot("John Updated", "johnupdated@test.com", "11977776666", true)));
     }
 
 
@@ -158,27 +409,72 @@ public class PatientServiceTest {
     public void createPatient_WhenEmailAlreadyExists_ShouldThrowException() {
         //Arrange
         PatientRegistrationDTO dummyRegistrationDTO = new PatientRegistrationDTO("John Doe", "johndoe@test.com", "11999998888");
+        Patient dummyPatientNoId = new Patient(null, "John Doe", "johndoe@test.com", "11999998888");
+
+        when(patientMapper.toEntity(dummyRegistrationDTO)).thenReturn(dummyPatientNoId);
+        when(patientRepository.saveAndFlush(dummyPatientNoId)).thenThrow(emailUniqueViolation());
+
+        //Act & Assert
+        assertThrows(DuplicateResourceException.class, () -> patientService.createPatient(dummyRegistrationDTO));
+
+        verify(patientMapper, never()).toDetailsDto(any());
+    }
+
+    @Test
+    public void createPatient_WhenLookupIndexKnowsEmail_ShouldConfirmAndThrowWithoutInserting() {
+        //Arrange
+        PatientRegistrationDTO dummyRegistrationDTO = new PatientRegistrationDTO("John Doe", "johndoe@test.com", "11999998888");
 
-        when(patientRepository.existsByEmail(dummyRegistrationDTO.email())).thenReturn(true);
+        when(lookupIndex.findIdByEmail("johndoe@test.com")).thenReturn(OptionalLong.of(7L));
+        when(patientRepository.existsByEmail("johndoe@test.com")).thenReturn(true);
 
         //Act & Assert
         assertThrows(DuplicateResourceException.class, () -> patientService.createPatient(dummyRegistrationDTO));
 
-        verify(patientRepository, never()).save(any());
-        verify(patientMapper, never()).toEntity(any());
+        verify(patientRepository).existsByEmail("johndoe@test.com");
+        verifyNoMoreInteractions(patientRepository);
+    }
+
+    @Test
+    public void createPatients_WhenLookupIndexIsStale_ShouldStillQueryEveryEmail(){
+        //Arrange
+        PatientRegistrationDTO takenRegistration = new PatientRegistrationDTO("John Doe", "johndoe@test.com", "11999998888");
+        PatientRegistrationDTO newRegistration = new PatientRegistrationDTO("Jane Smith", "janesmith@test.com", "11988887777");
+        Patient newPatient = new Patient(null, "Jane Smith", "janesmith@test.com", "11988887777");
+
+        when(patientRepository.findExistingEmails(List.of("johndoe@test.com", "janesmith@test.com"))).thenReturn(Set.of("johndoe@test.com"));
+        when(patientMapper.toEntity(newRegistration)).thenReturn(newPatient);
+        when(patientRepository.saveAll(List.of(newPatient))).thenReturn(List.of(
+                new Patient(2L, "Jane Smith", "janesmith@test.com", "11988887777")));
+
+        //Act
+        PatientBatchResultDTO result = patientService.createPatients(List.of(takenRegistration, newRegistration));
+
+        //Assert
+        assertThat(result.created()).isEqualTo(1);
+        assertThat(result.items()).extracting(PatientBatchItemResultDTO::status).containsExactly(
+                PatientBatchItemResultDTO.Status.DUPLICATE, PatientBatchItemResultDTO.Status.CREATED);
+        verify(patientRepository).findExistingEmails(List.of("johndoe@test.com", "janesmith@test.com"));
+        verifyNoInteractions(lookupIndex);
+        verify(eventPublisher).publishEvent(PatientChangedEvent.created(2L, "janesmith@test.com", "11988887777"));
+    }
+
+    @Test
+    public void search_WhenCursorIsMalformed_ShouldThrowInvalidCursor(){
+        assertThrows(InvalidCursorException.class, () -> patientService.search("ann", "not-a-cursor", 10));
+        verifyNoInteractions(patientSearchRepository);
     }
 
     @Test
     public void getPatientById_WhenPatientDoesNotExist_ShouldThrowException() {
         //Arrange
         Long patientId = 99L;
-        when(patientRepository.findByIdAndActiveTrue(patientId)).thenReturn(java.util.Optional.empty());
+        when(patientRepository.findDetailsById(patientId)).thenReturn(java.util.Optional.empty());
 
         //Act & Assert
         assertThrows(ResourceNotFoundException.class, () -> patientService.getPatientById(patientId));
 
-        verify(patientRepository).findByIdAndActiveTrue(patientId);
-        verify(patientMapper, never()).toDetailsDto(any());
+        verify(patientRepository).findDetailsById(patientId);
     }
 
     @Test
@@ -187,15 +483,47 @@ public class PatientServiceTest {
         Long patientId = 99L;
         PatientUpdateDTO updateDTO = new PatientUpdateDTO("John Updated", "johnupdated@test.com", "11977776666");
 
-        when(patientRepository.findByIdAndActiveTrue(patientId)).thenThrow(ResourceNotFoundException.class);
+        when(patientRepository.updateActive(eq(patientId), eq(updateDTO.name()), eq(updateDTO.email()), eq(updateDTO.phone()), any(Instant.class))).thenReturn(0);
 
         //Act & Assert
         assertThrows(ResourceNotFoundException.class, () -> patientService.updatePatient(patientId, updateDTO));
 
-        verify(patientRepository).findByIdAndActiveTrue(patientId);
-        verify(patientRepository, never()).findByEmail(any());
-        verify(patientRepository, never()).save(any());
-        verify(patientMapper, never()).toDetailsDto(any());
+        verify(patientRepository).updateActive(eq(patientId), eq(updateDTO.name()), eq(updateDTO.email()), eq(updateDTO.phone()), any(Instant.class));
+        verify(patientMapper, never()).toDetailsDto(any(), any(), any(), any());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    public void updatePatient_WhenExpectedVersionIsStale_ShouldThrowPreconditionFailed() {
+        //Arrange
+        Long patientId = 1L;
+        PatientUpdateDTO updateDTO = new PatientUpdateDTO("John Updated", "johnupdated@test.com", "11977776666");
+
+        when(patientRepository.updateActiveIfVersion(eq(patientId), eq(3L), eq(updateDTO.name()), eq(updateDTO.email()), eq(updateDTO.phone()), any(Instant.class))).thenReturn(0);
+        when(patientRepository.existsByIdAndActiveTrue(patientId)).thenReturn(true);
+
+        //Act & Assert
+        assertThrows(PreconditionFailedException.class, () -> patientService.updatePatient(patientId, updateDTO, 3L));
+
+        verify(patientMapper, never()).toDetailsDto(any(), any(), any(), any());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    public void updatePatient_WhenAuditIsEnabledAndVersionIsStale_ShouldFailBeforeUpdating() {
+        //Arrange
+        Long patientId = 1L;
+        PatientUpdateDTO updateDTO = new PatientUpdateDTO("John Updated", "johnupdated@test.com", "11977776666");
+        PatientDetailsDTO current = new PatientDetailsDTO(patientId, "John Doe", "johndoe@test.com", "11999998888", 5L, Instant.EPOCH);
+
+        when(auditLog.isEnabled()).thenReturn(true);
+        when(patientRepository.findDetailsByIdForUpdate(patientId)).thenReturn(Optional.of(current));
+
+        //Act & Assert
+        assertThrows(PreconditionFailedException.class, () -> patientService.updatePatient(patientId, updateDTO, 3L));
+
+        verifyNoMoreInteractions(patientRepository);
+        verify(eventPublisher, never()).publishEvent(any());
     }
 
     @Test
@@ -203,19 +531,14 @@ public class PatientServiceTest {
         //Arrange
         Long patientId = 1L;
         PatientUpdateDTO updateDTO = new PatientUpdateDTO("John Updated", "coolnewmail@test.com", "11977778888");
-        Patient oldPatient = new Patient(1L, "John Doe", "johndoe@test.com", "11999998888");
-        Patient existingPatient = new Patient(2L, "Jane Smith", "coolnewmail@test.com", "11988887777");
 
-        when(patientRepository.findByIdAndActiveTrue(patientId)).thenReturn(Optional.of(oldPatient));
-        when(patientRepository.findByEmail(updateDTO.email())).thenReturn(Optional.of(existingPatient));
+        when(patientRepository.updateActive(eq(patientId), eq(updateDTO.name()), eq(updateDTO.email()), eq(updateDTO.phone()), any(Instant.class))).thenThrow(emailUniqueViolation());
 
         //Act & Assert
         assertThrows(DuplicateResourceException.class, () -> patientService.updatePatient(patientId, updateDTO));
 
-        verify(patientRepository).findByIdAndActiveTrue(patientId);
-        verify(patientRepository).findByEmail(updateDTO.email());
-        verify(patientRepository, never()).save(any());
-        verify(patientMapper, never()).toDetailsDto(any());
+        verify(patientMapper, never()).toDetailsDto(any(), any(), any(), any());
+        verify(eventPublisher, never()).publishEvent(any());
 
     }
 
@@ -224,13 +547,30 @@ public class PatientServiceTest {
         //Arrange
         Long patientId = 99L;
 
-        when(patientRepository.findByIdAndActiveTrue(patientId)).thenReturn(Optional.empty());
+        when(patientRepository.softDeleteById(eq(patientId), any(Instant.class))).thenReturn(0);
 
         //Act & Assert
         assertThrows(ResourceNotFoundException.class, () -> patientService.deletePatient(patientId));
 
-        verify(patientRepository).findByIdAndActiveTrue(patientId);
-        verify(patientRepository, never()).save(any());
+        verify(patientRepository).softDeleteById(eq(patientId), any(Instant.class));
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    public void listChanges_WhenEventsAfterSinceWerePurged_ShouldThrowChangesExpired(){
+        //Arrange
+        PatientChangeDTO oldestKept = new PatientChangeDTO(8L, 20L, "PatientDeactivated", 1L, 2L, Instant.EPOCH, null, null, null);
+
+        when(outboxRepository.findLastSequence()).thenReturn(9L);
+        when(outboxRepository.findChanges(3L, 101)).thenReturn(List.of(oldestKept));
+
+        //Act & Assert
+        assertThrows(ChangesExpiredException.class, () -> patientService.listChanges(3L, PatientService.DEFAULT_CHANGES_LIMIT));
+    }
+
+    private static DataIntegrityViolationException emailUniqueViolation(){
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("duplicate key", new SQLException("duplicate key"), Patient.EMAIL_UNIQUE_CONSTRAINT));
     }
 
 
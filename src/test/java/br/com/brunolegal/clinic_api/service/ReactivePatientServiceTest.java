@@ -0,0 +1,132 @@
+package br.com.brunolegal.clinic_api.service;
+
+import br.com.brunolegal.clinic_api.cache.CacheInvalidationProperties;
+import br.com.brunolegal.clinic_api.dto.PatientDetailsDTO;
+import br.com.brunolegal.clinic_api.dto.PatientRegistrationDTO;
+import br.com.brunolegal.clinic_api.dto.PatientUpdateDTO;
+import br.com.brunolegal.clinic_api.exception.DuplicateResourceException;
+import br.com.brunolegal.clinic_api.exception.PreconditionFailedException;
+import br.com.brunolegal.clinic_api.exception.ResourceNotFoundException;
+import br.com.brunolegal.clinic_api.mapper.PatientMapper;
+import br.com.brunolegal.clinic_api.repository.ReactivePatientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReactivePatientServiceTest {
+    @Mock
+    private ReactivePatientRepository patientRepository;
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    private ReactivePatientService patientService;
+
+    @BeforeEach
+    public void setUp(){
+        CacheInvalidationProperties cacheInvalidation = new CacheInvalidationProperties(true, "patient_cache_invalidation",
+                Duration.ofSeconds(5), Duration.ofMillis(500), Duration.ofSeconds(30));
+        patientService = new ReactivePatientService(patientRepository, new PatientMapper(), transactionalOperator, cacheInvalidation);
+    }
+
+    @Test
+    public void listPage_WhenMoreRowsThanLimit_ShouldReturnNextCursor(){
+        //Arrange
+        PatientDetailsDTO dummyDetails1 = new PatientDetailsDTO(1L, "John Doe", "johndoe@test.com", "11999998888");
+        PatientDetailsDTO dummyDetails2 = new PatientDetailsDTO(2L, "Jane Smith", "janesmith@test.com", "11988887777");
+
+        when(patientRepository.findDetailsPage(0L, 2)).thenReturn(Flux.just(dummyDetails1, dummyDetails2));
+
+        //Act & Assert
+        StepVerifier.create(patientService.listPage(null, 1))
+                .assertNext(page -> {
+                    assertThat(page.content()).containsExactly(dummyDetails1);
+                    assertThat(page.nextCursor()).isEqualTo(1L);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void updatePatient_WhenVersionMatches_ShouldNotifyAndReturnNewVersion(){
+        //Arrange
+        PatientUpdateDTO dummyUpdateDTO = new PatientUpdateDTO("John Doe", "johndoe@test.com", "11999998888");
+
+        passThroughTransactions();
+        when(patientRepository.updateActive(eq(1L), eq(3L), eq("John Doe"), eq("johndoe@test.com"), eq("11999998888"), any()))
+                .thenReturn(Mono.just(4L));
+        when(patientRepository.notify("patient_cache_invalidation", 1L)).thenReturn(Mono.empty());
+
+        //Act & Assert
+        StepVerifier.create(patientService.updatePatient(1L, dummyUpdateDTO, 3L))
+                .assertNext(dto -> assertThat(dto.version()).isEqualTo(4L))
+                .verifyComplete();
+        verify(patientRepository).notify("patient_cache_invalidation", 1L);
+    }
+
+    /*
+    ------------------
+    Error Path Tests
+    ------------------
+     */
+
+    @Test
+    public void createPatient_WhenEmailIsTaken_ShouldThrowDuplicateResourceException(){
+        //Arrange
+        PatientRegistrationDTO dummyRegistrationDTO = new PatientRegistrationDTO("John Doe", "johndoe@test.com", "11999998888");
+
+        when(patientRepository.insert(eq("John Doe"), eq("johndoe@test.com"), eq("11999998888"), any()))
+                .thenReturn(Mono.error(new DataIntegrityViolationException(
+                        "duplicate key value violates unique constraint \"uk_patients_email\"")));
+
+        //Act & Assert
+        StepVerifier.create(patientService.createPatient(dummyRegistrationDTO))
+                .verifyError(DuplicateResourceException.class);
+    }
+
+    @Test
+    public void updatePatient_WhenVersionIsStale_ShouldThrowPreconditionFailedException(){
+        //Arrange
+        PatientUpdateDTO dummyUpdateDTO = new PatientUpdateDTO("John Doe", "johndoe@test.com", "11999998888");
+
+        passThroughTransactions();
+        when(patientRepository.updateActive(eq(1L), eq(3L), anyString(), anyString(), anyString(), any())).thenReturn(Mono.empty());
+        when(patientRepository.existsActive(1L)).thenReturn(Mono.just(true));
+
+        //Act & Assert
+        StepVerifier.create(patientService.updatePatient(1L, dummyUpdateDTO, 3L))
+                .verifyError(PreconditionFailedException.class);
+        verify(patientRepository, never()).notify(anyString(), anyLong());
+    }
+
+    @Test
+    public void deletePatient_WhenPatientDoesNotExist_ShouldThrowResourceNotFoundException(){
+        //Arrange
+        passThroughTransactions();
+        when(patientRepository.softDelete(eq(99L), any())).thenReturn(Mono.just(0L));
+
+        //Act & Assert
+        StepVerifier.create(patientService.deletePatient(99L))
+                .verifyError(ResourceNotFoundException.class);
+        verify(patientRepository, never()).notify(anyString(), anyLong());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void passThroughTransactions(){
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+}
@@ -0,0 +1,38 @@
+package br.com.brunolegal.clinic_api.support;
+
+import br.com.brunolegal.clinic_api.sqlstats.SqlStatsFilter;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MockMvc matchers that pin how many SQL statements an endpoint issues, read from the
+ * debug header written by {@link SqlStatsFilter}:
+ * <pre>
+ * mockMvc.perform(get("/patients/{id}", id))
+ *         .andExpect(sqlStatements(1));
+ * </pre>
+ * Entities saved in the test's own transaction are only flushed by the first query of the
+ * request, so flush them in the arrange step or they are counted too.
+ */
+public final class SqlStatementMatchers {
+
+    private SqlStatementMatchers(){
+    }
+
+    public static ResultMatcher sqlStatements(int expected){
+        return result -> assertThat(result.getResponse().getHeader(SqlStatsFilter.STATEMENTS_HEADER))
+                .as("SQL statements issued by %s %s", result.getRequest().getMethod(), result.getRequest().getRequestURI())
+                .isEqualTo(Integer.toString(expected));
+    }
+
+    public static ResultMatcher maxSqlStatements(int max){
+        return result -> {
+            String header = result.getResponse().getHeader(SqlStatsFilter.STATEMENTS_HEADER);
+            assertThat(header).as("%s header", SqlStatsFilter.STATEMENTS_HEADER).isNotNull();
+            assertThat(Integer.parseInt(header))
+                    .as("SQL statements issued by %s %s", result.getRequest().getMethod(), result.getRequest().getRequestURI())
+                    .isLessThanOrEqualTo(max);
+        };
+    }
+}